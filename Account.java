@@ -7,13 +7,19 @@
  *  to calculate the investment growth into monthly subsets using said data; which is formatted and returnable
  *  as a String from the method invocation. The class also contains a overridden toString method which is used
  *  for the retrieval of the attribute data as a preformatted String, to optionally be used elsewhere for 
- *  basic displaying purposes (regardless of interface). 
+ *  basic displaying purposes (regardless of interface). The projections are kept within a shared ProjectionCache,
+ *  so an account with the same terms as one that has already been projected doesn't need to be calculated again.
+ *  The text of the toString method (and the formatted total amount) is kept once rendered, and is discarded by the
+ *  setters, so an account that is listed repeatedly is only formatted once.
  */
 
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class Account {
+	private static final AtomicReferenceFieldUpdater<Account, RenderedText> TEXT =
+			AtomicReferenceFieldUpdater.newUpdater(Account.class, RenderedText.class, "text");
+	private static final AtomicReferenceFieldUpdater<Account, RenderedText> TOTAL_AMOUNT =
+			AtomicReferenceFieldUpdater.newUpdater(Account.class, RenderedText.class, "totalAmount");
 	
 	// The following constants are used for formatting purposes by the calcInvestment method.
 	private static final String HEADING_INVESTMENT = "Investment:";
@@ -22,21 +28,33 @@ public class Account {
 	private static final String NEW_LINE = System.getProperty("line.separator");
 	private static final String SEPARATOR = "------------------" + NEW_LINE;
 	private static final String FORMAT_INTEREST_TITLE = "%s %12s";
-	private static final String FORMAT_INTEREST_BODY = "%02d %15s";
+	private static final String INTEREST_TITLE = String.format(FORMAT_INTEREST_TITLE, COLUMN_INVESTMENT_WEEKS, COLUMN_INVESTMENT_BALANCE);
+	// The number of digits of the week, and the width of the balance, within each line of the table.
+	private static final int WEEK_DIGITS = 2;
+	private static final int BALANCE_WIDTH = 15;
+	private static final char SPACE = ' ';
+	// The natural logarithm of 2, being the total growth beyond which the closed form uses Math.pow.
+	private static final double LN_2 = Math.log(2);
 	
 	// The following constants are used for formatting purposes by the toString method.
-	private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#0.00");
-	private static final NumberFormat CURRENCY_FORMAT = NumberFormat.getCurrencyInstance();
 	private static final String LABEL_WEEKLY_INVESTMENT = "Invested per week: ";
 	private static final String LABEL_INTEREST_RATE = "Interest rate: ";
 	private static final String LABEL_NUMBER_OF_WEEKS = "Number of weeks: ";
 	private static final String PERCENTAGE = "%";
 	private static final String TAB = "\t";
 	
-	// Instance attributes.
-	private double rate;
-	private int numberOfWeeks;
-	private double amount;
+	// The projections shared by every account.
+	private static final int PROJECTION_CACHE_CAPACITY = 4096;
+	private static final ProjectionCache PROJECTIONS = new ProjectionCache(PROJECTION_CACHE_CAPACITY);
+	
+	// Instance attributes (which are volatile, as an account can be displayed by one thread while it is changed by another).
+	private volatile double rate;
+	private volatile int numberOfWeeks;
+	private volatile double amount;
+	// The rendered text of the toString and appendTotalAmount methods (or a text still being rendered), or null until they are
+	// next rendered.
+	private volatile RenderedText text;
+	private volatile RenderedText totalAmount;
 	
 	/**
 	* The default constructor. It chains with initial values to the second constructor.
@@ -67,6 +85,7 @@ public class Account {
 	
 	public void setRate(double rate) {
 		this.rate = rate;
+		this.changed();
 	}
 	
 	public double getRate() {
@@ -75,6 +94,7 @@ public class Account {
 	
 	public void setNumberOfWeeks(int numberOfWeeks) {
 		this.numberOfWeeks = numberOfWeeks;
+		this.changed();
 	}
 	
 	public int getNumberOfWeeks() {
@@ -83,6 +103,28 @@ public class Account {
 	
 	public void setAmount(double amount) {
 		this.amount = amount;
+		this.changed();
+	}
+	
+	/**
+	* The changed method discards the rendered text, which is invoked whenever an attribute is set. As with the Client, the
+	* text is only written when there is one.
+	*/
+	private void changed() {
+		if (this.text != null) {
+			this.text = null;
+		}
+		if (this.totalAmount != null) {
+			this.totalAmount = null;
+		}
+	}
+	
+	/**
+	* The getAmountInCents method returns the weekly investment rounded to a whole number of cents.
+	* @return long - The amount in cents.
+	*/
+	public long getAmountInCents() {
+		return Money.cents(this.getAmount());
 	}
 	
 	public double getAmount() {
@@ -107,11 +149,55 @@ public class Account {
 		return (((total + this.getAmount() * weeks)) * ((weeks == 4) ? ((this.getRate() / 13) + 1) : 1));
 	}
 	
+	/**
+	* The getProjectionCache method returns the cache that holds the projections of every account (which can be used to
+	* inspect the hit and miss counters).
+	* @return ProjectionCache - The cache.
+	*/
+	public static ProjectionCache getProjectionCache() {
+		return PROJECTIONS;
+	}
+	
 	/**
 	* The calcTotalAmount is used to get the total projected amount invested at the end of the investment peroid.
+	* The total is taken from the ProjectionCache, or evaluated in constant time by the calcTotalAmountClosedForm method
+	* (and then cached) if an account with the same terms hasn't been projected. The total is only cached if the terms weren't
+	* changed while it was being calculated, as it would otherwise be cached under terms it wasn't calculated from.
 	* @return double the total amount projected at the end of the investment peroid.
 	*/
 	public double calcTotalAmount() {
+		CalculatorEvents.ProjectionEvent event = new CalculatorEvents.ProjectionEvent();
+		event.begin();
+		double rate = this.getRate(), amount = this.getAmount();
+		int weeks = this.getNumberOfWeeks();
+		Double total = PROJECTIONS.getTotal(rate, weeks, amount);
+		boolean cached = (total != null);
+		if (!cached) {
+			total = this.calcTotalAmount(false);
+			if (this.hasTerms(rate, weeks, amount)) {
+				PROJECTIONS.putTotal(rate, weeks, amount, total);
+			}
+		}
+		this.commit(event, CalculatorEvents.PROJECTION_TOTAL, cached);
+		return total;
+	}
+	
+	/**
+	* The second calcTotalAmount method receives a boolean indicating whether the total should be calculated by stepping through
+	* each week of the investment length (as the calcInvestment method does), which can be used to verify the closed form.
+	* @param iterative boolean - Whether the total is calculated week by week.
+	* @return double the total amount projected at the end of the investment peroid.
+	*/
+	public double calcTotalAmount(boolean iterative) {
+		return ((iterative) ? this.calcTotalAmountIteratively() : this.calcTotalAmountClosedForm());
+	}
+	
+	/**
+	* The calcTotalAmountIteratively method steps through each week of the investment length, applying the calcInvestment 
+	* method at the end of each month (and at the end of an uneven investment length).
+	* @return double the total amount projected at the end of the investment peroid.
+	*/
+	private double calcTotalAmountIteratively() {
 		double total = 0;
 		// The following will iterate for each week for the investmentLength.
 		for (int week = 1; week <= this.getNumberOfWeeks(); week++) {
@@ -124,16 +210,119 @@ public class Account {
 		return total;
 	}
 	
+	/**
+	* The calcTotalAmountClosedForm method evaluates the total as a geometric series. Each month the total becomes
+	* T(m) = g * (T(m - 1) + 4a), where g is the monthly growth (rate / 13 + 1) and a is the weekly amount, which gives
+	* T(m) = 4a * g * (g^m - 1) / (g - 1) after m months (or 4am if there is no interest). The weeks remaining after the
+	* last full month are then added without interest. While the total growth g^m stays below 2, the power is evaluated with
+	* expm1 and log1p, which keeps the result accurate when the rate is small; beyond that it is evaluated with Math.pow,
+	* which is more accurate for many months (as the error of the logarithm is multiplied by m), and loses at most a bit
+	* once 1 is subtracted. Without any weekly amount the total is 0, even where the series itself would overflow
+	* (which would otherwise give 0 times infinity, being NaN).
+	* @return double the total amount projected at the end of the investment peroid.
+	*/
+	private double calcTotalAmountClosedForm() {
+		if ((this.getNumberOfWeeks() <= 0) || (this.getAmount() == 0)) {
+			return 0;
+		}
+		int months = this.getNumberOfWeeks() / 4;
+		int remainder = this.getNumberOfWeeks() % 4;
+		double growth = (this.getRate() / 13) + 1;
+		double monthly = this.getAmount() * 4;
+		double interest = growth - 1; // The monthly rate (as it was rounded within the growth).
+		double total;
+		if (interest == 0) {
+			total = monthly * months;
+		} else if (interest <= -1) {
+			return this.calcTotalAmountIteratively(); // The growth isn't positive, so it has no logarithm.
+		} else {
+			double exponent = months * Math.log1p(interest);
+			double power = ((exponent < LN_2) ? Math.expm1(exponent) : (Math.pow(growth, months) - 1));
+			total = monthly * growth * (power / interest);
+		}
+		return (total + (this.getAmount() * remainder));
+	}
+	
 	/**
 	* The calcInvestment method is used to calculate the monthly investment projections (based on the interest rate)
-	* for the duration of the investment length in weeks. 
+	* for the duration of the investment length in weeks. The table is taken from the ProjectionCache if an account with the
+	* same terms has already been projected (and formatted for the same locale). As with the total, the table is only cached if
+	* the terms weren't changed while it was being built.
 	* @return String - It outputs a friendly String containing a text-based table showing the monthly groupings of the expected projection.
 	*/
 	public String calcInvestment() {
+		CalculatorEvents.ProjectionEvent event = new CalculatorEvents.ProjectionEvent();
+		event.begin();
+		ReportFormat format = ReportFormat.getInstance();
+		double rate = this.getRate(), amount = this.getAmount();
+		int weeks = this.getNumberOfWeeks();
+		String table = PROJECTIONS.getTable(rate, weeks, amount, format);
+		boolean cached = (table != null);
+		if (!cached) {
+			table = this.formatInvestment(format);
+			if (this.hasTerms(rate, weeks, amount)) {
+				PROJECTIONS.putTable(rate, weeks, amount, format, table);
+			}
+		}
+		this.commit(event, CalculatorEvents.PROJECTION_TABLE, cached);
+		return table;
+	}
+	
+	/**
+	* The hasTerms method determines whether the account still has the received terms.
+	* @param rate double - The interest rate.
+	* @param weeks int - The investment length.
+	* @param amount double - The weekly investment amount.
+	* @return boolean - Whether the terms are unchanged.
+	*/
+	private boolean hasTerms(double rate, int weeks, double amount) {
+		return ((Double.compare(this.getRate(), rate) == 0) && (this.getNumberOfWeeks() == weeks) &&
+				(Double.compare(this.getAmount(), amount) == 0));
+	}
+	
+	/**
+	* The commit method ends the received ProjectionEvent, and commits it only if it took longer than the threshold of the
+	* event (so that the fields are set only for the events that are recorded).
+	* @param event ProjectionEvent - The event started at the beginning of the projection.
+	* @param kind String - The kind of projection.
+	* @param cached boolean - Whether the projection was taken from the ProjectionCache.
+	*/
+	private void commit(CalculatorEvents.ProjectionEvent event, String kind, boolean cached) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.set(kind, this.getNumberOfWeeks(), cached);
+			event.commit();
+		}
+	}
+	
+	/**
+	* The calcProjection method returns the balances shown within the calcInvestment table, being the balance at the end of
+	* each month (every fourth week), and at the end of an uneven investment length.
+	* @return double[] - The balance of each row.
+	*/
+	public double[] calcProjection() {
+		double[] balances = new double[Math.max(0, (this.getNumberOfWeeks() + 3) / 4)];
+		double total = 0;
+		int row = 0;
+		for (int week = 1; week <= this.getNumberOfWeeks(); week++) {
+			if (((week % 4) == 0) || ((week == this.getNumberOfWeeks()) && ((week % 4) != 0))) {
+				total = this.calcInvestment(total, week);
+				balances[row++] = total;
+			}
+		}
+		return balances;
+	}
+	
+	/**
+	* The formatInvestment method is used by the calcInvestment method to build the table of the monthly projections.
+	* @param format ReportFormat - The format of the balances.
+	* @return String - The table.
+	*/
+	private String formatInvestment(ReportFormat format) {
 		StringBuilder builder = new StringBuilder();
-		builder.append(TAB + HEADING_INVESTMENT + NEW_LINE);
-		builder.append(TAB + String.format(FORMAT_INTEREST_TITLE, COLUMN_INVESTMENT_WEEKS, COLUMN_INVESTMENT_BALANCE) + NEW_LINE);
-		builder.append(TAB + SEPARATOR);
+		builder.append(TAB).append(HEADING_INVESTMENT).append(NEW_LINE);
+		builder.append(TAB).append(INTEREST_TITLE).append(NEW_LINE);
+		builder.append(TAB).append(SEPARATOR);
 		double total = 0;
 		// The following will iterate for each week for the investmentLength.
 		for (int week = 1; week <= this.getNumberOfWeeks(); week++) {
@@ -141,7 +330,9 @@ public class Account {
 			// the following once the weeks variable is equal to the investment length and the division by four has a remainder.
 			if (((week % 4) == 0) || ((week == this.getNumberOfWeeks()) && ((week % 4) != 0))) {
 				total = this.calcInvestment(total, week);
-				builder.append(TAB + String.format(FORMAT_INTEREST_BODY, week, CURRENCY_FORMAT.format(total)) + NEW_LINE);
+				builder.append(TAB);
+				format.appendInteger(builder, week, WEEK_DIGITS).append(SPACE);
+				format.appendCurrency(builder, total, BALANCE_WIDTH).append(NEW_LINE);
 			}
 		}
 		return builder.toString();
@@ -153,21 +344,70 @@ public class Account {
 	* @return String - A text version containing the attribute data.
 	*/
 	public String toString() {
+		ReportFormat format = ReportFormat.getInstance();
+		RenderedText text = this.text;
+		if ((text != null) && text.isValid(format)) {
+			return text.toString();
+		}
+		// The rendering is marked as in progress before the attributes are read, so that a setter invoked in the meantime
+		// finds the marker and discards it, in which case the text isn't kept.
+		RenderedText rendering = new RenderedText(format, null);
+		this.text = rendering;
 		// Instantiates a StringBuilder which is used to concatenate the output.
-		StringBuilder builder = new StringBuilder();
+		text = new RenderedText(format, this.render(new StringBuilder(), format).toString());
+		TEXT.compareAndSet(this, rendering, text);
+		return text.toString(); // Returns a String.
+	}
+	
+	/**
+	* The appendTo method appends the text returned by the toString method to the received StringBuilder.
+	* @param builder StringBuilder - The destination.
+	* @return StringBuilder - The same StringBuilder.
+	*/
+	public StringBuilder appendTo(StringBuilder builder) {
+		return builder.append(this.toString());
+	}
+	
+	/**
+	* The appendTotalAmount method appends the total returned by the calcTotalAmount method, formatted as a currency, to the
+	* received StringBuilder. The formatted total is kept until the account is changed (using the same marker as the toString
+	* method, so a total formatted while the account is being changed isn't kept).
+	* @param builder StringBuilder - The destination.
+	* @return StringBuilder - The same StringBuilder.
+	*/
+	public StringBuilder appendTotalAmount(StringBuilder builder) {
+		ReportFormat format = ReportFormat.getInstance();
+		RenderedText totalAmount = this.totalAmount;
+		if ((totalAmount != null) && totalAmount.isValid(format)) {
+			return builder.append(totalAmount.toString());
+		}
+		RenderedText rendering = new RenderedText(format, null);
+		this.totalAmount = rendering;
+		totalAmount = new RenderedText(format, format.appendCurrency(new StringBuilder(), this.calcTotalAmount()).toString());
+		TOTAL_AMOUNT.compareAndSet(this, rendering, totalAmount);
+		return builder.append(totalAmount.toString());
+	}
+	
+	/**
+	* The render method appends the text of the account to the received StringBuilder, with the numbers formatted directly
+	* into the StringBuilder by the received ReportFormat.
+	* @param builder StringBuilder - The destination.
+	* @param format ReportFormat - The format of the numbers.
+	* @return StringBuilder - The same StringBuilder.
+	*/
+	private StringBuilder render(StringBuilder builder, ReportFormat format) {
 		// The interest rate.
-		builder.append(TAB + LABEL_INTEREST_RATE); 
-		builder.append(DECIMAL_FORMAT.format(this.getRate() * 100)); // The interest rate.
+		builder.append(TAB).append(LABEL_INTEREST_RATE); 
+		format.appendDecimal(builder, this.getRate() * 100); // The interest rate.
 		builder.append(PERCENTAGE); // The percentage symbol.
 		builder.append(NEW_LINE); 
 		// The investment length.
-		builder.append(TAB + LABEL_NUMBER_OF_WEEKS); 
+		builder.append(TAB).append(LABEL_NUMBER_OF_WEEKS); 
 		builder.append(this.getNumberOfWeeks()); // The investment length.
 		builder.append(NEW_LINE);
 		// The investment amount.
-		builder.append(TAB + LABEL_WEEKLY_INVESTMENT); 
-		builder.append(CURRENCY_FORMAT.format(this.getAmount())); // The amount formatted as a currency.
-
-		return builder.toString(); // Returns a String.
+		builder.append(TAB).append(LABEL_WEEKLY_INVESTMENT); 
+		format.appendCurrency(builder, this.getAmount()); // The amount formatted as a currency.
+		return builder;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+/*
+ *  Description:
+ *  The AccountBlock class is the part of a client file (between two byte offsets) that holds the accounts of a client, which
+ *  is recorded by the Calculator openLazy method in place of reading the accounts. The accounts are read from the block
+ *  (by the Client, once they are first needed) in the same way as the Calculator open method reads them. As the accounts
+ *  are counted when the file is opened, a block that no longer holds the same number of accounts (such as when the file
+ *  has been changed elsewhere) is reported, rather than giving the client the wrong accounts.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+public class AccountBlock {
+	private static final String ERR_CHANGED = "The accounts of the client have changed within the file: ";
+
+	private final File file;
+	private final long offset;
+	private final int length;
+	private final int count;
+
+	/**
+	* The constructor receives the file and the bounds of the block, along with the number of accounts within it.
+	* @param file File - The canonical file.
+	* @param offset long - The byte offset of the block.
+	* @param length long - The length of the block in bytes.
+	* @param count int - The number of accounts within the block.
+	*/
+	public AccountBlock(File file, long offset, long length, int count) {
+		this.file = file;
+		this.offset = offset;
+		this.length = Math.toIntExact(length);
+		this.count = count;
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	* The read method opens the file, and reads the accounts within the block.
+	* @return Account[] - The accounts array (of Client.MAX_ACCOUNTS, holding the accounts first).
+	* @throws IOException - If the accounts couldn't be read, or the block doesn't hold the same number of accounts.
+	*/
+	public Account[] read() throws IOException {
+		RandomAccessFile in = new RandomAccessFile(this.file, "r");
+		try {
+			return this.read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	* The second read method reads the accounts within the block from the received open file (which is used when the
+	* accounts of many clients are read at once).
+	* @param in RandomAccessFile - The open file.
+	* @return Account[] - The accounts array (of Client.MAX_ACCOUNTS, holding the accounts first).
+	* @throws IOException - If the accounts couldn't be read, or the block doesn't hold the same number of accounts.
+	*/
+	public Account[] read(RandomAccessFile in) throws IOException {
+		byte[] bytes = new byte[this.length];
+		try {
+			in.seek(this.offset);
+			in.readFully(bytes);
+		} catch (EOFException ex) {
+			throw new IOException(ERR_CHANGED + this.file, ex); // The file has since been shortened.
+		}
+		// The accounts are added to a client of their own (which has no listener), and are then taken from it.
+		Client client = new Client();
+		Calculator.readAccounts(new ClientReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.ISO_8859_1)), client);
+		if (client.getNumberOfAccounts() != this.count) {
+			throw new IOException(ERR_CHANGED + this.file);
+		}
+		Account[] accounts = new Account[Client.MAX_ACCOUNTS];
+		for (int i = 0; i < this.count; i++) {
+			accounts[i] = client.findAccount(i + 1);
+		}
+		return accounts;
+	}
+}
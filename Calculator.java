@@ -1,5 +1,19 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*	
  *  Author: Lance Baker
@@ -8,11 +22,23 @@ import java.text.NumberFormat;
  *  Description: 
  *  The Calculator class handles the underlying structure for storing the Clients. It enables for 
  *  the Client objects to be added from elsewhere without having to worry about the storing process.
- *  It dynamically resizes the Client array when there is insufficient room. It sorts the array when the
- *  Array getter is invoked; consistently returning an Array sorted based on the Client name. The class
- *  is also responsible for the handling of Files (saving, and opening).
+ *  The clients are kept in a ConcurrentSkipListMap ordered by the Client name, which is maintained as clients are added and
+ *  removed; the Array getter consistently returns an Array sorted based on the Client name. The class
+ *  is also responsible for the handling of Files (saving, and opening). A case-insensitive ConcurrentHashMap index is
+ *  kept alongside the sorted map so that finding a client by name does not require a scan of every client.
+ *  When created with a ClientTable (such as in the columnar storage mode, or with a memory-mapped file), the client 
+ *  attributes are held within the table, and the stored Client objects act as views over their table row.
+ *  The changes made to the clients can optionally be recorded within an append-only Journal, which is replayed onto
+ *  the last snapshot when the Calculator is next started.
+ *  The Calculator can be used by several threads at once. Finding and listing the clients doesn't lock; adding, renaming
+ *  and deleting a client locks only the stripe of LOCK_STRIPES locks that its (case-insensitive) name hashes to, along with the
+ *  client itself, so that operations on different names proceed at the same time. The changes made to a client are
+ *  recorded while holding the client's monitor, so they reach the journal in the order they were made.
+ *  The latency of the open, save, findClient and getClients operations is recorded by the CalculatorMetrics (which can
+ *  be published over JMX); the lookups and copies made within the Calculator itself are not recorded. The files opened
+ *  and saved are also recorded as flight recorder events (see the CalculatorEvents).
  */
-public class Calculator {
+public class Calculator implements ClientListener {
 	private static final String EMPTY_SPACE = "";
 	private static final String SPACE = " ";
 	private static final String COMMA = ",";
@@ -20,239 +46,848 @@ public class Calculator {
 	private static final String CLIENT_ALREADY_EXISTS = " already exists.";
 	private static final String NEW_CLIENTS_ADDED = " new client(s) have been added.";
 	private static final String FILE_DOESNT_EXIST = "The file does not exist";
+	private static final String NOT_A_SNAPSHOT = "The file is not a client snapshot";
+	private static final String SNAPSHOT_VERSION_UNSUPPORTED = "The snapshot version is not supported";
 	private static final String NEW_LINE = System.getProperty("line.separator");
-	private static final int MAX_CLIENTS = 3;
+	// The following constants are used by the openParallel method for splitting the file into chunks.
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+	private static final int SEARCH_BUFFER_SIZE = 8192;
+	private static final int SAVE_BUFFER_SIZE = 65536;
+	// The following constants are used for the header of the binary snapshot format.
+	private static final int SNAPSHOT_MAGIC = 0x434C4E54;
+	private static final short SNAPSHOT_VERSION = 3;
+	private static final short SNAPSHOT_VERSION_WITHOUT_FOLDED = 2;
+	private static final short SNAPSHOT_VERSION_WITHOUT_GENERATION = 1;
+	// The size that the journal can reach before it is folded into the snapshot.
+	private static final long JOURNAL_COMPACTION_SIZE = 64L << 20;
+	private static final String TEMPORARY_EXTENSION = ".tmp";
+	private static final String JOURNAL_NOT_OPEN = "The journal is not open";
+	// The number of locks that the client names are divided between.
+	private static final int LOCK_STRIPES = 64;
 	
-	private Client[] clients;
-	private int noClients;
+	// The clients are kept in a sorted map ordered by the client name, which is updated as clients are added and removed.
+	private ConcurrentSkipListMap<String, Client> sorted;
+	// The index maps the lower case client name to the Client (which enables the name lookup in constant time).
+	private ConcurrentHashMap<String, Client> index;
+	// The locks guarding the names, and the number of modifications made to the sorted map.
+	private Object[] locks;
+	private AtomicLong modifications;
+	// The sorted Client array returned by getClients. It is rebuilt only after the clients have changed.
+	private volatile ClientArray clients;
+	// The table holding the client attributes, which is null unless the clients are stored within a ClientTable.
+	private ClientTable table;
+	// The journal that the changes are recorded in (which is null unless the openJournal method has been used), along with
+	// the snapshot that the journal follows, the generation of the snapshot that was last loaded, and the offset of the
+	// previous journal that the snapshot was folded up to.
+	private volatile Journal journal;
+	private String snapshotFile;
+	private long generation;
+	private long folded;
+	// Guards the journal against being compacted by more than one thread, and whether it is being compacted.
+	private Object compaction;
+	private AtomicBoolean compacting;
+	// The segments of the text file that was last saved or opened, along with the clients changed since then.
+	private SegmentTable segments;
+	// Guards the text file against being saved by more than one thread.
+	private Object saving;
+	// The tax schedule that the taxes of the clients are calculated with.
+	private volatile TaxSchedule schedule;
+	// The latency of the open, save, findClient and getClients operations.
+	private CalculatorMetrics metrics;
 	
 	public Calculator() {
-		this.clients = new Client[MAX_CLIENTS];
-		this.noClients = 0;
+		this(false);
 	}
-
+	
 	/**
-	* The sort method is invoked by the getClients method, which will return a sorted Client array. It uses 
-	* the BubbleSort algorithm, being a simple sorting algorithm repetitively stepping through each client and comparing
-	* the client name & swapping the references based on the name compareTo evaluation. Its not the most ideal method for
-	* sorting, but due to the small amount of clients that will be used within the system; this simple method should be fine.
-	*/
-	private void sort() {
-		// Iterates through each index in the client array
-		for(int i = 0; i < this.clients.length; i++) {
-			// Iterates through each index, bringing the client with the smallest evaluated name to position i.
-			for(int index = 0; index < (this.clients.length-1)-i; index++) {
-				// Ensures that the based on the index, and the index afterwards is not a null reference.
-				if ((this.clients[index] != null) && (this.clients[index+1] != null)) {
-					// Compares the current client's name with the next client using the compareTo.
-					if (this.clients[index].getName().compareTo(this.clients[index+1].getName()) > 0) {
-						// Swaps the Clients.
-						Client temp = this.clients[index]; // Sets the temp reference with the current client.
-						this.clients[index] = this.clients[index+1]; // Assigns the next client to the current client.
-						this.clients[index+1] = temp; // Assigns the temp reference to the next client.
-					}
-				}
+	* The main constructor receives a boolean indicating whether the columnar storage mode should be used. In the columnar
+	* mode, the numeric attributes of the stored clients are moved into a ClientTable, which makes bulk scans over the
+	* clients (such as getTotalTax) cache-friendly.
+	* @param columnar boolean - Whether the clients attributes are to be stored in parallel primitive arrays.
+	*/
+	public Calculator(boolean columnar) {
+		this(((columnar) ? new ColumnClientTable() : null));
+	}
+	
+	/**
+	* The third constructor receives the ClientTable that the clients are to be stored within (or null if the clients should hold their
+	* own attributes). If the table already contains clients (such as a reopened MappedClientTable), then those clients are added.
+	* @param table ClientTable - The table that the clients are stored in.
+	*/
+	public Calculator(ClientTable table) {
+		this.sorted = new ConcurrentSkipListMap<String, Client>();
+		this.index = new ConcurrentHashMap<String, Client>();
+		this.locks = new Object[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			this.locks[i] = new Object();
+		}
+		this.modifications = new AtomicLong();
+		this.clients = null;
+		this.table = table;
+		this.compaction = new Object();
+		this.compacting = new AtomicBoolean();
+		this.segments = new SegmentTable();
+		this.saving = new Object();
+		this.schedule = TaxSchedule.getDefault();
+		this.metrics = new CalculatorMetrics(this);
+		if (table != null) {
+			for (Client client : table.getClients()) {
+				this.putClient(client);
 			}
 		}
 	}
 	
 	/**
-	* The resizeArray method will an additional space in the clients array. It transfers the client references on the 
-	* previous clients array to the new one once created. 
+	* The indexKey method converts a client name into the key used by the index. The key is the lower case
+	* version of the name, which enables the lookup to be case-insensitive (in the same way as equalsIgnoreCase).
+	* @param name String - The client name.
+	* @return String - The key used for the index.
 	*/
-	private void resizeArray() {
-		// Creates a new array, adding an additional position.
-		Client[] clients = new Client[this.clients.length + 1];
-		// Transfers the existing clients to the new array.
-		for (int i = 0; i < this.clients.length; i++) {
-			clients[i] = this.clients[i]; // Copies the reference.
-		}
-		// Assigns the new array reference to the other reference.
-		// The old array will be cleaned by the garbage collector.
-		this.clients = clients; 
+	private static String indexKey(String name) {
+		return name.toLowerCase();
+	}
+	
+	/**
+	* The stripe method returns the index of the lock guarding the received client name.
+	* @param name String - The client name.
+	* @return int - The index within the locks.
+	*/
+	private static int stripe(String name) {
+		int hash = indexKey(name).hashCode();
+		return ((hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1));
 	}
 	
 	/**
-	* The addClient method receives a Client object and is responsible for adding it to the Client array.
-	* If there is no more room, it will resize the array using the resizeArray method and recursively invoke
-	* the addClient method again passing the same Client instance. Once the array has enough space, it will 
-	* add the client to the array based on the noClients position (which will be incremented after it has been added).
+	* The addClient method receives a Client object and is responsible for adding it to the structure. The client
+	* is placed into the sorted map (based on its name) and the name index, which makes it available to the next invocation
+	* of getClients. The client names are unique: if a client with the same name (ignoring the case) already exists, the
+	* client isn't added. A name that the ClientTable can't store is refused before the addition is recorded.
 	* @param Client - The Client object that you desire to be added.
+	* @return boolean - Whether the client was added.
+	* @throws IllegalArgumentException - If the name can't be stored within the ClientTable.
 	*/
-	public void addClient(Client client) {
-		// Checks to ensure there is enough space.
-		if (this.noClients < this.clients.length) {
-			this.clients[this.noClients++] = client;
-		} else {
-			// If not it resizes the array
-			this.resizeArray();
-			// and then recursively invokes the addClient method again.
-			this.addClient(client);
+	public boolean addClient(Client client) {
+		Journal journal = this.journal;
+		if (this.table != null) {
+			this.table.checkName(client.getName());
+		}
+		synchronized (this.locks[stripe(client.getName())]) {
+			if (this.index.containsKey(indexKey(client.getName()))) {
+				return false;
+			}
+			// The addition is recorded before the client can be found (and changed) by another thread.
+			if (journal != null) {
+				try {
+					journal.addClient(client);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}
+			if (this.table != null) {
+				this.table.add(client); // Moves the client attributes into the table.
+			}
+			this.segments.changed(client);
+			this.putClient(client);
+		}
+		if (journal != null) {
+			this.journalled();
+		}
+		return true;
+	}
+	
+	/**
+	* The putClient method places the received client into the sorted map (based on its name) and the name index,
+	* which outdates the cached Client array. If the client was calculated with a different tax schedule, it is recalculated
+	* with the schedule of the Calculator.
+	* @param client Client - The client being stored.
+	*/
+	private void putClient(Client client) {
+		if (client.getTaxSchedule() != this.schedule) {
+			client.setTaxSchedule(this.schedule);
+			client.calcTax();
 		}
+		client.setListener(this); // Enables the Calculator to be notified of changes made to the client.
+		this.sorted.put(client.getName(), client); // Adds the client in name order.
+		this.index.put(indexKey(client.getName()), client); // Adds the client to the name index.
+		this.modifications.incrementAndGet(); // The cached array is now out of date.
 	}
 
 	/**
-	* The findClient method receives the client name, and iterates through the clients stored evaluating the recieved
-	* name against the client's. Once found, it will return the Client object. Otherwise, a null reference will be returned.
+	* The findClient method receives the client name, and looks up the name within the index (ignoring the case).
+	* Once found, it will return the Client object. Otherwise, a null reference will be returned.
 	* @param name String - The client's name that you are searching for.
 	* @return Client - The client that has been found, or an null reference (indicating failure).
 	*/
 	public Client findClient(String name) {
-		for (Client client : this.clients) { // Iterates for each stored client.
-			if (client != null) {
-				if (client.getName().equalsIgnoreCase(name)) { // Checks name
-					return client; // Returns client if found.
+		long start = this.metrics.start(CalculatorMetrics.FIND_CLIENT);
+		try {
+			return this.lookupClient(name);
+		} finally {
+			this.metrics.record(CalculatorMetrics.FIND_CLIENT, start);
+		}
+	}
+	
+	/**
+	* The lookupClient method finds the client in the same way as the findClient method, without being timed by the metrics.
+	* It is used within the Calculator, so that only the lookups made by its users are recorded.
+	* @param name String - The client's name that you are searching for.
+	* @return Client - The client that has been found, or an null reference.
+	*/
+	private Client lookupClient(String name) {
+		return this.index.get(indexKey(name)); // Returns the client, or null if the name isn't indexed.
+	}
+	
+	/**
+	* The renameClient method is used to change the name of a client that is stored in the Calculator. It must be used
+	* instead of invoking the setName method on the client directly, as both the index and the sorted order are based on
+	* the client name. The locks of both the old and the new name are held (in the order of the locks) during the rename.
+	* The name is capitalised (as the client setName method does) before the locks are chosen, and a name that the ClientTable
+	* can't store is refused before the client is removed from the index. The client isn't renamed if another client already
+	* has the new name (ignoring the case), which is checked while the locks are held.
+	* @param client Client - The stored client that you want renamed.
+	* @param name String - The new name for the client.
+	* @return boolean - Whether the client was renamed (false if the client isn't stored, or the name is taken by another client).
+	* @throws IllegalArgumentException - If the name can't be stored within the ClientTable.
+	*/
+	public boolean renameClient(Client client, String name) {
+		Journal journal = this.journal;
+		name = Client.convertToUpper(name);
+		if (this.table != null) {
+			this.table.checkName(name);
+		}
+		for (;;) {
+			String oldName = client.getName();
+			int first = stripe(oldName), second = stripe(name);
+			synchronized (this.locks[Math.min(first, second)]) {
+				synchronized (this.locks[Math.max(first, second)]) {
+					if (!oldName.equals(client.getName())) {
+						continue; // The client was renamed by another thread, so the locks are acquired again.
+					}
+					if (this.lookupClient(oldName) != client) {
+						return false; // The client isn't stored.
+					}
+					Client existing = this.lookupClient(name);
+					if ((existing != null) && (existing != client)) {
+						return false; // Another client already has the name.
+					}
+					synchronized (client) {
+						// Removes the client under the old name.
+						this.sorted.remove(oldName);
+						this.index.remove(indexKey(oldName));
+						client.setName(name);
+						if (journal != null) {
+							try {
+								journal.renameClient(oldName, client.getName());
+							} catch (IOException ex) {
+								throw new UncheckedIOException(ex);
+							}
+						}
+						this.segments.changed(client);
+						// Adds the client back under the new name.
+						this.putClient(client);
+					}
 				}
 			}
+			break;
+		}
+		if (journal != null) {
+			this.journalled();
 		}
-		return null; // Otherwise returns a null reference.
+		return true;
 	}
 	
 	/**
 	* The deleteClient method recieves a client name String, which is then searched for using the findClient method.
-	* If the client exists it will proceed to remove the client from the structure; it will create a new array
-	* which will copy the existing client references across, skipping the client that matches the received client name.
-	* It will then decrement the noClients instance variable, and copy the new array reference overwriting the existing one.
-	* The old array is then collected by the garbage collector. It returns a boolean indicating whether it has been removed based
-	* on if the client previously existed.
+	* If the client exists it will proceed to remove the client from both the sorted map and the index, which outdates
+	* the cached Client array. It returns a boolean indicating whether it has been removed based on if the client previously existed.
 	* @param name String - The client's name (relating to the client that you want removed).
 	* @return boolean - A boolean indicating whether the client was removed.
 	*/
 	public boolean deleteClient(String name) {
-		Client rmClient = this.findClient(name); // First finds the client
-		if (rmClient != null) { // If exists proceeds
-			int index = 0;
-			Client[] clients = new Client[this.clients.length]; // New array
-			for (Client client : this.clients) { // Transfers old contents
-				if (client != null) {
-					if (!client.getName().equalsIgnoreCase(rmClient.getName())) { // Skipping the matched client
-						clients[index++] = client; 
+		Journal journal = this.journal;
+		Client rmClient;
+		synchronized (this.locks[stripe(name)]) {
+			rmClient = this.lookupClient(name); // First finds the client
+			if (rmClient != null) { // If exists proceeds
+				synchronized (rmClient) {
+					this.sorted.remove(rmClient.getName());
+					this.index.remove(indexKey(rmClient.getName()));
+					this.modifications.incrementAndGet(); // The cached array is now out of date.
+					rmClient.setListener(null);
+					this.segments.deleted(rmClient);
+					if (journal != null) {
+						try {
+							journal.deleteClient(rmClient.getName());
+						} catch (IOException ex) {
+							throw new UncheckedIOException(ex);
+						}
 					}
 				}
+				if (this.table != null) {
+					this.table.remove(rmClient); // Frees the client's row.
+				}
 			}
-			this.noClients--; // Decrements client count.
-			this.clients = clients; // Assigns the new array reference.
+		}
+		if ((rmClient != null) && (journal != null)) {
+			this.journalled();
 		}
 		return (rmClient != null);
 	}
 	
 	/**
-	* The getClients method returns the client Array. It first sorts the array before returning.
+	* The clientChanged method is invoked by a stored client once its gross salary, residency, or weekly expenses have been set.
+	* The client is marked as changed, and the change is recorded within the journal (if there is one).
+	* @param client Client - The client that was changed.
+	*/
+	public void clientChanged(Client client) {
+		Journal journal = this.journal;
+		synchronized (client) {
+			this.segments.changed(client);
+			if (journal != null) {
+				try {
+					journal.updateClient(client);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}
+		}
+		if (journal != null) {
+			this.journalled();
+		}
+	}
+	
+	/**
+	* The accountAdded method is invoked by a stored client once an account has been added to it (while the client's monitor
+	* is held). The account is recorded within the journal (if there is one).
+	* @param client Client - The client that the account was added to.
+	* @param interestRate double - The interest rate.
+	* @param investmentLength int - The investment length.
+	* @param investmentAmount double - The investment amount.
+	*/
+	public void accountAdded(Client client, double interestRate, int investmentLength, double investmentAmount) {
+		Journal journal = this.journal;
+		this.segments.changed(client);
+		if (journal != null) {
+			try {
+				journal.addAccount(client.getName(), interestRate, investmentLength, investmentAmount);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			this.journalled();
+		}
+	}
+	
+	/**
+	* The accountDeleted method is invoked by a stored client once an account has been deleted from it (while the client's
+	* monitor is held). The deletion is recorded within the journal (if there is one).
+	* @param client Client - The client that the account was deleted from.
+	* @param accountNo int - The number of the account that was deleted.
+	*/
+	public void accountDeleted(Client client, int accountNo) {
+		Journal journal = this.journal;
+		this.segments.changed(client);
+		if (journal != null) {
+			try {
+				journal.deleteAccount(client.getName(), accountNo);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			this.journalled();
+		}
+	}
+	
+	/**
+	* The getClients method returns the client Array sorted based on the client name. The array is copied from the sorted 
+	* map only when the clients have changed since the last invocation (which is determined by the number of modifications
+	* the array was copied after); otherwise the same array is returned.
 	* @return Client[] - The sorted array of clients.
 	*/
 	public Client[] getClients() {
-		this.sort(); // Invokes the sort method.
-		return this.clients;
+		long start = this.metrics.start(CalculatorMetrics.GET_CLIENTS);
+		try {
+			return this.copyClients();
+		} finally {
+			this.metrics.record(CalculatorMetrics.GET_CLIENTS, start);
+		}
+	}
+	
+	/**
+	* The copyClients method returns the sorted client array for the getClients method, copying it only if it has changed.
+	* @return Client[] - The sorted array of clients.
+	*/
+	private Client[] copyClients() {
+		ClientArray clients = this.clients;
+		long modifications = this.modifications.get();
+		if ((clients == null) || (clients.modifications != modifications)) {
+			// The modifications are read before the copy, so a modification made during the copy causes the next copy.
+			clients = new ClientArray(modifications, this.sorted.values().toArray(new Client[0]));
+			this.clients = clients;
+		}
+		return clients.clients;
+	}
+	
+	/**
+	* The ClientArray class holds the sorted Client array, along with the number of modifications it was copied after.
+	*/
+	private static class ClientArray {
+		private final long modifications;
+		private final Client[] clients;
+		
+		private ClientArray(long modifications, Client[] clients) {
+			this.modifications = modifications;
+			this.clients = clients;
+		}
+	}
+	
+	/**
+	* The hasChanges method returns whether any clients have been added, changed or deleted since the clients were last saved
+	* to (or opened from) a text file.
+	* @return boolean - Whether there are unsaved changes.
+	*/
+	public boolean hasChanges() {
+		return this.segments.hasChanges();
 	}
 	
 	public int getNumberOfClients() {
-		return this.noClients;
+		return this.index.size();
+	}
+	
+	/**
+	* The getNumberOfAccounts method returns the total number of accounts held by the clients.
+	* @return int - The number of accounts.
+	*/
+	public int getNumberOfAccounts() {
+		int accounts = 0;
+		for (Client client : this.sorted.values()) {
+			accounts += client.getNumberOfAccounts();
+		}
+		return accounts;
+	}
+	
+	/**
+	* The getMetrics method returns the metrics recording the latency of the operations, which can be published over JMX
+	* using the CalculatorMetrics register method.
+	* @return CalculatorMetrics - The metrics.
+	*/
+	public CalculatorMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	* The setTaxSchedule method changes the tax schedule used by the stored clients (such as to another tax year loaded using
+	* TaxSchedule.load), and then recalculates the taxes of every client with the recalculateTaxes method. The clients are
+	* recalculated from the attributes held in memory, so the client file doesn't need to be opened again.
+	* @param schedule TaxSchedule - The tax schedule.
+	*/
+	public void setTaxSchedule(TaxSchedule schedule) {
+		this.schedule = schedule;
+		for (Client client : this.sorted.values()) {
+			client.setTaxSchedule(schedule);
+		}
+		this.recalculateTaxes();
+	}
+	
+	public TaxSchedule getTaxSchedule() {
+		return this.schedule;
+	}
+	
+	/**
+	* The recalculateTaxes method calculates the income tax, medicare and net salary of every stored client in a single batch
+	* with the tax schedule of the Calculator, using the TaxEngine (which gives the same results as invoking the calcTax method
+	* on each client). When the clients are stored within a ClientTable, the table is calculated directly; otherwise the clients
+	* are copied into arrays, and the results are written back to each client while holding its monitor (as the calcTax method
+	* does). A client whose salary or residency was changed in the meantime is calculated again with the calcTax method instead,
+	* so that the tax of its new salary isn't replaced.
+	*/
+	public void recalculateTaxes() {
+		if (this.table != null) {
+			this.table.recalculateTaxes(this.schedule);
+			return;
+		}
+		Client[] clients = this.getClients();
+		double[] grossSalary = new double[clients.length];
+		boolean[] resident = new boolean[clients.length];
+		double[] tax = new double[clients.length];
+		double[] medicare = new double[clients.length];
+		double[] netSalary = new double[clients.length];
+		for (int i = 0; i < clients.length; i++) {
+			grossSalary[i] = clients[i].getGrossSalary();
+			resident[i] = clients[i].getResident();
+			medicare[i] = clients[i].getMedicare();
+		}
+		TaxEngine.calculate(this.schedule, grossSalary, resident, tax, medicare, netSalary, clients.length);
+		for (int i = 0; i < clients.length; i++) {
+			Client client = clients[i];
+			synchronized (client) {
+				if ((client.getGrossSalary() == grossSalary[i]) && (client.getResident() == resident[i])) {
+					client.setTax(tax[i]);
+					client.setMedicare(medicare[i]);
+					client.setNetSalary(netSalary[i]);
+				} else {
+					client.calcTax();
+				}
+			}
+		}
+	}
+	
+	/**
+	* The getTotalTax method returns the total income tax of every stored client. In the columnar storage mode, the
+	* tax column is scanned directly; otherwise it iterates through each client.
+	* @return double - The total tax.
+	*/
+	public double getTotalTax() {
+		if (this.table != null) {
+			return this.table.getTotalTax();
+		}
+		double total = 0;
+		for (Client client : this.sorted.values()) {
+			total += client.getTax();
+		}
+		return total;
+	}
+	
+	/**
+	* The getTotalMedicare method returns the total medicare levy of every stored client.
+	* @return double - The total medicare.
+	*/
+	public double getTotalMedicare() {
+		if (this.table != null) {
+			return this.table.getTotalMedicare();
+		}
+		double total = 0;
+		for (Client client : this.sorted.values()) {
+			total += client.getMedicare();
+		}
+		return total;
+	}
+	
+	/**
+	* The countClientsWithFunds method counts the stored clients that have at least the received amount available each week
+	* (after their expenses have been deducted from the weekly net salary). The funds and the amount are compared in cents, as
+	* the getAvailableFundsInCents method returns them, so a client counted here has the funds displayed for it.
+	* @param amount double - The weekly amount that the client must have available.
+	* @return int - The number of clients.
+	*/
+	public int countClientsWithFunds(double amount) {
+		if (this.table != null) {
+			return this.table.countClientsWithFunds(amount);
+		}
+		long cents = Money.cents(amount);
+		int count = 0;
+		for (Client client : this.sorted.values()) {
+			if (client.getAvailableFundsInCents() >= cents) {
+				count++;
+			}
+		}
+		return count;
 	}
 	
 	/**
-	* The addClient method is used by the open method in order to parse the details of the client.
-	* It uses the BufferedReader to iterate through the Client data lines until the start of Account information.
-	* @param BufferedReader br - The BufferedReader containing the FileInputStream. 
-	* @param String name - The client name.
+	* The readClient method is used by the open method in order to parse the details of the client.
+	* It uses the ClientReader to iterate through the Client data lines until the start of Account information, 
+	* and then uses the readAccounts method for the parsing of the accounts. Once read the tax is calculated.
+	* @param reader ClientReader - The ClientReader containing the file contents. 
+	* @param name String - The client name.
 	* @return Client - The new Client object.
 	*/
-	private Client addClient(BufferedReader br, String name) throws Exception {
+	private static Client readClient(ClientReader reader, String name) throws IOException {
 		Client client = new Client();
 		client.setName(name);
 		// Iterates until the line starts with the account information.
-		for (String line = br.readLine(); (!(line.startsWith(Client.ACCOUNT) || line.startsWith(Client.NO_ACCOUNTS)));) {
-			if (line.startsWith(Client.FIELD_CLIENT_SALARY)) {
-				client.setGrossSalary(Double.parseDouble(line.replaceFirst(Client.FIELD_CLIENT_SALARY, EMPTY_SPACE).replaceAll(COMMA, EMPTY_SPACE).trim()));					
-			} else if (line.startsWith(Client.FIELD_CLIENT_RESIDENT)) {
-				client.setResident(line.replaceFirst(Client.FIELD_CLIENT_RESIDENT, EMPTY_SPACE).trim().equals(Client.BOOLEAN_LETTER_Y));									
-			} else if (line.startsWith(Client.FIELD_CLIENT_EXPENSES)) {
-				client.setWeeklyExpenses(Double.parseDouble(line.replaceFirst(Client.FIELD_CLIENT_EXPENSES, EMPTY_SPACE).replaceAll(COMMA, EMPTY_SPACE).trim()));																
-			}
-			// Fetches a new line if the account information hasn't been discovered.
-			if (!(line.startsWith(Client.ACCOUNT) || line.startsWith(Client.NO_ACCOUNTS))) {
-				line = br.readLine();
+		for (int field = reader.next(); (field != ClientReader.ACCOUNT) && (field != ClientReader.NO_ACCOUNTS) && 
+										(field != ClientReader.END); field = reader.next()) {
+			switch (field) {
+				case ClientReader.SALARY:
+					client.setGrossSalary(reader.getNumber());
+					break;
+				case ClientReader.RESIDENT:
+					client.setResident(reader.getBoolean());
+					break;
+				case ClientReader.EXPENSES:
+					client.setWeeklyExpenses(reader.getNumber());
+					break;
 			}
 		}
 		client.calcTax(); // Calculates Tax
-		this.addClient(client); // Adds the client to the internal structure.
 		return client;
 	}
 	
 	/**
-	* The addAccounts method is used parsing of the Account data based on the BufferedReader contents, which is iterated
+	* The readAccounts method is used for the parsing of the Account data based on the ClientReader contents, which is iterated
 	* line by line until a Client name has been discovered.
-	* @param BufferedReader br - The BufferedReader containing the FileInputStream. 
-	* @param Client client - The client that will have the accounts added to.
-	* @return String - The line containing the client name.
+	* @param reader ClientReader - The ClientReader containing the file contents. 
+	* @param client Client - The client that will have the accounts added to.
+	* @return int - The field of the line that ended the accounts (being either the client name, or the end of the file).
 	*/
-	private String addAccounts(BufferedReader br, Client client) throws Exception {
+	static int readAccounts(ClientReader reader, Client client) throws IOException {
 		// variables used for storing the account data found.
 		int weeks = 0;
-		double rate = 0, amount = 0;
-		String line = br.readLine(); // The next line.
+		double rate = 0;
+		int field = reader.next(); // The next line.
 		// Iterates until the line starts with the client name details.
-		while ((line != null) && (!line.startsWith(Client.FIELD_CLIENT_NAME))) {
+		for (; (field != ClientReader.NAME) && (field != ClientReader.END); field = reader.next()) {
 			// Parses the details
-			if (line.startsWith(Client.FIELD_ACCOUNT_RATE)) {
-				rate = Double.parseDouble(line.replaceFirst(Client.FIELD_ACCOUNT_RATE, EMPTY_SPACE).trim());
-			} else if (line.startsWith(Client.FIELD_ACCOUNT_WEEKS)) {
-				weeks = Integer.parseInt(line.replaceFirst(Client.FIELD_ACCOUNT_WEEKS, EMPTY_SPACE).trim());
-			} else if (line.startsWith(Client.FIELD_ACCOUNT_AMOUNT)) {
-				amount = Double.parseDouble(line.replaceFirst(Client.FIELD_ACCOUNT_AMOUNT, EMPTY_SPACE).replaceAll(COMMA, EMPTY_SPACE).trim());
-				// Once the amount has been encountered, the account data is then added to the client.
-				client.addAccount(rate, weeks, amount);
+			switch (field) {
+				case ClientReader.RATE:
+					rate = reader.getNumber();
+					break;
+				case ClientReader.WEEKS:
+					weeks = reader.getInteger();
+					break;
+				case ClientReader.AMOUNT:
+					// Once the amount has been encountered, the account data is then added to the client.
+					client.addAccount(rate, weeks, reader.getNumber());
+					break;
 			}
-			// Fetches a new line until it starts with the client name field.
-			if (!line.startsWith(Client.FIELD_CLIENT_NAME)) {
-				line = br.readLine();
+		}
+		return field;
+	}
+	
+	/**
+	* The skipAccounts method is used by the openLazy method in place of the readAccounts method. It steps over the lines up to
+	* the next client name, counting the accounts that the readAccounts method would add, and gives the client the AccountBlock
+	* holding those lines (starting from the current line, being the line that ended the client details).
+	* @param reader ClientReader - The reader (reading the file as ISO-8859-1).
+	* @param client Client - The client that the accounts belong to.
+	* @param file File - The canonical file being read.
+	* @return int - The field of the line that ended the accounts (being a NAME, or END).
+	*/
+	private static int skipAccounts(ClientReader reader, Client client, File file) throws IOException {
+		long start = reader.getLineOffset();
+		int count = 0;
+		int field = reader.next();
+		for (; (field != ClientReader.NAME) && (field != ClientReader.END); field = reader.next()) {
+			if (field == ClientReader.AMOUNT) {
+				count++;
 			}
 		}
-		return line;
+		long end = ((field == ClientReader.END) ? reader.getOffset() : reader.getLineOffset());
+		client.setAccountBlock(new AccountBlock(file, start, end - start, Math.min(count, Client.MAX_ACCOUNTS)));
+		return field;
+	}
+	
+	/**
+	* The decodeName method decodes a name read as ISO-8859-1 (by the openLazy method) with the default charset, which gives the
+	* name that the open method would have read.
+	* @param name String - The name as read.
+	* @return String - The decoded name.
+	*/
+	private static String decodeName(String name) {
+		return new String(name.getBytes(StandardCharsets.ISO_8859_1), Charset.defaultCharset());
 	}
 	
 	/**
 	* The open method receives a filename String which is first checked to determine if it exists, otherwise it will throw an exception with
-	* the error message stating it doesn't exist. If it does, then it will open the file in a InputStream passing it to a bufferedReader, which
+	* the error message stating it doesn't exist. If it does, then it will open the file in a InputStream passing it to a ClientReader, which
 	* is then looped line by line to determine the contents. It loops until a Client name has been found on a line, only enabling the ability to
-	* add a client to the Structure if the client doesn't already exist. It uses the private addClient method and the private addAccounts method
-	* for the parsing of the data inbetween client names.
+	* add a client to the Structure if the client doesn't already exist. It uses the private readClient method and the private readAccounts method
+	* for the parsing of the data inbetween client names. If there were no clients before the file was opened, the segment of
+	* the file holding each client is recorded, so that the file can later be saved incrementally.
 	* @boolean - An indication whether it was successful.
 	* @throws - An exception containing an error message.
 	*/
 	public boolean open(String filename) throws Exception { 
+		long start = this.metrics.start(CalculatorMetrics.OPEN);
+		CalculatorEvents.OpenEvent event = new CalculatorEvents.OpenEvent(filename, false);
+		event.begin();
+		try {
+			return this.read(filename, false, event);
+		} finally {
+			event.commit();
+			this.metrics.record(CalculatorMetrics.OPEN, start);
+		}
+	}
+	
+	/**
+	* The openLazy method loads the received file in the same way as the open method, except that the accounts of each client
+	* aren't read. Instead, the client is given the AccountBlock of the file that holds its accounts (along with the number of
+	* accounts), and the accounts are only read once they are first needed (such as by the getAccounts, getAccount or
+	* getTotalInvestments methods of the client). This reduces the time taken to open the file, and the memory used, when
+	* only a few of the clients' accounts are looked at. The file is read as ISO-8859-1 (so that the offsets of the reader are
+	* the byte offsets within the file), and the names are then decoded with the default charset, as the open method reads them.
+	* The file must not be changed elsewhere while there are accounts that haven't been read (saving the clients to the same
+	* file reads any remaining accounts first). When the clients are stored within a ClientTable that holds the accounts, or
+	* while a journal is open (as the journal records each client along with its accounts), the accounts are read straight away.
+	* @param filename String - The file that you want loaded.
+	* @return boolean - An indication whether it was successful.
+	* @throws Exception - An exception containing an error message.
+	*/
+	public boolean openLazy(String filename) throws Exception {
+		long start = this.metrics.start(CalculatorMetrics.OPEN);
+		CalculatorEvents.OpenEvent event = new CalculatorEvents.OpenEvent(filename, false);
+		event.begin();
+		try {
+			boolean lazy = (((this.table == null) || (!this.table.storesAccounts())) && (this.journal == null));
+			event.lazy = lazy;
+			return this.read(filename, lazy, event);
+		} finally {
+			event.commit();
+			this.metrics.record(CalculatorMetrics.OPEN, start);
+		}
+	}
+	
+	/**
+	* The endSegment method is used by the read method once the record of a client has been read, recording its segment of the
+	* file. The segment of a duplicate record that was skipped is recorded as such, so that it is blanked by the next update.
+	* @param client Client - The client that was read, or null if there isn't one.
+	* @param skipped boolean - Whether the record was skipped.
+	* @param offset long - The offset of the record.
+	* @param end long - The offset after the record.
+	*/
+	private void endSegment(Client client, boolean skipped, long offset, long end) {
+		if (client != null) {
+			this.segments.record(client, offset, end - offset, this.segments.mark());
+		} else if (skipped) {
+			this.segments.skipped(offset, end - offset);
+		}
+	}
+	
+	/**
+	* The read method loads the received file for the open and openLazy methods.
+	* @param filename String - The file that you want loaded.
+	* @param lazy boolean - Whether the accounts are left within the file (to be read once they are needed).
+	* @param event OpenEvent - The event that receives the size of the file, and the number of records and duplicates.
+	* @return boolean - An indication whether it was successful.
+	* @throws Exception - An exception containing an error message.
+	*/
+	private boolean read(String filename, boolean lazy, CalculatorEvents.OpenEvent event) throws Exception {
 		File file = new File(filename); 
 		if (file.exists() && file.isFile()) { // Checks whether exists & is file
-			DataInputStream in = new DataInputStream(new FileInputStream(file));
-			BufferedReader br = new BufferedReader(new InputStreamReader(in));
+			event.bytes = file.length();
+			File source = file.getCanonicalFile(); // The file that the accounts are read from when the open is lazy.
+			ClientReader reader = new ClientReader(new InputStreamReader(new FileInputStream(file),
+																		((lazy) ? StandardCharsets.ISO_8859_1 : Charset.defaultCharset())));
 			StringBuilder errors = new StringBuilder();
 			int clientCount = 0;
-			for (String line = br.readLine(); line != null;) { // Iterates line by line
-				if (line.startsWith(Client.FIELD_CLIENT_NAME)) { // If its a new client (base on name)
-					// fetches the name from line
-					String name = line.replaceFirst(Client.FIELD_CLIENT_NAME, EMPTY_SPACE).trim();
-					// Searches for client in system
-					if (this.findClient(name) == null) { // If null, means the client doesn't exist
-						// Proceed to parse further lines relating to the Client. Once the client has
-						// been processed it will continue with the accounts passing the client reference 
-						// into the addAccounts.
-						line = this.addAccounts(br, this.addClient(br, name));
-						clientCount++; // increments client count (which will be later used)
+			int duplicates = 0;
+			// The segments are only recorded when the file will hold every client.
+			boolean recording = this.sorted.isEmpty();
+			// The client whose record is being read (or null, along with skipping, while a duplicate record is being skipped).
+			Client previous = null;
+			boolean skipping = false;
+			long previousOffset = 0;
+			if (recording) {
+				this.segments.begin(file);
+			}
+			try {
+				for (int field = reader.next(); field != ClientReader.END;) { // Iterates line by line
+					if (field == ClientReader.NAME) { // If its a new client (base on name)
+						// fetches the name from line
+						String name = ((lazy) ? decodeName(reader.getText()) : reader.getText());
+						// The segment of the previous record ends where this record starts.
+						this.endSegment(previous, skipping, previousOffset, reader.getLineOffset());
+						previous = null;
+						skipping = true; // Until the client has been added.
+						previousOffset = reader.getLineOffset();
+						// Searches for client in system
+						if (this.lookupClient(name) == null) { // If null, means the client doesn't exist
+							// Proceed to parse further lines relating to the Client. Once the client has
+							// been processed it will continue with the accounts passing the client reference 
+							// into the readAccounts. The accounts (or their block) are read before the client is added,
+							// so that the client is recorded within the journal along with its accounts.
+							Client client = readClient(reader, name);
+							field = ((lazy) ? skipAccounts(reader, client, source) : readAccounts(reader, client));
+							if (this.addClient(client)) { // Adds the client to the internal structure.
+								previous = client;
+								skipping = false;
+								clientCount++; // increments client count (which will be later used)
+							} else {
+								// The client was added by another thread in the meantime.
+								errors.append(((errors.length() > 0) ? COMMA + SPACE: EMPTY_SPACE) + name);
+								duplicates++;
+							}
+						} else {
+							// Appends any clients that already exist to the StringBuilder of errors.
+							errors.append(((errors.length() > 0) ? COMMA + SPACE: EMPTY_SPACE) + name);
+							duplicates++;
+							field = reader.next(); // Reads a line to continue iterating
+						}
 					} else {
-						// Appends any clients that already exist to the StringBuilder of errors.
-						errors.append(((errors.toString().length() > 0) ? COMMA + SPACE: EMPTY_SPACE) + name);
-						line = br.readLine(); // Reads a line to continue iterating
+						field = reader.next(); // Reads a line until the line indicates a new client.
 					}
-				} else {
-					line = br.readLine(); // Reads a line until the line indicates a new client.
 				}
+				if (recording) {
+					this.endSegment(previous, skipping, previousOffset, reader.getOffset());
+					this.segments.end(reader.getOffset(), true);
+				}
+			} finally {
+				reader.close(); // Closes file stream.
+				this.segments.abort(); // Discards the segments if the file wasn't completely read.
+				event.records = clientCount + duplicates;
+				event.duplicates = duplicates;
 			}
 			// If there are errors, it will throw an exception outputing the clients that already exist, and
 			// a count indicating the amount that were successfully added.
-			if (errors.toString().length() > 0) {
+			if (errors.length() > 0) {
+				throw new Exception(errors.toString() + CLIENT_ALREADY_EXISTS + 
+									NEW_LINE + clientCount + NEW_CLIENTS_ADDED);
+			}
+		} else {
+			// Can't find file
+			throw new FileNotFoundException(FILE_DOESNT_EXIST);
+		}
+		return true; // If it made it here nothing went wrong.
+	}
+	
+	/**
+	* The openParallel method loads the received file in the same way as the open method, but splits the file into chunks
+	* (at the lines containing a client name) which are then parsed at the same time on the ForkJoinPool. The parsed clients
+	* are then added to the structure in the same order as they appear within the file, so that any clients that already exist
+	* are reported in the same way as the open method. Small files are parsed as a single chunk.
+	* @param filename String - The file that you want loaded.
+	* @return boolean - An indication whether it was successful.
+	* @throws Exception - An exception containing an error message.
+	*/
+	public boolean openParallel(String filename) throws Exception {
+		long start = this.metrics.start(CalculatorMetrics.OPEN);
+		CalculatorEvents.OpenEvent event = new CalculatorEvents.OpenEvent(filename, true);
+		event.begin();
+		try {
+			return this.readParallel(filename, event);
+		} finally {
+			event.commit();
+			this.metrics.record(CalculatorMetrics.OPEN, start);
+		}
+	}
+	
+	/**
+	* The readParallel method loads the received file in chunks for the openParallel method.
+	* @param filename String - The file that you want loaded.
+	* @param event OpenEvent - The event that receives the size of the file, and the number of records and duplicates.
+	* @return boolean - An indication whether it was successful.
+	* @throws Exception - An exception containing an error message.
+	*/
+	private boolean readParallel(String filename, CalculatorEvents.OpenEvent event) throws Exception {
+		File file = new File(filename);
+		if (file.exists() && file.isFile()) { // Checks whether exists & is file
+			event.bytes = file.length();
+			Chunk[] chunks = Chunk.split(file, ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD);
+			ForkJoinTask.invokeAll(chunks); // Parses the chunks on the ForkJoinPool.
+			StringBuilder errors = new StringBuilder();
+			int clientCount = 0;
+			// Merges the chunks in the order that they appear within the file.
+			for (Chunk chunk : chunks) {
+				for (int i = 0; i < chunk.names.size(); i++) {
+					String name = chunk.names.get(i);
+					if (this.addClient(chunk.clients.get(i))) { // If added, means the client didn't exist
+						clientCount++;
+					} else {
+						// Appends any clients that already exist to the StringBuilder of errors.
+						errors.append(((errors.length() > 0) ? COMMA + SPACE: EMPTY_SPACE) + name);
+						event.duplicates++;
+					}
+					event.records++;
+				}
+				// Any error raised while parsing the chunk is thrown once the clients before it have been added.
+				if (chunk.error != null) {
+					throw chunk.error;
+				}
+			}
+			if (errors.length() > 0) {
 				throw new Exception(errors.toString() + CLIENT_ALREADY_EXISTS + 
 									NEW_LINE + clientCount + NEW_CLIENTS_ADDED);
 			}
-			in.close(); // Closes file stream.
 		} else {
 			// Can't find file
 			throw new FileNotFoundException(FILE_DOESNT_EXIST);
@@ -261,22 +896,534 @@ public class Calculator {
 	}
 	
 	/**
-	* The save method is used to output the clients stored in memory to a text file base on the received filename.
+	* The Chunk class is used by the openParallel method. It is the part of the file (between two byte offsets) that
+	* is parsed by one task on the ForkJoinPool. Each chunk starts at a line containing a client name, and it records the
+	* clients (along with the name as it appeared within the file) in the order that they were parsed.
+	*/
+	private static class Chunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private File file;
+		private long start;
+		private long end;
+		private ArrayList<String> names;
+		private ArrayList<Client> clients;
+		private Exception error;
+		
+		private Chunk(File file, long start, long end) {
+			this.file = file;
+			this.start = start;
+			this.end = end;
+			this.names = new ArrayList<String>();
+			this.clients = new ArrayList<Client>();
+			this.error = null;
+		}
+		
+		/**
+		* The split method divides the received file into (at most) the received number of chunks. Each chunk is at least 
+		* MIN_CHUNK_SIZE bytes, and the boundary between two chunks is moved forward to the start of the next client name line.
+		* @param file File - The file being split.
+		* @param count int - The desired number of chunks.
+		* @return Chunk[] - The chunks in the order that they appear within the file.
+		*/
+		private static Chunk[] split(File file, int count) throws IOException {
+			ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+			FileInputStream in = new FileInputStream(file);
+			try {
+				FileChannel channel = in.getChannel();
+				long length = channel.size();
+				long size = Math.max(MIN_CHUNK_SIZE, (length / Math.max(1, count)) + 1);
+				for (long start = 0; start < length;) {
+					long end = ((start + size) < length) ? findRecordStart(channel, start + size) : length;
+					chunks.add(new Chunk(file, start, end));
+					start = end;
+				}
+			} finally {
+				in.close();
+			}
+			return chunks.toArray(new Chunk[chunks.size()]);
+		}
+		
+		/**
+		* The findRecordStart method searches forward from the received offset for the start of a line that begins with
+		* the client name field.
+		* @param channel FileChannel - The channel of the file being searched.
+		* @param from long - The offset to search from.
+		* @return long - The offset of the line, or the file length if there are no further client names.
+		*/
+		private static long findRecordStart(FileChannel channel, long from) throws IOException {
+			byte[] keyword = Client.FIELD_CLIENT_NAME.getBytes();
+			ByteBuffer buffer = ByteBuffer.allocate(SEARCH_BUFFER_SIZE);
+			// The search starts at the byte before the offset, which must be a line separator.
+			for (long position = from - 1; position < channel.size();) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if (read <= keyword.length) {
+					break;
+				}
+				for (int i = 0; i < (read - keyword.length); i++) {
+					if ((buffer.get(i) == '\n') || (buffer.get(i) == '\r')) {
+						int match = 0;
+						while ((match < keyword.length) && (buffer.get(i + 1 + match) == keyword[match])) {
+							match++;
+						}
+						if (match == keyword.length) {
+							return (position + i + 1);
+						}
+					}
+				}
+				// Overlaps the next read, in case the name line spans the two reads.
+				position += (read - keyword.length);
+			}
+			return channel.size();
+		}
+		
+		/**
+		* The compute method parses the clients within the chunk. Any error that occurs is recorded (rather than thrown), so
+		* that the clients parsed before the error can still be added.
+		*/
+		protected void compute() {
+			try {
+				FileInputStream in = new FileInputStream(this.file);
+				ClientReader reader = new ClientReader(new InputStreamReader(
+									new RangeInputStream(in.getChannel(), this.start, this.end)));
+				try {
+					for (int field = reader.next(); field != ClientReader.END;) {
+						if (field == ClientReader.NAME) {
+							String name = reader.getText();
+							Client client = readClient(reader, name);
+							field = readAccounts(reader, client);
+							this.names.add(name);
+							this.clients.add(client);
+						} else {
+							field = reader.next();
+						}
+					}
+				} finally {
+					reader.close();
+				}
+			} catch (Exception ex) {
+				this.error = ex;
+			}
+		}
+	}
+	
+	/**
+	* The RangeInputStream class is used to read the bytes of a FileChannel that are between two offsets.
+	*/
+	private static class RangeInputStream extends InputStream {
+		private FileChannel channel;
+		private long position;
+		private long end;
+		
+		private RangeInputStream(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.position = start;
+			this.end = end;
+		}
+		
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return ((this.read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff));
+		}
+		
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this.position >= this.end) {
+				return -1;
+			}
+			int read = this.channel.read(ByteBuffer.wrap(b, off, (int)Math.min(len, this.end - this.position)), this.position);
+			if (read > 0) {
+				this.position += read;
+			}
+			return read;
+		}
+		
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+	
+	/**
+	* The save method is used to output the clients stored in memory to a text file base on the received filename. Each client
+	* is serialised directly to a buffered Writer (rather than composing the whole file in memory first), so the memory used
+	* doesn't depend on the number of clients. The TrimmedWriter holds back any trailing white space, which gives the same
+	* output as trimming the complete file. The file is always written in full, with the clients in name order; the segment
+	* of the file holding each client is recorded as it is written, so that the saveIncremental method can later update it.
 	* @param file String - The file that you want the output to be saved as.
 	* @return boolean - A boolean indicating success.
-	* @throws Exception - Throws a error message if something went wrong.
+	* @throws IOException - Throws a error message if something went wrong.
 	*/
 	public boolean save(String file) throws IOException {
-		PrintWriter out = new PrintWriter(new FileWriter(file)); // Opens the file in a PrintWriter
-		StringBuilder builder = new StringBuilder(); // Uses a StringBuilder for composing the client output.
-		for (Client client : this.clients) { // Iterates for each client.
-			if (client != null) {
-				builder.append(client.serialise()); // Appends the client output using the created serialise method.
+		return this.save(file, false);
+	}
+	
+	/**
+	* The saveIncremental method saves the clients to the received file, rewriting only the records of the clients that have
+	* changed since the file was last saved or opened (using the SegmentTable update method). A changed record that still fits
+	* within its old segment is written over it and padded with blanks, a record that no longer fits (or the record of a new
+	* client) is appended to the end of the file, out of name order, and the record of a deleted client is blanked. The file
+	* is still read the same by the open method, but it is no longer the sorted and trimmed file written by the save method.
+	* If the segments of the file aren't known (as it wasn't the file last saved or opened, or it has been changed elsewhere),
+	* or too much of the file is blank, the file is written in full as the save method does.
+	* @param file String - The file that you want the output to be saved as.
+	* @return boolean - A boolean indicating success.
+	* @throws IOException - Throws a error message if something went wrong.
+	*/
+	public boolean saveIncremental(String file) throws IOException {
+		return this.save(file, true);
+	}
+	
+	/**
+	* The second save method saves the clients for the save and saveIncremental methods, recording the SaveEvent and the metrics.
+	* @param file String - The file that you want the output to be saved as.
+	* @param incremental boolean - Whether only the changed records are rewritten (if the file can be updated).
+	* @return boolean - A boolean indicating success.
+	* @throws IOException - Throws a error message if something went wrong.
+	*/
+	private boolean save(String file, boolean incremental) throws IOException {
+		long start = this.metrics.start(CalculatorMetrics.SAVE);
+		CalculatorEvents.SaveEvent event = new CalculatorEvents.SaveEvent(file);
+		event.begin();
+		try {
+			return this.write(file, incremental, event);
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.bytes = new File(file).length();
+				event.commit();
+			}
+			this.metrics.record(CalculatorMetrics.SAVE, start);
+		}
+	}
+	
+	/**
+	* The write method writes the received file for the save method.
+	* @param file String - The file that you want the output to be saved as.
+	* @param incremental boolean - Whether only the changed records are rewritten (if the file can be updated).
+	* @param event SaveEvent - The event that receives the number of records written, and whether the file was updated.
+	* @return boolean - A boolean indicating success.
+	* @throws IOException - Throws a error message if something went wrong.
+	*/
+	private boolean write(String file, boolean incremental, CalculatorEvents.SaveEvent event) throws IOException {
+		synchronized (this.saving) {
+			if (incremental && this.segments.canUpdate(new File(file))) {
+				event.updated = true;
+				event.records = this.segments.update(); // Rewrites only the changed records.
+				return true;
+			}
+			this.segments.begin(new File(file));
+			this.loadAccounts(new File(file)); // Reads any accounts still within the file, before it is overwritten.
+			// Opens the file in a buffered Writer.
+			TrimmedWriter out = new TrimmedWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)), SAVE_BUFFER_SIZE));
+			try {
+				Client previous = null;
+				long previousOffset = 0;
+				long previousMark = 0;
+				for (Client client : this.sorted.values()) { // Iterates for each client.
+					// The segment of the previous client ends where this client starts (after the white space being held back).
+					long offset = out.getOffset();
+					if (previous != null) {
+						this.segments.record(previous, previousOffset, offset - previousOffset, previousMark);
+					}
+					previousMark = this.segments.mark();
+					client.serialise(out); // Writes the client output using the serialise method.
+					event.records++;
+					previous = client;
+					previousOffset = offset;
+				}
+				if (previous != null) {
+					this.segments.record(previous, previousOffset, out.getWritten() - previousOffset, previousMark);
+				}
+			} catch (IOException ex) {
+				this.segments.abort(); // Discards the segments, as the file wasn't completely written.
+				throw ex;
+			} finally {
+				out.close(); // Closes the Writer
+			}
+			this.segments.end(out.getWritten(), true);
+			return true; // If it made it here nothing went wrong.
+		}
+	}
+	
+	/**
+	* The loadAccounts method reads the accounts of the clients (opened by the openLazy method) that are still within the received file.
+	* @param file File - The file.
+	* @throws IOException - If the accounts couldn't be read.
+	*/
+	private void loadAccounts(File file) throws IOException {
+		if (!file.isFile()) {
+			return;
+		}
+		File source = file.getCanonicalFile();
+		RandomAccessFile in = new RandomAccessFile(source, "r");
+		try {
+			for (Client client : this.sorted.values()) {
+				client.loadAccounts(source, in);
+			}
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	* The saveSnapshot method outputs the clients stored in memory to a binary snapshot file. The snapshot starts with a
+	* header (being the SNAPSHOT_MAGIC number, the SNAPSHOT_VERSION, the generation, the folded journal offset and the number of clients),
+	* which is followed by each client in the format written by the Client writeSnapshot method. The values are written without any formatting, so the 
+	* snapshot holds exactly the same data as the clients in memory.
+	* @param file String - The file that you want the snapshot to be saved as.
+	* @return boolean - A boolean indicating success.
+	* @throws IOException - Throws a error message if something went wrong.
+	*/
+	public boolean saveSnapshot(String file) throws IOException {
+		return this.saveSnapshot(file, 0, 0);
+	}
+	
+	/**
+	* The second saveSnapshot method also receives the generation and the folded journal offset that are recorded within the
+	* snapshot header. They are used by the journal, to determine whether (and from where) the journal follows the snapshot.
+	* The clients are taken from the getClients array, so that the count matches the clients written.
+	* @param file String - The file that you want the snapshot to be saved as.
+	* @param generation long - The generation of the snapshot.
+	* @param folded long - The offset of the journal (of the previous generation) that the snapshot was folded up to.
+	* @return boolean - A boolean indicating success.
+	*/
+	private boolean saveSnapshot(String file, long generation, long folded) throws IOException {
+		Client[] clients = this.getClients();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), SAVE_BUFFER_SIZE));
+		try {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeShort(SNAPSHOT_VERSION);
+			out.writeLong(generation);
+			out.writeLong(folded);
+			out.writeInt(clients.length);
+			for (Client client : clients) { // Iterates for each client.
+				client.writeSnapshot(out);
+			}
+		} finally {
+			out.close();
+		}
+		return true; // If it made it here nothing went wrong.
+	}
+	
+	/**
+	* The openSnapshot method loads the clients from a binary snapshot file (which was written by the saveSnapshot method).
+	* In the same way as the open method, any clients that already exist are not added, and are reported in the thrown exception.
+	* @param filename String - The snapshot file that you want loaded.
+	* @return boolean - An indication whether it was successful.
+	* @throws Exception - An exception containing an error message.
+	*/
+	public boolean openSnapshot(String filename) throws Exception {
+		File file = new File(filename);
+		if (file.exists() && file.isFile()) { // Checks whether exists & is file
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), SAVE_BUFFER_SIZE));
+			StringBuilder errors = new StringBuilder();
+			int clientCount = 0;
+			try {
+				// Checks the header, to ensure the file is a snapshot that can be read.
+				if (in.readInt() != SNAPSHOT_MAGIC) {
+					throw new IOException(NOT_A_SNAPSHOT);
+				}
+				short version = in.readShort();
+				if (version == SNAPSHOT_VERSION) {
+					this.generation = in.readLong();
+					this.folded = in.readLong();
+				} else if (version == SNAPSHOT_VERSION_WITHOUT_FOLDED) {
+					this.generation = in.readLong();
+					this.folded = 0;
+				} else if (version == SNAPSHOT_VERSION_WITHOUT_GENERATION) {
+					this.generation = 0;
+					this.folded = 0;
+				} else {
+					throw new IOException(SNAPSHOT_VERSION_UNSUPPORTED);
+				}
+				for (int count = in.readInt(); count > 0; count--) {
+					Client client = Client.readSnapshot(in);
+					if (this.addClient(client)) { // If added, means the client didn't exist
+						clientCount++;
+					} else {
+						// Appends any clients that already exist to the StringBuilder of errors.
+						errors.append(((errors.length() > 0) ? COMMA + SPACE: EMPTY_SPACE) + client.getName());
+					}
+				}
+			} finally {
+				in.close();
+			}
+			if (errors.length() > 0) {
+				throw new Exception(errors.toString() + CLIENT_ALREADY_EXISTS + 
+									NEW_LINE + clientCount + NEW_CLIENTS_ADDED);
 			}
+		} else {
+			// Can't find file
+			throw new FileNotFoundException(FILE_DOESNT_EXIST);
 		}
-		// Writes the contents of the StringBuilder to the file triming any surrounding white spaces/new lines.
-		out.print(builder.toString().trim());
-		out.close(); // Closes the PrintWriter
 		return true; // If it made it here nothing went wrong.
 	}
-}
\ No newline at end of file
+	
+	/**
+	* The openJournal method starts recording the changes made to the clients within the received journal file. If the received 
+	* snapshot exists, it is first loaded, and any changes that were recorded in the journal since the snapshot was saved are then
+	* replayed. Once the journal grows beyond JOURNAL_COMPACTION_SIZE, it is folded into the snapshot using the compactJournal method.
+	* @param snapshot String - The snapshot file that the journal follows.
+	* @param journal String - The journal file.
+	* @return boolean - An indication whether it was successful.
+	* @throws Exception - An exception containing an error message.
+	*/
+	public boolean openJournal(String snapshot, String journal) throws Exception {
+		this.generation = 0;
+		this.folded = 0;
+		if (new File(snapshot).isFile()) {
+			this.openSnapshot(snapshot);
+		}
+		this.journal = Journal.open(journal, this, this.generation, this.folded);
+		this.snapshotFile = snapshot;
+		return true;
+	}
+	
+	/**
+	* The compactJournal method folds the journal into the snapshot. As other threads can continue to change the clients, the
+	* clients in memory aren't saved; instead, the snapshot is loaded into a separate Calculator, and the journal records that
+	* have been committed are replayed onto it. That is saved as a snapshot of the next generation (recording the offset it was
+	* folded up to), which replaces the existing snapshot once it has been completely written, and the journal is then restarted
+	* with the records appended since. If the Calculator were to stop before the journal was restarted, the records after the 
+	* folded offset would be replayed when the journal is next opened.
+	* @throws IOException - If the snapshot couldn't be saved.
+	*/
+	public void compactJournal() throws IOException {
+		Journal journal = this.journal;
+		if (journal == null) {
+			throw new IOException(JOURNAL_NOT_OPEN);
+		}
+		synchronized (this.compaction) {
+			long generation = journal.getGeneration();
+			long end = journal.checkpoint();
+			Calculator folded = new Calculator();
+			if (new File(this.snapshotFile).isFile()) {
+				try {
+					folded.openSnapshot(this.snapshotFile);
+				} catch (IOException ex) {
+					throw ex;
+				} catch (Exception ex) {
+					throw new IOException(ex.getMessage(), ex);
+				}
+			}
+			Journal.fold(journal.getFilename(), folded, end);
+			File temporary = new File(this.snapshotFile + TEMPORARY_EXTENSION);
+			folded.saveSnapshot(temporary.getPath(), generation + 1, end);
+			Files.move(temporary.toPath(), new File(this.snapshotFile).toPath(), 
+						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			journal.restart(generation + 1, end);
+		}
+	}
+	
+	/**
+	* The commitJournal method writes any changes that are waiting within the journal to disk.
+	* @throws IOException - If the changes couldn't be written.
+	*/
+	public void commitJournal() throws IOException {
+		if (this.journal != null) {
+			this.journal.commit();
+		}
+	}
+	
+	/**
+	* The closeJournal method commits any waiting changes and closes the journal. Further changes are no longer recorded.
+	* @throws IOException - If the changes couldn't be written.
+	*/
+	public void closeJournal() throws IOException {
+		if (this.journal != null) {
+			this.journal.close();
+			this.journal = null;
+		}
+	}
+	
+	/**
+	* The journalled method is invoked once a change has been recorded within the journal. It folds the journal into the
+	* snapshot once the journal has grown beyond JOURNAL_COMPACTION_SIZE (unless another thread is already doing so).
+	*/
+	private void journalled() {
+		Journal journal = this.journal;
+		try {
+			// Only one thread compacts the journal; the others continue to append records to it.
+			if ((journal != null) && (journal.size() > JOURNAL_COMPACTION_SIZE) && this.compacting.compareAndSet(false, true)) {
+				try {
+					this.compactJournal();
+				} finally {
+					this.compacting.set(false);
+				}
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+	
+	/**
+	* The TrimmedWriter class is used by the save method. It holds back any white space that is written, only passing it on
+	* once it has been followed by another character. Therefore, the white space at the end of the output is never written.
+	*/
+	private static class TrimmedWriter extends FilterWriter {
+		private StringBuilder whiteSpace;
+		private long written; // The number of chars passed on.
+		
+		private TrimmedWriter(Writer out) {
+			super(out);
+			this.whiteSpace = new StringBuilder();
+			this.written = 0;
+		}
+		
+		/**
+		* The getWritten method returns the number of chars that have been passed on, excluding the white space being held back.
+		* @return long - The number of chars.
+		*/
+		private long getWritten() {
+			return this.written;
+		}
+		
+		/**
+		* The getOffset method returns the offset that the next char (other than white space) will be written at.
+		* @return long - The offset in chars.
+		*/
+		private long getOffset() {
+			return (this.written + this.whiteSpace.length());
+		}
+		
+		private void release() throws IOException {
+			if (this.whiteSpace.length() > 0) {
+				this.out.append(this.whiteSpace);
+				this.written += this.whiteSpace.length();
+				this.whiteSpace.setLength(0);
+			}
+		}
+		
+		public void write(int c) throws IOException {
+			if (c <= ' ') {
+				this.whiteSpace.append((char)c);
+			} else {
+				this.release();
+				this.out.write(c);
+				this.written++;
+			}
+		}
+		
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			for (int i = off; i < (off + len); i++) {
+				this.write(cbuf[i]);
+			}
+		}
+		
+		public void write(String str, int off, int len) throws IOException {
+			// Finds the trailing white space within the String.
+			int end = off + len;
+			while ((end > off) && (str.charAt(end - 1) <= ' ')) {
+				end--;
+			}
+			if (end > off) {
+				this.release();
+				this.out.write(str, off, end - off);
+				this.written += end - off;
+			}
+			this.whiteSpace.append(str, end, off + len);
+		}
+	}
+}
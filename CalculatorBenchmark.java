@@ -0,0 +1,294 @@
+/*
+ *  Description:
+ *  The CalculatorBenchmark class measures the time and the memory allocated by the hot paths of the Calculator, Client and
+ *  Account classes, so that the effect of a change can be compared between runs. For each of the registry sizes, it writes
+ *  a client file of that many clients using the ClientBookGenerator (from a fixed seed, so every run uses the same clients)
+ *  to a temporary file, which is opened into the Calculator (and is also the file that the open benchmark opens). Each benchmark is then run for a number of warmup iterations (which are
+ *  discarded) and measurement iterations of a fixed duration, and the mean time per operation (with its standard deviation
+ *  across the iterations) and the bytes allocated per operation (by the benchmark thread) are displayed.
+ *      java CalculatorBenchmark [-sizes 1000,10000] [-warmup 3] [-iterations 5] [-time 500] [-filter name]
+ *  The values that the benchmarks compute are accumulated into a sink, so that the work can't be removed by the compiler.
+ */
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CalculatorBenchmark {
+	private static final long SEED = 20261018L;
+	private static final int[] DEFAULT_SIZES = {1000, 10000, 100000};
+	private static final int DEFAULT_WARMUP = 3;
+	private static final int DEFAULT_ITERATIONS = 5;
+	private static final long DEFAULT_TIME = 500; // The duration of each iteration in milliseconds.
+	// The operations are run in batches between each reading of the clock, with the batch doubled (up to MAX_BATCH) while
+	// a batch takes less than MIN_BATCH_NANOS, so that reading the clock doesn't add to the time of a quick operation.
+	private static final int MAX_BATCH = 1024;
+	private static final long MIN_BATCH_NANOS = 10000;
+	private static final double NANOS_PER_MILLI = 1e6;
+	private static final String HEADER = "%-36s %9s %14s %12s %14s";
+	private static final String ROW = "%-36s %9d %14.1f %12.1f %14.1f";
+	private static final String MSG_ENVIRONMENT = "Java %s (%s), %d processors, seed %d, %d warmup x %d iterations of %d ms";
+	private static final String ERR_ALLOCATION = "Warning: the JVM can't measure the allocated bytes.";
+
+	private static long sink; // Accumulates the results of the benchmarks.
+
+	private int warmup = DEFAULT_WARMUP;
+	private int iterations = DEFAULT_ITERATIONS;
+	private long time = DEFAULT_TIME;
+	private String filter = null;
+	private com.sun.management.ThreadMXBean threads;
+
+	private CalculatorBenchmark() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if ((bean instanceof com.sun.management.ThreadMXBean) && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+			this.threads = (com.sun.management.ThreadMXBean)bean;
+			this.threads.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			System.out.println(ERR_ALLOCATION);
+		}
+	}
+
+	/**
+	* The Operation interface is a single operation of a benchmark. The received index is incremented for each invocation,
+	* and can be used to choose the data (such as the client) that the operation uses.
+	*/
+	private interface Operation {
+		long run(int index) throws Exception;
+	}
+
+	/**
+	* The Result class holds the measurements of a benchmark.
+	*/
+	private static class Result {
+		private double meanNanos;
+		private double deviationNanos;
+		private double bytes;
+	}
+
+	/**
+	* The measure method runs the received operation for the warmup iterations, and then for the measurement iterations,
+	* returning the mean time per operation, its standard deviation (across the iterations), and the bytes allocated per operation.
+	* @param operation Operation - The operation.
+	* @return Result - The measurements.
+	*/
+	private Result measure(Operation operation) throws Exception {
+		int index = 0;
+		for (int i = 0; i < this.warmup; i++) {
+			index = this.iterate(operation, index, null);
+		}
+		double[] nanos = new double[this.iterations];
+		long[] allocation = new long[2]; // The total bytes allocated, and the total operations.
+		for (int i = 0; i < this.iterations; i++) {
+			long[] iteration = new long[3];
+			index = this.iterate(operation, index, iteration);
+			nanos[i] = iteration[0] / (double)iteration[1];
+			allocation[0] += iteration[2];
+			allocation[1] += iteration[1];
+		}
+		Result result = new Result();
+		for (double value : nanos) {
+			result.meanNanos += value / nanos.length;
+		}
+		for (double value : nanos) {
+			result.deviationNanos += ((value - result.meanNanos) * (value - result.meanNanos)) / Math.max(1, nanos.length - 1);
+		}
+		result.deviationNanos = Math.sqrt(result.deviationNanos);
+		result.bytes = ((this.threads != null) ? (allocation[0] / (double)allocation[1]) : Double.NaN);
+		return result;
+	}
+
+	/**
+	* The iterate method runs the operation in batches until the duration of an iteration has passed (running at least one
+	* operation), and records the elapsed time, the number of operations, and the bytes allocated.
+	* @param operation Operation - The operation.
+	* @param index int - The index of the first operation.
+	* @param iteration long[] - Receives the elapsed nanoseconds, the operations and the allocated bytes (or null).
+	* @return int - The index following the last operation.
+	*/
+	private int iterate(Operation operation, int index, long[] iteration) throws Exception {
+		long threadId = Thread.currentThread().getId();
+		long allocated = ((this.threads != null) ? this.threads.getThreadAllocatedBytes(threadId) : 0);
+		long start = System.nanoTime();
+		long deadline = start + (long)(this.time * NANOS_PER_MILLI);
+		long operations = 0, now = start;
+		long result = 0;
+		int batch = 1;
+		do {
+			long batchStart = now;
+			for (int i = 0; i < batch; i++) {
+				result += operation.run(index++);
+			}
+			operations += batch;
+			now = System.nanoTime();
+			if (((now - batchStart) < MIN_BATCH_NANOS) && (batch < MAX_BATCH)) {
+				batch *= 2;
+			}
+		} while (now < deadline);
+		sink += result;
+		if (iteration != null) {
+			iteration[0] = now - start;
+			iteration[1] = operations;
+			iteration[2] = ((this.threads != null) ? (this.threads.getThreadAllocatedBytes(threadId) - allocated) : 0);
+		}
+		return index;
+	}
+
+	private void run(String name, int size, Operation operation) throws Exception {
+		if ((this.filter == null) || name.toLowerCase().contains(this.filter.toLowerCase())) {
+			Result result = this.measure(operation);
+			System.out.println(String.format(ROW, name, size, result.meanNanos, result.deviationNanos, result.bytes));
+		}
+	}
+
+	/**
+	* The runAll method runs each of the benchmarks against a Calculator holding the received number of clients.
+	* @param size int - The number of clients.
+	*/
+	private void runAll(final int size) throws Exception {
+		final File file = File.createTempFile("benchmark", ".dat");
+		final File output = File.createTempFile("benchmark", ".out.dat");
+		file.deleteOnExit();
+		output.deleteOnExit();
+		ClientBookGenerator generator = new ClientBookGenerator();
+		generator.setClients(size);
+		generator.setSeed(SEED);
+		generator.generate(file.getPath());
+		final Calculator calculator = open(file);
+		final Client[] clients = calculator.getClients();
+		final String[] names = new String[size];
+		for (int i = 0; i < size; i++) {
+			names[i] = clients[i].getName();
+		}
+		shuffle(names, new Random(SEED + 1)); // The lookups are made in a fixed random order.
+		final Calculator scratch = open(file);
+		try {
+			this.run("Calculator.open", size, index -> {
+				Calculator opened = new Calculator();
+				opened.open(file.getPath());
+				return opened.getNumberOfClients();
+			});
+			this.run("Calculator.openLazy", size, index -> {
+				Calculator opened = new Calculator();
+				opened.openLazy(file.getPath());
+				return opened.getNumberOfClients();
+			});
+			this.run("Calculator.openLazy+getAccounts", size, index -> {
+				// The time taken until the accounts of a single client can be displayed.
+				Calculator opened = new Calculator();
+				opened.openLazy(file.getPath());
+				return opened.findClient(names[index % size]).getAccounts().length();
+			});
+			this.run("Calculator.save", size, index -> (calculator.save(output.getPath()) ? 1 : 0));
+			this.run("Calculator.saveIncremental", size, index -> {
+				// A single client is changed, so that only its record is rewritten.
+				Client client = calculator.findClient(names[index % size]);
+				client.setWeeklyExpenses(client.getWeeklyExpenses());
+				return (calculator.saveIncremental(output.getPath()) ? 1 : 0);
+			});
+			this.run("Calculator.findClient", size, index -> calculator.findClient(names[index % size]).getNumberOfAccounts());
+			this.run("Calculator.getClients (cached)", size, index -> calculator.getClients().length);
+			this.run("Calculator.getClients (sorted)", size, index -> {
+				// Deleting and adding back a client outdates the array, so that it is built again from the sorted map.
+				Client client = scratch.findClient(names[index % size]);
+				scratch.deleteClient(client.getName());
+				scratch.addClient(client);
+				return scratch.getClients().length;
+			});
+			this.run("Calculator.deleteClient+addClient", size, index -> {
+				Client client = scratch.findClient(names[index % size]);
+				scratch.deleteClient(client.getName());
+				return (scratch.addClient(client) ? 1 : 0);
+			});
+			this.run("Client.calcTax", size, index -> {
+				Client client = clients[index % size];
+				client.calcTax();
+				return (long)client.getNetSalary();
+			});
+			this.run("Client.toString", size, index -> clients[index % size].toString().length());
+			this.run("Client.getAccounts", size, index -> clients[index % size].getAccounts().length());
+			this.run("Client.serialise", size, index -> clients[index % size].serialise().length());
+			final Account[] accounts = collectAccounts(clients);
+			this.run("Account.calcTotalAmount", size, index -> (long)accounts[index % accounts.length].calcTotalAmount());
+			this.run("Account.calcTotalAmount (uncached)", size, index -> (long)accounts[index % accounts.length].calcTotalAmount(false));
+			this.run("Account.calcInvestment", size, index -> accounts[index % accounts.length].calcInvestment().length());
+			this.run("Account.calcInvestment (uncached)", size, index -> {
+				Account.getProjectionCache().clear();
+				return accounts[index % accounts.length].calcInvestment().length();
+			});
+		} finally {
+			file.delete();
+			output.delete();
+		}
+	}
+
+	/**
+	* The open method returns a Calculator holding the clients of the received file.
+	* @param file File - The client file.
+	* @return Calculator - The Calculator.
+	*/
+	private static Calculator open(File file) throws Exception {
+		Calculator calculator = new Calculator();
+		calculator.open(file.getPath());
+		return calculator;
+	}
+
+	private static void shuffle(String[] values, Random random) {
+		for (int i = values.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			String value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+	}
+
+	private static Account[] collectAccounts(Client[] clients) {
+		List<Account> accounts = new ArrayList<Account>();
+		for (Client client : clients) {
+			for (int accountNo = 1; accountNo <= client.getNumberOfAccounts(); accountNo++) {
+				accounts.add(client.findAccount(accountNo));
+			}
+		}
+		return accounts.toArray(new Account[accounts.size()]);
+	}
+
+	public static void main(String[] args) throws Exception {
+		CalculatorBenchmark benchmark = new CalculatorBenchmark();
+		int[] sizes = DEFAULT_SIZES;
+		for (int i = 0; i < (args.length - 1); i += 2) {
+			switch (args[i]) {
+				case "-sizes":
+					String[] values = args[i + 1].split(",");
+					sizes = new int[values.length];
+					for (int j = 0; j < values.length; j++) {
+						sizes[j] = Integer.parseInt(values[j].trim());
+					}
+					break;
+				case "-warmup":
+					benchmark.warmup = Integer.parseInt(args[i + 1]);
+					break;
+				case "-iterations":
+					benchmark.iterations = Math.max(1, Integer.parseInt(args[i + 1]));
+					break;
+				case "-time":
+					benchmark.time = Long.parseLong(args[i + 1]);
+					break;
+				case "-filter":
+					benchmark.filter = args[i + 1];
+					break;
+				default:
+					throw new IllegalArgumentException(args[i]);
+			}
+		}
+		System.out.println(String.format(MSG_ENVIRONMENT, System.getProperty("java.version"), System.getProperty("java.vm.name"),
+											Runtime.getRuntime().availableProcessors(), SEED, benchmark.warmup, benchmark.iterations, benchmark.time));
+		System.out.println(String.format(HEADER, "Benchmark", "Clients", "ns/op", "+/- ns/op", "bytes/op"));
+		for (int size : sizes) {
+			benchmark.runAll(size);
+		}
+		if (sink == 42) {
+			System.out.println(); // Keeps the sink in use.
+		}
+	}
+}
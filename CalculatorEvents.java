@@ -0,0 +1,139 @@
+/*
+ *  Description:
+ *  The CalculatorEvents class holds the JDK Flight Recorder events emitted by the Calculator, so that a recording (such as
+ *  one started with -XX:StartFlightRecording) shows where the time of a slow load or report went. The events are:
+ *  OpenEvent and SaveEvent, for the client files opened and saved by the Calculator; TaxBatchEvent, for the taxes calculated
+ *  by the TaxEngine in a batch; and ProjectionEvent, for the account projections. The projections are on the hot path of
+ *  the reports, so the ProjectionEvent has a PROJECTION_THRESHOLD (only the projections taking longer are recorded), which can
+ *  be lowered within the recording settings (such as calculator.Projection#threshold=0 ms) to record every projection.
+ *  While no recording is running, the events cost next to nothing, as the JVM removes the unused event objects.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+public class CalculatorEvents {
+	private static final String CATEGORY = "Calculator";
+	// The projections taking less time than the threshold aren't recorded (unless the threshold is changed by the settings).
+	private static final String PROJECTION_THRESHOLD = "100 us";
+	// The kinds of projection recorded by the ProjectionEvent.
+	public static final String PROJECTION_TOTAL = "total";
+	public static final String PROJECTION_TABLE = "table";
+
+	private CalculatorEvents() {
+	}
+
+	/**
+	* The OpenEvent is emitted by the Calculator open, openLazy and openParallel methods, for the client file that was loaded.
+	*/
+	@Name("calculator.Open")
+	@Label("Open Client File")
+	@Category(CATEGORY)
+	@Description("A client file loaded by the Calculator")
+	public static class OpenEvent extends Event {
+		@Label("File")
+		public String file;
+		@Label("File Size")
+		@DataAmount
+		public long bytes;
+		@Label("Records")
+		@Description("The number of client records within the file")
+		public int records;
+		@Label("Duplicates")
+		@Description("The number of client records that weren't added, as the name already exists")
+		public int duplicates;
+		@Label("Parallel")
+		public boolean parallel;
+		@Label("Lazy")
+		@Description("Whether the accounts were left within the file, to be read once they are needed")
+		public boolean lazy;
+
+		public OpenEvent(String file, boolean parallel) {
+			this.file = file;
+			this.parallel = parallel;
+		}
+	}
+
+	/**
+	* The SaveEvent is emitted by the Calculator save method, for the client file that was saved.
+	*/
+	@Name("calculator.Save")
+	@Label("Save Client File")
+	@Category(CATEGORY)
+	@Description("A client file saved by the Calculator")
+	public static class SaveEvent extends Event {
+		@Label("File")
+		public String file;
+		@Label("File Size")
+		@DataAmount
+		public long bytes;
+		@Label("Records")
+		@Description("The number of client records written (only the changed records when the file is updated)")
+		public int records;
+		@Label("Updated")
+		@Description("Whether only the changed records were rewritten")
+		public boolean updated;
+
+		public SaveEvent(String file) {
+			this.file = file;
+		}
+	}
+
+	/**
+	* The TaxBatchEvent is emitted by the TaxEngine, for the taxes of a batch of clients.
+	*/
+	@Name("calculator.TaxBatch")
+	@Label("Tax Batch")
+	@Category(CATEGORY)
+	@Description("The taxes of a batch of clients calculated by the TaxEngine")
+	public static class TaxBatchEvent extends Event {
+		@Label("Clients")
+		public int clients;
+		@Label("Parallel")
+		public boolean parallel;
+
+		public TaxBatchEvent(int clients, boolean parallel) {
+			this.clients = clients;
+			this.parallel = parallel;
+		}
+	}
+
+	/**
+	* The ProjectionEvent is emitted by the Account calcTotalAmount and calcInvestment methods. The fields are only set once
+	* the event is known to be committed (using the set method), so the projections below the threshold don't pay for them.
+	*/
+	@Name("calculator.Projection")
+	@Label("Account Projection")
+	@Category(CATEGORY)
+	@Description("An account projection, taken from the ProjectionCache or computed")
+	@Threshold(PROJECTION_THRESHOLD)
+	@StackTrace(false)
+	public static class ProjectionEvent extends Event {
+		@Label("Kind")
+		@Description("Whether the total or the table of the projection was requested")
+		public String kind;
+		@Label("Weeks")
+		public int weeks;
+		@Label("Cached")
+		@Description("Whether the projection was taken from the ProjectionCache")
+		public boolean cached;
+
+		/**
+		* The set method sets the fields of the event (which is done only when the event should be committed).
+		* @param kind String - The kind of projection, being PROJECTION_TOTAL or PROJECTION_TABLE.
+		* @param weeks int - The investment length of the account.
+		* @param cached boolean - Whether the projection was taken from the ProjectionCache.
+		*/
+		public void set(String kind, int weeks, boolean cached) {
+			this.kind = kind;
+			this.weeks = weeks;
+			this.cached = cached;
+		}
+	}
+}
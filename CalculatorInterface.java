@@ -7,8 +7,12 @@
  *  validation checking (with error handling), and uses the relating Calculator instance for the 
  *  storage, management, and retrieval of Client objects. This is the only class that displays any
  *  output to the user. It is the singular starting and ending point for the application.
+ *  When launched with the -batch argument, the commands are instead read from the given file (or the standard input)
+ *  and applied by a CommandBatch without any prompting, and only a summary is displayed.
  */
+import java.io.*;
 import java.util.*;
+import javax.management.JMException;
 public class CalculatorInterface {
 
 	// The following constants are used for input prompts, and error messages relating to input given.
@@ -88,6 +92,14 @@ public class CalculatorInterface {
 	private static final String ADD_ACCOUNT_FUNDS = "Funds available for investment: $%.2f";
 	private static final String DELETE_ACCOUNT_ERR = ERROR_PREFIX + "The account does not exist";
 	private static final String DELETE_ACCOUNT_MSG = "The account was deleted";
+	private static final String BATCH_ARGUMENT = "-batch";
+	private static final String BATCH_STANDARD_INPUT = "-";
+	private static final String BATCH_USAGE = "Usage: java CalculatorInterface [-batch [command file]]";
+	private static final String BATCH_SUMMARY = "Commands: %d, applied: %d, failed: %d (%d ms)";
+	private static final String BATCH_COMMAND = "  %-14s %d";
+	private static final String BATCH_CLIENTS = "Clients: %d";
+	private static final String BATCH_ERRORS = "Errors (%d of %d shown):";
+	private static final String BATCH_ERROR = "  ";
 	
 	// The Calculator class is used for the management of the Client objects. It handles
 	// the underlying structure in which the clients are stored in.
@@ -253,7 +265,11 @@ public class CalculatorInterface {
 				selection = displayMenu(TITLE_NAME_MENU, NAME_MENU);
 				switch(selection) {
 					case 1:
-						client.setName(inputClientName());
+						if (!calculator.renameClient(client, inputClientName())) {
+							// The name was taken by another client in the meantime, so a new name is entered instead.
+							System.out.println(ERR_CLIENT_NAME_ALREADY_EXISTS);
+							name = inputClientName();
+						}
 						break;
 					case 2:
 						name = inputClientName();
@@ -355,31 +371,32 @@ public class CalculatorInterface {
 	* invest (on a weekly basis) by using the inputDouble method. It receives, which is used to calculate the total investment. If the total investment is greater than the amount of weekly funds available
 	* then it will show a error message stating that the desired investment has exceeded the available funds. If other accounts exist, then it 
 	* will also mention the funds invested in the other accounts. It will iterate until a valid investment has been given.
-	* @param availableFunds double - The amount of funds available after the net salary subtracts the expenditure.
-	* @param otherInvestment double - The total amount invested in other acounts.
+	* The amounts are compared in cents, with the desired investment rounded to cents.
+	* @param availableFunds long - The cents available after the net salary subtracts the expenditure.
+	* @param otherInvestment long - The total cents invested in other acounts.
 	* @return double - The amount of money the client desires to invest.
 	*/
-	private static double inputInvestmentAmount(double availableFunds, double otherInvestment) {
-		double investment = 0, totalInvestment = 0;
+	private static double inputInvestmentAmount(long availableFunds, long otherInvestment) {
+		long investment = 0, totalInvestment = 0;
 		do {
 			// Fetches the desired investment from the user using the inputDouble method.
-			investment = inputDouble(INPUT_INVESTMENT_VALUE_MSG);
+			investment = Money.cents(inputDouble(INPUT_INVESTMENT_VALUE_MSG));
 			totalInvestment = investment + otherInvestment;
 			// If the total investment is greater than the available funds (being the net salary - the living expenses).
 			if (totalInvestment > availableFunds) {
 				// If the other investment exists, then it will show a note stating the funds invested in that account, and the remaining funds available.
 				if (otherInvestment > 0) {
-					System.out.println(String.format(INPUT_INVESTMENT_VALUE_ERR1, otherInvestment, availableFunds - otherInvestment));
+					System.out.println(String.format(INPUT_INVESTMENT_VALUE_ERR1, Money.toDouble(otherInvestment), Money.toDouble(availableFunds - otherInvestment)));
 				} else {
 					// It will then show a error message stating that the investment has exceeded the funds available.
-					System.out.println(String.format(INPUT_INVESTMENT_VALUE_ERR2, availableFunds));
+					System.out.println(String.format(INPUT_INVESTMENT_VALUE_ERR2, Money.toDouble(availableFunds)));
 				}
 				System.out.println(SPACE);
 			}
 		// It will iterate until the total investment is less than the available funds.
 		} while (totalInvestment > availableFunds);
 		// Returns the desired investment amount.
-		return investment;
+		return Money.toDouble(investment);
 	}
 	
 	/**
@@ -397,14 +414,16 @@ public class CalculatorInterface {
 		// Checks to ensure that the client has enough room for another account.
 		if (client.getNumberOfAccounts() < Client.MAX_ACCOUNTS) {
 			// Checks to ensure the client has enough available funds to invest.
-			if (client.getAvailableFunds() > client.getTotalInvestments()) {
+			long availableFunds = client.getAvailableFundsInCents();
+			long totalInvestments = client.getTotalInvestmentsInCents();
+			if (availableFunds > totalInvestments) {
 				// Shows a brief message indicating available funds for investment.
-				System.out.println(String.format(ADD_ACCOUNT_FUNDS, (client.getAvailableFunds() - client.getTotalInvestments())));
+				System.out.println(String.format(ADD_ACCOUNT_FUNDS, Money.toDouble(availableFunds - totalInvestments)));
 				// Prompts for input using the methods. It will invoke the methods in the same order as the parameters.
 				// Once input has been gathered, it will pass the data onto the addAccount method belonging to the client instance.
 				client.addAccount(inputInterestRate(), 
 					inputInvestmentLength(), 
-					inputInvestmentAmount(client.getAvailableFunds(), client.getTotalInvestments()));
+					inputInvestmentAmount(availableFunds, totalInvestments));
 				// So after adding the account, it will display an awesome message indicating it was successful.
 				System.out.println(NEW_LINE + ADD_ACCOUNT_MSG);
 			} else {
@@ -605,9 +624,62 @@ public class CalculatorInterface {
 	}
 	
 	/**
-	* The main method launches the program.
+	* The runBatch method applies the commands within the received file (or the standard input, if the filename is null or a
+	* hyphen) to the Calculator using a CommandBatch. Once all of the commands have been applied, it displays a summary of the
+	* number of commands that were applied and that failed (with the first of the error messages).
+	* @param filename String - The command file.
+	* @return boolean - Whether every command was applied.
+	*/
+	public static boolean runBatch(String filename) {
+		CommandBatch batch = new CommandBatch(calculator);
+		long start = System.nanoTime();
+		try {
+			Reader reader = (((filename == null) || filename.equals(BATCH_STANDARD_INPUT)) ? 
+								new InputStreamReader(System.in) : new FileReader(filename));
+			try {
+				batch.run(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException ex) {
+			System.out.println(ERROR_PREFIX + ex.getMessage());
+			return false;
+		}
+		long applied = 0;
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < CommandBatch.COMMANDS.length; i++) {
+			applied += batch.getApplied(i);
+			builder.append(NEW_LINE).append(String.format(BATCH_COMMAND, CommandBatch.COMMANDS[i], batch.getApplied(i)));
+		}
+		System.out.println(String.format(BATCH_SUMMARY, batch.getCommands(), applied, batch.getFailed(), 
+											(System.nanoTime() - start) / 1000000) + builder);
+		System.out.println(String.format(BATCH_CLIENTS, calculator.getNumberOfClients()));
+		if (!batch.getErrors().isEmpty()) {
+			System.out.println(String.format(BATCH_ERRORS, batch.getErrors().size(), batch.getFailed()));
+			for (String error : batch.getErrors()) {
+				System.out.println(BATCH_ERROR + error);
+			}
+		}
+		return (batch.getFailed() == 0);
+	}
+	
+	/**
+	* The main method launches the program. With the -batch argument, the commands are applied from the following file
+	* (or the standard input) instead, and the exit status indicates whether any of the commands failed.
 	*/
 	public static void main(String[] args) {
-		CalculatorInterface.mainMenu(); // Starts the program by invoking the mainMenu() method.
+		try {
+			calculator.getMetrics().register(CalculatorInterface.class.getName()); // Enables the metrics to be viewed in JConsole.
+		} catch (JMException ex) {
+			System.out.println(ex.getMessage());
+		}
+		if (args.length == 0) {
+			CalculatorInterface.mainMenu(); // Starts the program by invoking the mainMenu() method.
+		} else if (args[0].equals(BATCH_ARGUMENT) && (args.length <= 2)) {
+			System.exit(runBatch((args.length > 1) ? args[1] : null) ? 0 : 1);
+		} else {
+			System.out.println(BATCH_USAGE);
+			System.exit(2);
+		}
 	}
 }
\ No newline at end of file
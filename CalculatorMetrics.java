@@ -0,0 +1,138 @@
+/*
+ *  Description:
+ *  The CalculatorMetrics class records the latency of the open, save, findClient and getClients operations of a Calculator
+ *  within a LatencyHistogram each, and publishes them (along with the number of clients and accounts, and the use of the
+ *  ProjectionCache) as an MXBean, using the register method. The operations are timed with the start and record methods:
+ *  when the metrics are disabled, start returns NOT_TIMED without reading the clock, and record then does nothing, so the
+ *  cost of the disabled metrics is a single volatile read. Every operation is counted, but only one in SAMPLE_RATE of
+ *  the findClient and getClients operations is timed, as reading the clock twice costs more than the lookup itself (and
+ *  stops the lookups made one after another from overlapping their cache misses). The metrics are enabled unless the
+ *  calculator.metrics system property is false, and can be turned on or off at any time through the Enabled attribute.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class CalculatorMetrics implements CalculatorMetricsMXBean {
+	// The operations that are timed, which are the indexes of their histograms.
+	public static final int OPEN = 0;
+	public static final int SAVE = 1;
+	public static final int FIND_CLIENT = 2;
+	public static final int GET_CLIENTS = 3;
+	private static final int OPERATIONS = 4;
+	// The operations that are timed only once in every SAMPLE_RATE (on average).
+	private static final boolean[] SAMPLED = {false, false, true, true};
+	private static final int SAMPLE_RATE = 16;
+	// Returned by the start method when the operation isn't being timed.
+	public static final long NOT_TIMED = Long.MIN_VALUE;
+	private static final String ENABLED_PROPERTY = "calculator.metrics";
+	private static final String OBJECT_NAME = "Calculator:type=CalculatorMetrics,name=";
+
+	private final Calculator calculator;
+	private final LatencyHistogram[] histograms;
+	private volatile boolean enabled;
+
+	/**
+	* The constructor receives the Calculator whose clients are counted by the getClients and getAccounts methods.
+	* @param calculator Calculator - The calculator being measured.
+	*/
+	public CalculatorMetrics(Calculator calculator) {
+		this.calculator = calculator;
+		this.histograms = new LatencyHistogram[OPERATIONS];
+		for (int i = 0; i < OPERATIONS; i++) {
+			this.histograms[i] = new LatencyHistogram();
+		}
+		this.enabled = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+	}
+
+	/**
+	* The start method is invoked at the start of a timed operation, which counts the operation.
+	* @param operation int - The operation, such as OPEN.
+	* @return long - The start time in nanoseconds, or NOT_TIMED if the metrics are disabled (or the operation isn't sampled).
+	*/
+	public long start(int operation) {
+		if (!this.enabled) {
+			return NOT_TIMED;
+		}
+		this.histograms[operation].increment();
+		if (SAMPLED[operation] && (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0)) {
+			return NOT_TIMED;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	* The record method is invoked at the end of a timed operation (whether it succeeded or not), which records the time
+	* elapsed since the received start time.
+	* @param operation int - The operation, such as OPEN.
+	* @param start long - The time returned by the start method.
+	*/
+	public void record(int operation, long start) {
+		if (start != NOT_TIMED) {
+			this.histograms[operation].record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	* The register method publishes the metrics on the platform MBeanServer, replacing any metrics published under the same name.
+	* @param name String - The name that the metrics are published under (such as the name of the application).
+	* @throws JMException - If the metrics couldn't be published.
+	*/
+	public void register(String name) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName(OBJECT_NAME + ObjectName.quote(name));
+		if (server.isRegistered(objectName)) {
+			server.unregisterMBean(objectName);
+		}
+		server.registerMBean(this, objectName);
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public LatencyHistogram getOpen() {
+		return this.histograms[OPEN];
+	}
+
+	public LatencyHistogram getSave() {
+		return this.histograms[SAVE];
+	}
+
+	public LatencyHistogram getFindClient() {
+		return this.histograms[FIND_CLIENT];
+	}
+
+	public LatencyHistogram getGetClients() {
+		return this.histograms[GET_CLIENTS];
+	}
+
+	public int getClients() {
+		return this.calculator.getNumberOfClients();
+	}
+
+	public int getAccounts() {
+		return this.calculator.getNumberOfAccounts();
+	}
+
+	public long getProjectionsComputed() {
+		return Account.getProjectionCache().getMisses();
+	}
+
+	public long getProjectionCacheHits() {
+		return Account.getProjectionCache().getHits();
+	}
+
+	public void reset() {
+		for (LatencyHistogram histogram : this.histograms) {
+			histogram.reset();
+		}
+	}
+}
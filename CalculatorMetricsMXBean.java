@@ -0,0 +1,46 @@
+/*
+ *  Description:
+ *  The CalculatorMetricsMXBean interface is the management interface of the CalculatorMetrics, which is published over
+ *  JMX (such as to JConsole). The latency of each instrumented operation is published as a composite of the count, the mean,
+ *  the 50th and 99th percentiles, and the maximum (in microseconds), mapped from the LatencyHistogram getters.
+ */
+public interface CalculatorMetricsMXBean {
+
+	/**
+	* The isEnabled method returns whether the operations are being timed.
+	* @return boolean - Whether the metrics are enabled.
+	*/
+	public boolean isEnabled();
+
+	/**
+	* The setEnabled method turns the timing of the operations on or off. While off, each operation only reads the flag.
+	* @param enabled boolean - Whether the metrics are to be enabled.
+	*/
+	public void setEnabled(boolean enabled);
+
+	public LatencyHistogram getOpen();
+
+	public LatencyHistogram getSave();
+
+	public LatencyHistogram getFindClient();
+
+	public LatencyHistogram getGetClients();
+
+	public int getClients();
+
+	public int getAccounts();
+
+	/**
+	* The getProjectionsComputed method returns the number of account projections that were computed (rather than being
+	* taken from the ProjectionCache).
+	* @return long - The number of projections computed.
+	*/
+	public long getProjectionsComputed();
+
+	public long getProjectionCacheHits();
+
+	/**
+	* The reset method discards the recorded latencies of every operation.
+	*/
+	public void reset();
+}
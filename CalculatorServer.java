@@ -0,0 +1,522 @@
+/*
+ *  Description:
+ *  The CalculatorServer class is an embedded HTTP server (using the HttpServer of the JDK) that enables other services to
+ *  query and change the clients of a shared Calculator, with the responses written as JSON:
+ *      GET    /clients?offset=0&limit=100          The clients in name order (without their accounts).
+ *      POST   /clients                              Adds a client (name, salary, resident and expenses).
+ *      GET    /clients/{name}                       The client, with the tax figures and the accounts.
+ *      DELETE /clients/{name}                       Deletes the client.
+ *      POST   /clients/{name}/accounts              Adds an account (rate, weeks and amount).
+ *      GET    /clients/{name}/accounts/{number}     The account, with the balance at the end of each month.
+ *      DELETE /clients/{name}/accounts/{number}     Deletes the account.
+ *      GET    /totals                               The number of clients, and the total tax and medicare.
+ *  The parameters are taken from the query string and from a form-encoded body. The clients are added and validated by a
+ *  CommandBatch (in the same way as the batch commands). Each request is handled on its own virtual thread where the JDK
+ *  provides them, and otherwise on a cached thread pool.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class CalculatorServer implements HttpHandler {
+	public static final int DEFAULT_PORT = 8080;
+	private static final String PATH_CLIENTS = "clients";
+	private static final String PATH_ACCOUNTS = "accounts";
+	private static final String PATH_TOTALS = "totals";
+	private static final String METHOD_GET = "GET";
+	private static final String METHOD_POST = "POST";
+	private static final String METHOD_DELETE = "DELETE";
+	private static final String PARAM_OFFSET = "offset";
+	private static final String PARAM_LIMIT = "limit";
+	private static final String PARAM_NAME = "name";
+	private static final String PARAM_SALARY = "salary";
+	private static final String PARAM_RESIDENT = "resident";
+	private static final String PARAM_EXPENSES = "expenses";
+	private static final String PARAM_RATE = "rate";
+	private static final String PARAM_WEEKS = "weeks";
+	private static final String PARAM_AMOUNT = "amount";
+	private static final String CONTENT_TYPE = "Content-Type";
+	private static final String JSON_TYPE = "application/json; charset=utf-8";
+	private static final String VIRTUAL_THREAD_EXECUTOR = "newVirtualThreadPerTaskExecutor";
+	private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+	private static final int DEFAULT_LIMIT = 100;
+	private static final int MAX_LIMIT = 10000;
+	private static final int STOP_DELAY = 1;
+	private static final int STATUS_OK = 200;
+	private static final int STATUS_CREATED = 201;
+	private static final int STATUS_BAD_REQUEST = 400;
+	private static final int STATUS_NOT_FOUND = 404;
+	private static final int STATUS_METHOD_NOT_ALLOWED = 405;
+	private static final int STATUS_CONFLICT = 409;
+	private static final int STATUS_SERVER_ERROR = 500;
+	private static final String ERR_NOT_FOUND = "Not found.";
+	private static final String ERR_METHOD_NOT_ALLOWED = "Method not allowed.";
+	private static final String ERR_CLIENT_DOESNT_EXIST = "The client does not exist.";
+	private static final String ERR_CLIENT_EXISTS = "The client already exists.";
+	private static final String ERR_ACCOUNT_DOESNT_EXIST = "The account does not exist.";
+	private static final String ERR_MISSING_PARAMETER = "Missing parameter: ";
+	private static final String ERR_NOT_NUMERIC = "Not a numeric value: ";
+	private static final String ERR_RESIDENT = "The resident parameter must be either y or n.";
+	private static final String MSG_STARTED = "Listening on port %d (%s)";
+	private static final String MSG_VIRTUAL_THREADS = "virtual threads";
+	private static final String MSG_THREAD_POOL = "cached thread pool";
+
+	private Calculator calculator;
+	private CommandBatch commands;
+	private HttpServer server;
+	private ExecutorService executor;
+	private boolean virtualThreads;
+
+	public CalculatorServer(Calculator calculator) {
+		this.calculator = calculator;
+		this.commands = new CommandBatch(calculator);
+	}
+
+	/**
+	* The start method starts the server on the received port (or an ephemeral port if it is zero).
+	* @param port int - The port.
+	* @throws IOException - If the port couldn't be bound.
+	*/
+	public void start(int port) throws IOException {
+		// Disables Nagle's algorithm on the connections (unless configured otherwise), as the response headers and body are
+		// written separately, which otherwise delays each small response until the client's delayed acknowledgement.
+		if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+			System.setProperty(NO_DELAY_PROPERTY, Boolean.TRUE.toString());
+		}
+		this.executor = this.newExecutor();
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.server.createContext("/", this);
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	}
+
+	/**
+	* The newExecutor method returns an executor that starts a virtual thread for each task. The virtual threads are looked
+	* up reflectively, as they are only provided by newer JDKs (and are a preview feature of some); a cached thread pool is
+	* used where they aren't available.
+	* @return ExecutorService - The executor.
+	*/
+	private ExecutorService newExecutor() {
+		try {
+			ExecutorService executor = (ExecutorService)Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR).invoke(null);
+			this.virtualThreads = true;
+			return executor;
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			this.virtualThreads = false;
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	* The stop method stops the server, waiting briefly for the requests being handled.
+	*/
+	public void stop() {
+		if (this.server != null) {
+			this.server.stop(STOP_DELAY);
+			this.executor.shutdown();
+			try {
+				this.executor.awaitTermination(STOP_DELAY, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			this.server = null;
+		}
+	}
+
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	public boolean usesVirtualThreads() {
+		return this.virtualThreads;
+	}
+
+	/**
+	* The handle method is invoked by the HttpServer for each request. It divides the path into its segments and passes
+	* the request on to the method for the resource. An Exception thrown while handling the request is sent as a bad
+	* request (with its message), and any other failure as a server error.
+	* @param exchange HttpExchange - The request and response.
+	*/
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			String[] path = splitPath(exchange.getRequestURI().getRawPath());
+			String method = exchange.getRequestMethod();
+			if ((path.length == 1) && path[0].equals(PATH_TOTALS)) {
+				this.allow(exchange, method, METHOD_GET);
+				this.sendTotals(exchange);
+			} else if ((path.length == 1) && path[0].equals(PATH_CLIENTS)) {
+				if (method.equals(METHOD_POST)) {
+					this.addClient(exchange, readParameters(exchange));
+				} else {
+					this.allow(exchange, method, METHOD_GET);
+					this.sendClients(exchange, readParameters(exchange));
+				}
+			} else if ((path.length >= 2) && path[0].equals(PATH_CLIENTS)) {
+				Client client = this.calculator.findClient(path[1]);
+				if (client == null) {
+					throw new HttpException(STATUS_NOT_FOUND, ERR_CLIENT_DOESNT_EXIST);
+				}
+				if (path.length == 2) {
+					if (method.equals(METHOD_DELETE)) {
+						this.deleteClient(exchange, client);
+					} else {
+						this.allow(exchange, method, METHOD_GET);
+						this.sendClient(exchange, client);
+					}
+				} else if ((path.length == 3) && path[2].equals(PATH_ACCOUNTS)) {
+					this.allow(exchange, method, METHOD_POST);
+					this.addAccount(exchange, client, readParameters(exchange));
+				} else if ((path.length == 4) && path[2].equals(PATH_ACCOUNTS)) {
+					int accountNo = parseInteger(path[3]);
+					if (method.equals(METHOD_DELETE)) {
+						this.deleteAccount(exchange, client, accountNo);
+					} else {
+						this.allow(exchange, method, METHOD_GET);
+						this.sendAccount(exchange, client, accountNo);
+					}
+				} else {
+					throw new HttpException(STATUS_NOT_FOUND, ERR_NOT_FOUND);
+				}
+			} else {
+				throw new HttpException(STATUS_NOT_FOUND, ERR_NOT_FOUND);
+			}
+		} catch (HttpException ex) {
+			this.sendError(exchange, ex.status, ex.getMessage());
+		} catch (RuntimeException ex) {
+			this.sendError(exchange, STATUS_SERVER_ERROR, String.valueOf(ex));
+		} catch (Exception ex) {
+			this.sendError(exchange, STATUS_BAD_REQUEST, ex.getMessage());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void allow(HttpExchange exchange, String method, String allowed) throws HttpException {
+		if (!method.equals(allowed)) {
+			exchange.getResponseHeaders().set("Allow", allowed);
+			throw new HttpException(STATUS_METHOD_NOT_ALLOWED, ERR_METHOD_NOT_ALLOWED);
+		}
+	}
+
+	/**
+	* The sendClients method sends a page of the clients in name order, being up to limit clients from the offset.
+	* @param exchange HttpExchange - The request and response.
+	* @param parameters Map - The parameters.
+	*/
+	private void sendClients(HttpExchange exchange, Map<String, String> parameters) throws Exception {
+		Client[] clients = this.calculator.getClients();
+		int offset = Math.max(0, Math.min(parseInteger(parameters.getOrDefault(PARAM_OFFSET, "0")), clients.length));
+		int limit = Math.max(0, Math.min(parseInteger(parameters.getOrDefault(PARAM_LIMIT, String.valueOf(DEFAULT_LIMIT))), MAX_LIMIT));
+		StringBuilder json = new StringBuilder();
+		json.append("{\"count\":").append(clients.length).append(",\"offset\":").append(offset).append(",\"clients\":[");
+		for (int i = offset; (i < clients.length) && (i < (offset + limit)); i++) {
+			if (i > offset) {
+				json.append(',');
+			}
+			synchronized (clients[i]) {
+				appendClient(json, clients[i]);
+				json.append('}');
+			}
+		}
+		json.append("]}");
+		this.send(exchange, STATUS_OK, json);
+	}
+
+	/**
+	* The sendClient method sends the received client, along with its accounts (and their projected totals).
+	* @param exchange HttpExchange - The request and response.
+	* @param client Client - The client.
+	*/
+	private void sendClient(HttpExchange exchange, Client client) throws IOException {
+		StringBuilder json = new StringBuilder();
+		synchronized (client) {
+			appendClient(json, client);
+			json.append(",\"accounts\":[");
+			for (int accountNo = 1; accountNo <= client.getNumberOfAccounts(); accountNo++) {
+				if (accountNo > 1) {
+					json.append(',');
+				}
+				appendAccount(json, client.findAccount(accountNo), accountNo);
+				json.append('}');
+			}
+			json.append("]}");
+		}
+		this.send(exchange, STATUS_OK, json);
+	}
+
+	/**
+	* The sendAccount method sends the received account of the client, along with the balance at the end of each month.
+	* @param exchange HttpExchange - The request and response.
+	* @param client Client - The client.
+	* @param accountNo int - The account number.
+	*/
+	private void sendAccount(HttpExchange exchange, Client client, int accountNo) throws IOException, HttpException {
+		Account account = client.findAccount(accountNo);
+		if (account == null) {
+			throw new HttpException(STATUS_NOT_FOUND, ERR_ACCOUNT_DOESNT_EXIST);
+		}
+		StringBuilder json = new StringBuilder();
+		appendAccount(json, account, accountNo);
+		json.append(",\"projection\":[");
+		double[] balances = account.calcProjection();
+		for (int row = 0; row < balances.length; row++) {
+			if (row > 0) {
+				json.append(',');
+			}
+			json.append("{\"week\":").append(Math.min((row + 1) * 4, account.getNumberOfWeeks()));
+			appendNumber(json.append(",\"balance\":"), balances[row]).append('}');
+		}
+		json.append("]}");
+		this.send(exchange, STATUS_OK, json);
+	}
+
+	private void sendTotals(HttpExchange exchange) throws IOException {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"clients\":").append(this.calculator.getNumberOfClients());
+		appendNumber(json.append(",\"totalTax\":"), this.calculator.getTotalTax());
+		appendNumber(json.append(",\"totalMedicare\":"), this.calculator.getTotalMedicare());
+		json.append('}');
+		this.send(exchange, STATUS_OK, json);
+	}
+
+	private void addClient(HttpExchange exchange, Map<String, String> parameters) throws Exception {
+		// The Calculator decides whether the name is taken as it adds the client, so that a concurrent request can't get in between.
+		Client client = this.commands.addClient(required(parameters, PARAM_NAME), parseNumber(required(parameters, PARAM_SALARY)),
+												parseResident(required(parameters, PARAM_RESIDENT)), parseNumber(required(parameters, PARAM_EXPENSES)));
+		if (client == null) {
+			throw new HttpException(STATUS_CONFLICT, ERR_CLIENT_EXISTS);
+		}
+		this.sendCreated(exchange, client);
+	}
+
+	private void addAccount(HttpExchange exchange, Client client, Map<String, String> parameters) throws Exception {
+		this.commands.addAccount(client, parseNumber(required(parameters, PARAM_RATE)), parseInteger(required(parameters, PARAM_WEEKS)),
+									parseNumber(required(parameters, PARAM_AMOUNT)));
+		this.sendCreated(exchange, client);
+	}
+
+	/**
+	* The sendCreated method sends the received client (which has just been added or changed) without its accounts.
+	* @param exchange HttpExchange - The request and response.
+	* @param client Client - The client.
+	*/
+	private void sendCreated(HttpExchange exchange, Client client) throws IOException, HttpException {
+		if (client == null) {
+			throw new HttpException(STATUS_NOT_FOUND, ERR_CLIENT_DOESNT_EXIST); // The client was deleted by another request.
+		}
+		StringBuilder json = new StringBuilder();
+		synchronized (client) {
+			appendClient(json, client);
+			json.append(",\"accounts\":").append(client.getNumberOfAccounts()).append('}');
+		}
+		this.send(exchange, STATUS_CREATED, json);
+	}
+
+	private void deleteClient(HttpExchange exchange, Client client) throws IOException, HttpException {
+		if (!this.calculator.deleteClient(client.getName())) {
+			throw new HttpException(STATUS_NOT_FOUND, ERR_CLIENT_DOESNT_EXIST);
+		}
+		this.send(exchange, STATUS_OK, new StringBuilder("{\"deleted\":true}"));
+	}
+
+	private void deleteAccount(HttpExchange exchange, Client client, int accountNo) throws IOException, HttpException {
+		if (!client.deleteAccount(accountNo)) {
+			throw new HttpException(STATUS_NOT_FOUND, ERR_ACCOUNT_DOESNT_EXIST);
+		}
+		this.send(exchange, STATUS_OK, new StringBuilder("{\"deleted\":true}"));
+	}
+
+	/**
+	* The appendClient method appends the fields of the received client to the JSON object (leaving the object open).
+	* @param json StringBuilder - The JSON.
+	* @param client Client - The client.
+	*/
+	private static void appendClient(StringBuilder json, Client client) {
+		appendString(json.append("{\"name\":"), client.getName());
+		json.append(",\"resident\":").append(client.getResident());
+		appendNumber(json.append(",\"grossSalary\":"), client.getGrossSalary());
+		appendNumber(json.append(",\"tax\":"), client.getTax());
+		appendNumber(json.append(",\"medicare\":"), client.getMedicare());
+		appendNumber(json.append(",\"netSalary\":"), client.getNetSalary());
+		appendNumber(json.append(",\"weeklyNetSalary\":"), client.getWeeklyNetSalary());
+		appendNumber(json.append(",\"weeklyExpenses\":"), client.getWeeklyExpenses());
+		appendNumber(json.append(",\"availableFunds\":"), client.getAvailableFunds());
+	}
+
+	/**
+	* The appendAccount method appends the fields of the received account to the JSON object (leaving the object open).
+	* @param json StringBuilder - The JSON.
+	* @param account Account - The account.
+	* @param accountNo int - The account number.
+	*/
+	private static void appendAccount(StringBuilder json, Account account, int accountNo) {
+		json.append("{\"number\":").append(accountNo);
+		appendNumber(json.append(",\"rate\":"), account.getRate());
+		json.append(",\"weeks\":").append(account.getNumberOfWeeks());
+		appendNumber(json.append(",\"amount\":"), account.getAmount());
+		appendNumber(json.append(",\"total\":"), account.calcTotalAmount());
+	}
+
+	/**
+	* The appendNumber method appends the received value as a JSON number, or null if it is infinite or NaN (which JSON
+	* can't represent).
+	* @param json StringBuilder - The JSON.
+	* @param value double - The value.
+	* @return StringBuilder - The JSON.
+	*/
+	private static StringBuilder appendNumber(StringBuilder json, double value) {
+		return ((Double.isFinite(value)) ? json.append(value) : json.append("null"));
+	}
+
+	private static void appendString(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				json.append('\\').append(c);
+			} else if (c < ' ') {
+				json.append(String.format("\\u%04x", (int)c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		StringBuilder json = new StringBuilder();
+		appendString(json.append("{\"error\":"), String.valueOf(message));
+		this.send(exchange, status, json.append('}'));
+	}
+
+	private void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+		byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set(CONTENT_TYPE, JSON_TYPE);
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	/**
+	* The splitPath method divides the received (encoded) path into its decoded segments, ignoring any empty segments.
+	* @param path String - The path.
+	* @return String[] - The segments.
+	*/
+	private static String[] splitPath(String path) {
+		String[] segments = path.split("/");
+		int count = 0;
+		for (String segment : segments) {
+			if (!segment.isEmpty()) {
+				segments[count++] = URLDecoder.decode(segment.replace("+", "%2B"), StandardCharsets.UTF_8);
+			}
+		}
+		String[] result = new String[count];
+		System.arraycopy(segments, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	* The readParameters method returns the parameters of the query string, along with those of a form-encoded body.
+	* @param exchange HttpExchange - The request.
+	* @return Map - The parameters.
+	*/
+	private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		decodeParameters(exchange.getRequestURI().getRawQuery(), parameters);
+		InputStream in = exchange.getRequestBody();
+		decodeParameters(new String(in.readAllBytes(), StandardCharsets.UTF_8), parameters);
+		in.close();
+		return parameters;
+	}
+
+	private static void decodeParameters(String text, Map<String, String> parameters) {
+		if (text != null) {
+			for (String pair : text.split("&")) {
+				int equals = pair.indexOf('=');
+				if (equals > 0) {
+					parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8).trim(),
+									URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8).trim());
+				}
+			}
+		}
+	}
+
+	private static String required(Map<String, String> parameters, String name) throws Exception {
+		String value = parameters.get(name);
+		if (value == null) {
+			throw new Exception(ERR_MISSING_PARAMETER + name);
+		}
+		return value;
+	}
+
+	private static double parseNumber(String value) throws Exception {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException ex) {
+			throw new Exception(ERR_NOT_NUMERIC + value);
+		}
+	}
+
+	private static int parseInteger(String value) throws Exception {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException ex) {
+			throw new Exception(ERR_NOT_NUMERIC + value);
+		}
+	}
+
+	private static boolean parseResident(String value) throws Exception {
+		if (value.equalsIgnoreCase(Client.BOOLEAN_LETTER_Y) || value.equalsIgnoreCase("yes") || value.equalsIgnoreCase("true")) {
+			return true;
+		} else if (value.equalsIgnoreCase(Client.BOOLEAN_LETTER_N) || value.equalsIgnoreCase("no") || value.equalsIgnoreCase("false")) {
+			return false;
+		}
+		throw new Exception(ERR_RESIDENT);
+	}
+
+	/**
+	* The HttpException class is thrown to send a response with a status other than a bad request.
+	*/
+	private static class HttpException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		private int status;
+
+		private HttpException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	/**
+	* The main method starts a server on the received port (or the DEFAULT_PORT), with the clients of the received file
+	* opened first (if a file is given).
+	*/
+	public static void main(String[] args) throws Exception {
+		Calculator calculator = new Calculator();
+		if (args.length > 1) {
+			try {
+				calculator.open(args[1]);
+			} catch (Exception ex) {
+				System.out.println(ex.getMessage()); // Such as the clients that weren't added, as their names already exist.
+			}
+		}
+		calculator.getMetrics().register(CalculatorServer.class.getName());
+		CalculatorServer server = new CalculatorServer(calculator);
+		server.start((args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+		System.out.println(String.format(MSG_STARTED, server.getPort(), (server.usesVirtualThreads() ? MSG_VIRTUAL_THREADS : MSG_THREAD_POOL)));
+	}
+}
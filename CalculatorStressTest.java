@@ -0,0 +1,300 @@
+/*
+ *  Description:
+ *  The CalculatorStressTest class is a concurrent stress test for the Calculator. It stores a number of clients, and then
+ *  runs a mixed workload from a number of threads for a fixed time: mostly reads (finding a client and reading its
+ *  attributes or text, along with the occasional listing and total), and the received percentage of writes (salary and
+ *  expense changes, account additions and deletions, client deletions and additions, renames, and renames onto the name
+ *  of a reserved client, which must be refused). Meanwhile, another thread recalculates the taxes of every client, and
+ *  in the journal mode the journal is also compacted. Once complete, it displays the throughput, and then checks that
+ *  the Calculator is consistent: the sorted listing and the index hold the same clients in name order, the tax of every
+ *  client matches its salary, and the totals match. In the journal mode, the journal is then replayed into a new
+ *  Calculator, which must save the same file. The exit status is 1 if any of the checks fail.
+ *      java CalculatorStressTest [object|columnar|journal] [threads] [seconds] [write percent]
+ */
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CalculatorStressTest {
+	private static final String MODE_OBJECT = "object";
+	private static final String MODE_COLUMNAR = "columnar";
+	private static final String MODE_JOURNAL = "journal";
+	private static final int DEFAULT_THREADS = 4;
+	private static final int DEFAULT_SECONDS = 3;
+	private static final int DEFAULT_WRITE_PERCENT = 20;
+	private static final int CLIENTS = 20000;
+	private static final String NAME_PREFIX = "Person ";
+	// The reserved clients are never deleted or renamed, so a rename onto any of their names must always be refused.
+	private static final int RESERVED_CLIENTS = 100;
+	private static final String RESERVED_PREFIX = "Reserved ";
+	// The time between the recalculations of every tax, and between the compactions of the journal.
+	private static final long RECALCULATE_INTERVAL = 100;
+	private static final long COMPACT_INTERVAL = 700;
+	private static final double TOTAL_TOLERANCE = 1e-6;
+	private static final String USAGE = "Usage: java CalculatorStressTest [object|columnar|journal] [threads] [seconds] [write percent]";
+	private static final String MSG_RESULT = "%s, %d threads, %d%% writes: %.0f operations/s (%d reads, %d writes, %d recalculations)";
+	private static final String MSG_CONSISTENT = "Consistent: %d clients";
+	private static final String MSG_REPLAYED = "Journal replayed to the same file (%d bytes of journal)";
+	private static final String ERR_COUNT = "The listing holds %d clients, but the index holds %d";
+	private static final String ERR_INDEX = "The index doesn't hold the listed client: %s";
+	private static final String ERR_ORDER = "The listing isn't in name order at: %s";
+	private static final String ERR_TAX = "The tax of %s doesn't match its salary: %s (expected %s)";
+	private static final String ERR_TOTAL = "The total tax %s doesn't match the total of the clients %s";
+	private static final String ERR_RENAMED_ONTO = "A client was renamed onto the name of another client: %s";
+	private static final String ERR_REPLAYED = "The journal didn't replay to the same file";
+
+	private CalculatorStressTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		String mode = ((args.length > 0) ? args[0] : MODE_OBJECT);
+		if (!(mode.equals(MODE_OBJECT) || mode.equals(MODE_COLUMNAR) || mode.equals(MODE_JOURNAL))) {
+			System.out.println(USAGE);
+			return;
+		}
+		int threads = ((args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_THREADS);
+		int seconds = ((args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_SECONDS);
+		int writePercent = ((args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_WRITE_PERCENT);
+		File directory = Files.createTempDirectory("calculatorstress").toFile();
+		String snapshot = new File(directory, "clients.snapshot").getPath();
+		String journal = new File(directory, "clients.journal").getPath();
+		Calculator calculator = new Calculator(!mode.equals(MODE_OBJECT));
+		if (mode.equals(MODE_JOURNAL)) {
+			calculator.openJournal(snapshot, journal);
+		}
+		for (int i = 0; i < CLIENTS; i++) {
+			Client client = new Client(NAME_PREFIX + i, 30000 + i, ((i % 3) != 0));
+			client.setWeeklyExpenses(i % 500);
+			client.calcTax();
+			calculator.addClient(client);
+			if ((i % 2) == 0) {
+				client.addAccount(0.05, 52, 20);
+			}
+		}
+		for (int i = 0; i < RESERVED_CLIENTS; i++) {
+			Client client = new Client(RESERVED_PREFIX + i, 60000, true);
+			client.calcTax();
+			calculator.addClient(client);
+		}
+
+		AtomicBoolean stop = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Worker[] workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(calculator, i, writePercent, stop, failure);
+		}
+		LongAdder recalculations = new LongAdder();
+		Thread background = new Thread(() -> {
+			try {
+				for (long elapsed = 0; !stop.get(); elapsed += RECALCULATE_INTERVAL) {
+					Thread.sleep(RECALCULATE_INTERVAL);
+					calculator.recalculateTaxes();
+					recalculations.increment();
+					if (mode.equals(MODE_JOURNAL) && ((elapsed % COMPACT_INTERVAL) < RECALCULATE_INTERVAL)) {
+						calculator.compactJournal();
+					}
+				}
+			} catch (Throwable ex) {
+				failure.compareAndSet(null, ex);
+			}
+		});
+		long start = System.nanoTime();
+		for (Worker worker : workers) {
+			worker.start();
+		}
+		background.start();
+		Thread.sleep(seconds * 1000L);
+		stop.set(true);
+		for (Worker worker : workers) {
+			worker.join();
+		}
+		background.join();
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		if (failure.get() != null) {
+			failure.get().printStackTrace();
+			System.exit(1);
+		}
+		long reads = 0, writes = 0;
+		for (Worker worker : workers) {
+			reads += worker.reads;
+			writes += worker.writes;
+		}
+		System.out.println(String.format(MSG_RESULT, mode, threads, writePercent, (reads + writes) / elapsed, reads, writes, recalculations.sum()));
+
+		String error = check(calculator);
+		if ((error == null) && mode.equals(MODE_JOURNAL)) {
+			error = replay(calculator, directory, snapshot, journal);
+		}
+		if (error != null) {
+			System.out.println(error);
+			System.exit(1);
+		}
+	}
+
+	/**
+	* The check method checks that the listing and the index hold the same clients in name order, that the tax of every client
+	* matches its salary, and that the total tax matches the total of the clients.
+	* @param calculator Calculator - The calculator being checked.
+	* @return String - The error, or null if the calculator is consistent.
+	*/
+	private static String check(Calculator calculator) {
+		Client[] clients = calculator.getClients();
+		if (clients.length != calculator.getNumberOfClients()) {
+			return String.format(ERR_COUNT, clients.length, calculator.getNumberOfClients());
+		}
+		double total = 0;
+		for (int i = 0; i < clients.length; i++) {
+			Client client = clients[i];
+			if (calculator.findClient(client.getName()) != client) {
+				return String.format(ERR_INDEX, client.getName());
+			}
+			if ((i > 0) && (clients[i - 1].getName().compareTo(client.getName()) >= 0)) {
+				return String.format(ERR_ORDER, client.getName());
+			}
+			Client expected = new Client(client.getName(), client.getGrossSalary(), client.getResident());
+			expected.calcTax();
+			if (expected.getTax() != client.getTax()) {
+				return String.format(ERR_TAX, client.getName(), client.getTax(), expected.getTax());
+			}
+			total += client.getTax();
+		}
+		if (Math.abs(total - calculator.getTotalTax()) > (TOTAL_TOLERANCE * Math.abs(total))) {
+			return String.format(ERR_TOTAL, calculator.getTotalTax(), total);
+		}
+		System.out.println(String.format(MSG_CONSISTENT, clients.length));
+		return null;
+	}
+
+	/**
+	* The replay method saves the clients, and then replays the journal into a new Calculator, which must save the same file.
+	* @return String - The error, or null if the files are the same.
+	*/
+	private static String replay(Calculator calculator, File directory, String snapshot, String journal) throws Exception {
+		File saved = new File(directory, "saved.dat"), replayed = new File(directory, "replayed.dat");
+		calculator.save(saved.getPath());
+		calculator.closeJournal();
+		Calculator other = new Calculator();
+		other.openJournal(snapshot, journal);
+		other.save(replayed.getPath());
+		other.closeJournal();
+		if (!Arrays.equals(Files.readAllBytes(saved.toPath()), Files.readAllBytes(replayed.toPath()))) {
+			return ERR_REPLAYED;
+		}
+		System.out.println(String.format(MSG_REPLAYED, new File(journal).length()));
+		return null;
+	}
+
+	/**
+	* The Worker class is a thread that runs the mixed workload until it is stopped, counting the reads and writes.
+	*/
+	private static class Worker extends Thread {
+		private Calculator calculator;
+		private int id;
+		private int writePercent;
+		private AtomicBoolean stop;
+		private AtomicReference<Throwable> failure;
+		private SplittableRandom random;
+		private int sequence;
+		private long reads;
+		private long writes;
+
+		private Worker(Calculator calculator, int id, int writePercent, AtomicBoolean stop, AtomicReference<Throwable> failure) {
+			this.calculator = calculator;
+			this.id = id;
+			this.writePercent = writePercent;
+			this.stop = stop;
+			this.failure = failure;
+			this.random = new SplittableRandom((id * 7919L) + 1);
+		}
+
+		public void run() {
+			try {
+				while (!this.stop.get()) {
+					if (this.random.nextInt(100) < this.writePercent) {
+						this.write();
+						this.writes++;
+					} else {
+						this.read();
+						this.reads++;
+					}
+				}
+			} catch (Throwable ex) {
+				this.failure.compareAndSet(null, ex);
+				this.stop.set(true);
+			}
+		}
+
+		private String randomName() {
+			return NAME_PREFIX + this.random.nextInt(CLIENTS);
+		}
+
+		private void read() {
+			int choice = this.random.nextInt(1000);
+			if (choice < 800) {
+				Client client = this.calculator.findClient(this.randomName());
+				if (client != null) {
+					client.getNetSalary();
+					client.getAvailableFunds();
+				}
+			} else if (choice < 998) {
+				Client client = this.calculator.findClient(this.randomName());
+				if (client != null) {
+					client.toString();
+				}
+			} else if (choice < 999) {
+				this.calculator.getClients();
+			} else {
+				this.calculator.getTotalTax();
+			}
+		}
+
+		private void write() {
+			int choice = this.random.nextInt(100);
+			Client client = this.calculator.findClient(this.randomName());
+			if (choice < 40) {
+				if (client != null) {
+					client.setGrossSalary(20000 + this.random.nextInt(200000));
+					client.calcTax();
+				}
+			} else if (choice < 60) {
+				if (client != null) {
+					if (client.getNumberOfAccounts() < Client.MAX_ACCOUNTS) {
+						client.addAccount(0.04, 12, this.random.nextInt(100));
+					} else {
+						client.deleteAccount(1);
+					}
+				}
+			} else if (choice < 75) {
+				String name = this.randomName();
+				if (!this.calculator.deleteClient(name)) {
+					Client added = new Client(name, 50000, true);
+					added.calcTax();
+					this.calculator.addClient(added);
+				}
+			} else if (choice < 85) {
+				// A temporary client is added, renamed and then deleted.
+				String name = "Temp " + this.id + " " + (this.sequence++);
+				String newName = "Renamed " + this.id + " " + this.sequence;
+				Client added = new Client(name, 40000, false);
+				added.calcTax();
+				this.calculator.addClient(added);
+				this.calculator.renameClient(added, newName);
+				this.calculator.deleteClient(newName);
+			} else if (choice < 90) {
+				// A rename onto the name of a reserved client must be refused, leaving the reserved client in place.
+				String name = RESERVED_PREFIX + this.random.nextInt(RESERVED_CLIENTS);
+				Client reserved = this.calculator.findClient(name);
+				if ((client != null) && (this.calculator.renameClient(client, name) || (this.calculator.findClient(name) != reserved))) {
+					throw new IllegalStateException(String.format(ERR_RENAMED_ONTO, name));
+				}
+			} else if (client != null) {
+				client.setWeeklyExpenses(this.random.nextInt(400));
+			}
+		}
+	}
+}
@@ -5,30 +5,39 @@
  *  Description: 
  *  The class is used to store client related income-based data, and calculate the
  *  tax rate in which applies to that client's income & residential status (using the public 
- *  methods available). It also has a overridden toString method which is used to retrieve 
+ *  methods available), based on the brackets of the client's TaxSchedule. It also has a overridden toString method which is used to retrieve 
  *  preformatted String output that can be optionally used for basic displaying purposes.
  *  The class also contains a Account[] array in which is used for storing their investment Account objects. 
  *  It does all the management/ handling of the Account objects, and therefore no other class should know about the Account class.
+ *  When the client is stored within a ClientTable, its numeric attributes are held in the table rather than in the
+ *  instance, and the getters and setters read from (and write to) the client's row. If the table also holds the accounts,
+ *  they are materialised from the table whenever they are needed. When the client was opened lazily, its accounts are
+ *  only read from the file (using its AccountBlock) once they are first needed, while the number of accounts is known from the start.
+ *  The text of the toString method is kept once rendered, and is discarded by the setters (and by the table when it
+ *  recalculates the taxes), so a client that is listed repeatedly is only formatted again once it has changed. The accounts
+ *  keep their own text, from which the getAccounts method is composed.
+ *  A client can be used by several threads at once. The attributes are volatile, the accounts are only changed (and read
+ *  as a whole) while holding the client's monitor, and the formatters are held per thread (as a DecimalFormat isn't
+ *  thread-safe). The listener is notified of an account change while the monitor is held, so that the changes made to
+ *  one client reach the listener in the order they were made.
  */
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
-import java.text.DecimalFormat;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class Client {
-	private static final int[] RESIDENT_TAXABLE_INCOME = {6000, 37000, 80000, 180000};
-	private static final double[] RESIDENT_TAXABLE_INCOME_RATE = {0, 0.15, 0.30, 0.37, 0.45};
-	private static final int[] RESIDENT_TAXABLE_INCOME_TAX = {0, 0, 4650, 17550, 54550};
-	private static final int[] NONRESIDENT_TAXABLE_INCOME = {37000, 80000, 180000};
-	private static final double[] NONRESIDENT_TAXABLE_INCOME_RATE = {0.29, 0.30, 0.37, 0.45};
-	private static final int[] NONRESIDENT_TAXABLE_INCOME_TAX = {0, 10730, 23630, 60630};
-	private static final int MEDICARE_LEVY = 20000;
-	private static final double MEDICARE_LEVY_RATE = 0.015;
-	
 	// Some miscellaneous constants.
-	private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#0.00");
-	private static final NumberFormat CURRENCY_FORMAT = NumberFormat.getCurrencyInstance();
-	private static final NumberFormat NUMBER_FORMAT = NumberFormat.getInstance();
+	private static final ThreadLocal<NumberFormat> NUMBER_FORMAT = ThreadLocal.withInitial(NumberFormat::getInstance);
+	private static final AtomicReferenceFieldUpdater<Client, RenderedText> TEXT =
+			AtomicReferenceFieldUpdater.newUpdater(Client.class, RenderedText.class, "text");
 	private static final int WEEKS_PER_YEAR = 52;
 	
 	// The following constants are used for formatting purposes by the toString method.
@@ -65,16 +74,28 @@ public class Client {
 	public static final String NO_ACCOUNTS = "no accounts";
 
 	// Instance attributes.
-	private String name;
-	private double grossSalary;
-	private double netSalary;
-	private boolean resident;
-	private double tax;
-	private double medicare;
-	private double weeklyExpenses;
-	
-	private Account[] accounts;
-	private int noAccounts;
+	private volatile String name;
+	private volatile double grossSalary;
+	private volatile double netSalary;
+	private volatile boolean resident;
+	private volatile double tax;
+	private volatile double medicare;
+	private volatile double weeklyExpenses;
+	
+	private volatile Account[] accounts;
+	private volatile int noAccounts;
+	// The block of the file that the accounts are still to be read from (when opened by the Calculator openLazy method), or null.
+	private volatile AccountBlock block;
+	// The rendered text of the toString method (or a text still being rendered), which is discarded whenever an attribute is set.
+	private volatile RenderedText text;
+	
+	// The table (and the row within it) holding the numeric attributes, or null if they are held by the instance.
+	private volatile ClientTable table;
+	private volatile int row;
+	// The listener that is notified of any changes (being the Calculator that stores the client), or null.
+	private volatile ClientListener listener;
+	// The tax schedule used by the calcTax method.
+	private volatile TaxSchedule schedule;
 	
 	/**
 	* The default constructor. It chains with initial values to the second constructor.
@@ -105,42 +126,153 @@ public class Client {
 		this.setResident(resident);
 		this.accounts = new Account[MAX_ACCOUNTS];
 		this.noAccounts = 0;
+		this.schedule = TaxSchedule.getDefault();
+	}
+	
+	/**
+	* The view constructor is used by a ClientTable to recreate the client of a row that the table already contains.
+	* @param table ClientTable - The table holding the attributes.
+	* @param row int - The row within the table.
+	* @param name String - The client name (as it was stored within the table).
+	*/
+	Client(ClientTable table, int row, String name) {
+		this.name = name;
+		this.table = table;
+		this.row = row;
+		this.accounts = ((table.storesAccounts()) ? null : new Account[MAX_ACCOUNTS]);
+		this.noAccounts = 0;
+		this.schedule = TaxSchedule.getDefault();
 	}
 	
 	/**
-	* The calcTaxFormula method is used by the calcTax method to calculate the income tax based on a set of parameters. It is a separate
-	* method to avoid the repeated logic experienced throughout the conditions. It receives the taxableIncome (in being the last amount of 
-	* the previous tax bracket) which is then subtracted from the gross salary, in order to get the range for the taxable income. It is then multiplied
-	* by the taxableRate variable. The taxAmount is just an additional tax amount that is added to the other calculated amount.
-	* @param taxableIncome double - The last amount of the previous tax bracket.
-	* @param taxableRate double - The tax rate for each dollar over the taxableIncome bracket.
-	* @param taxAmount double - An additional tax amount that is added to the calculated value.
+	* The attach method is used by the ClientTable to make the client a view over a row of the table. From then on the
+	* numeric attributes are read from (and written to) that row. It is also used when the client's row has been moved. 
+	* If the table holds the accounts, they are moved into the table when the client is first attached.
+	* @param table ClientTable - The table holding the attributes.
+	* @param row int - The row within the table.
 	*/
-	private double calcTaxFormula(double taxableIncome, double taxableRate, double taxAmount) {
-		return (((this.getGrossSalary() - taxableIncome) * taxableRate) + taxAmount);
+	void attach(ClientTable table, int row) {
+		if ((this.table == null) && table.storesAccounts()) {
+			this.loadAccounts(null, null);
+			table.setAccounts(row, this.accounts);
+			this.accounts = null;
+		}
+		this.row = row;
+		this.table = table;
+	}
+	
+	/**
+	* The detach method is used by the ClientTable when the client is removed from the table. It copies the attributes
+	* held in the client's row back into the instance, so that the client can continue to be used on its own. The attributes
+	* are copied before the table is released, so a thread that is reading the client at the same time finds them in either place.
+	*/
+	void detach() {
+		ClientTable table = this.table;
+		if (table != null) {
+			int row = this.row;
+			this.grossSalary = table.getGrossSalary(row);
+			this.netSalary = table.getNetSalary(row);
+			this.resident = table.getResident(row);
+			this.tax = table.getTax(row);
+			this.medicare = table.getMedicare(row);
+			this.weeklyExpenses = table.getWeeklyExpenses(row);
+			if (table.storesAccounts()) {
+				this.accounts = table.getAccounts(row);
+				this.noAccounts = table.getNumberOfAccounts(row);
+			}
+			this.table = null;
+			this.row = -1;
+		}
 	}
 	
 	/**
-	* The new and improved calcTax method receives the three arrays (which is used for residents and non residents), it iterates through
-	* the taxableIncome array, getting the relating elements from the other arrays (using the index position). It partners with the calcTaxFormula method.
-	* @param int[] taxableIncome - The array containing the tax brackets.
-	* @param int[] taxableIncomeTax - The array containing any additonal tax added to that bracket.
-	* @param double[] taxableIncomeRates - The array containing the tax rates relating to that bracket.
-	* @return double - The calculated tax.
+	* The getAccountArray method returns the array holding the client's accounts. If the accounts are held by the table,
+	* then they are materialised into a new array (which is not kept by the client). If the accounts are still within the
+	* file, they are read first. It is used while holding the client's monitor.
+	* @return Account[] - The accounts array.
 	*/
-	private double calcTax(int[] taxableIncome, int[] taxableIncomeTax, double[] taxableIncomeRates) {
-		for (int i = 0; i < taxableIncome.length; i++) {
-			if (this.getGrossSalary() <= taxableIncome[i]) {
-				return this.calcTaxFormula(((i > 0) ? taxableIncome[(i - 1)] : 0), taxableIncomeRates[i], taxableIncomeTax[i]);
+	private Account[] getAccountArray() {
+		if (this.block != null) {
+			this.loadAccounts(null, null);
+		}
+		ClientTable table = this.table;
+		if ((table != null) && table.storesAccounts()) {
+			Account[] accounts = table.getAccounts(this);
+			if (accounts != null) {
+				return accounts;
 			}
 		}
-		// Only executed if the client's income exceeds the last taxableIncome bracket.
-		return this.calcTaxFormula(taxableIncome[taxableIncome.length-1], 
-						taxableIncomeRates[taxableIncome.length], taxableIncomeTax[taxableIncome.length]);
+		return this.accounts;
+	}
+	
+	/**
+	* The setAccountArray method replaces the client's accounts, either within the table (if it holds the accounts) or the instance.
+	* @param accounts Account[] - The accounts array.
+	* @param noAccounts int - The number of accounts within the array.
+	*/
+	private void setAccountArray(Account[] accounts, int noAccounts) {
+		ClientTable table = this.table;
+		if ((table == null) || (!table.storesAccounts()) || (!table.setAccounts(this, accounts))) {
+			this.accounts = accounts;
+			this.noAccounts = noAccounts;
+		}
+	}
+	
+	/**
+	* The setAccountBlock method is used by the Calculator openLazy method, to give the client the block of the file holding its
+	* accounts (in place of the accounts themselves). The number of accounts is taken from the block.
+	* @param block AccountBlock - The block holding the accounts.
+	*/
+	synchronized void setAccountBlock(AccountBlock block) {
+		this.block = block;
+		this.accounts = null; // Read from the block once needed.
+		this.noAccounts = block.getCount();
+	}
+	
+	/**
+	* The loadAccounts method reads the client's accounts from its AccountBlock, unless they have already been read.
+	* @param file File - The file that the accounts must be within to be read (such as a file about to be overwritten), or null for any file.
+	* @param in RandomAccessFile - The open file to read the accounts from, or null if the block should open the file itself.
+	* @throws UncheckedIOException - If the accounts couldn't be read (such as when the file has been changed elsewhere).
+	*/
+	synchronized void loadAccounts(File file, RandomAccessFile in) {
+		AccountBlock block = this.block;
+		if ((block != null) && ((file == null) || file.equals(block.getFile()))) {
+			try {
+				this.accounts = ((in != null) ? block.read(in) : block.read());
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			this.block = null;
+		}
+	}
+	
+	int getRow() {
+		return this.row;
+	}
+	
+	/**
+	* The changed method discards the rendered text, which is invoked once an attribute has been set (including by the
+	* ClientTable, when it sets the attributes of its rows directly). The text is only written when there is one, so the
+	* setters don't pay for it while the client isn't being displayed.
+	*/
+	void changed() {
+		if (this.text != null) {
+			this.text = null;
+		}
+	}
+	
+	void setListener(ClientListener listener) {
+		this.listener = listener;
 	}
 	
 	public void setName(String name) {
-		this.name = convertToUpper(name);	
+		this.name = convertToUpper(name);
+		ClientTable table = this.table;
+		if (table != null) {
+			table.setName(this, this.name);
+		}
+		this.changed();
 	}
 	
 	public String getName() {
@@ -148,19 +280,32 @@ public class Client {
 	}
 	
 	public void setGrossSalary(double grossSalary) {
-		this.grossSalary = grossSalary;
+		ClientTable table = this.table;
+		if ((table == null) || (!table.set(this, ClientTable.GROSS_SALARY, grossSalary))) {
+			this.grossSalary = grossSalary;
+		}
+		this.changed();
+		if (this.listener != null) {
+			this.listener.clientChanged(this);
+		}
 	}
 	
 	public double getGrossSalary() {
-		return this.grossSalary;
+		ClientTable table = this.table;
+		return ((table != null) ? table.get(this, ClientTable.GROSS_SALARY) : this.grossSalary);
 	}
 	
 	public void setNetSalary(double netSalary) {
-		this.netSalary = netSalary;
+		ClientTable table = this.table;
+		if ((table == null) || (!table.set(this, ClientTable.NET_SALARY, netSalary))) {
+			this.netSalary = netSalary;
+		}
+		this.changed();
 	}
 	
 	public double getNetSalary() {
-		return this.netSalary;
+		ClientTable table = this.table;
+		return ((table != null) ? table.get(this, ClientTable.NET_SALARY) : this.netSalary);
 	}
 	
 	public double getWeeklyNetSalary() {
@@ -168,35 +313,61 @@ public class Client {
 	}
 	
 	public void setResident(boolean resident) {
-		this.resident = resident;
+		ClientTable table = this.table;
+		if ((table == null) || (!table.setResident(this, resident))) {
+			this.resident = resident;
+		}
+		this.changed();
+		if (this.listener != null) {
+			this.listener.clientChanged(this);
+		}
 	}
 	
 	public boolean getResident() {
-		return this.resident;
+		ClientTable table = this.table;
+		return ((table != null) ? table.getResident(this) : this.resident);
 	}
 	
 	public void setTax(double tax) {
-		this.tax = tax;
+		ClientTable table = this.table;
+		if ((table == null) || (!table.set(this, ClientTable.TAX, tax))) {
+			this.tax = tax;
+		}
+		this.changed();
 	}
 	
 	public double getTax() {
-		return this.tax;
+		ClientTable table = this.table;
+		return ((table != null) ? table.get(this, ClientTable.TAX) : this.tax);
 	}
 	
 	public void setMedicare(double medicare) {
-		this.medicare = medicare;
+		ClientTable table = this.table;
+		if ((table == null) || (!table.set(this, ClientTable.MEDICARE, medicare))) {
+			this.medicare = medicare;
+		}
+		this.changed();
 	}
 	
 	public double getMedicare() {
-		return this.medicare;
+		ClientTable table = this.table;
+		return ((table != null) ? table.get(this, ClientTable.MEDICARE) : this.medicare);
 	}
 	
 	public void setWeeklyExpenses(double weeklyExpenses) {
-		this.weeklyExpenses = weeklyExpenses;
+		ClientTable table = this.table;
+		if ((table == null) || (!table.set(this, ClientTable.WEEKLY_EXPENSES, weeklyExpenses))) {
+			this.weeklyExpenses = weeklyExpenses;
+		}
+		this.changed();
+		if (this.listener != null) {
+			this.listener.clientChanged(this);
+		}
 	}
 	
 	public double getWeeklyExpenses() {
-		return this.weeklyExpenses;
+		ClientTable table = this.table;
+		return ((table != null) ? table.get(this, ClientTable.WEEKLY_EXPENSES) : this.weeklyExpenses);
 	}
 	
 	/**
@@ -205,7 +376,28 @@ public class Client {
 	* @return double - The remaining funds rounded to two decimal places.
 	*/
 	public double getAvailableFunds() {
-		return Double.parseDouble(DECIMAL_FORMAT.format((this.getWeeklyNetSalary() - this.getWeeklyExpenses())));
+		return Money.toDouble(this.getAvailableFundsInCents());
+	}
+	
+	/**
+	* The getAvailableFundsInCents method returns the available funds as a number of cents, being the weekly net salary
+	* (rounded to cents) less the weekly expenses, rounded to cents.
+	* @return long - The remaining funds in cents.
+	*/
+	public long getAvailableFundsInCents() {
+		return availableFundsInCents(this.getNetSalary(), this.getWeeklyExpenses());
+	}
+	
+	/**
+	* The availableFundsInCents method returns the available funds of the received net salary and weekly expenses, as the
+	* getAvailableFundsInCents method does. It is also used by the ClientTable, so that counting the clients with funds
+	* compares the same figures as those displayed.
+	* @param netSalary double - The yearly net salary.
+	* @param weeklyExpenses double - The weekly expenses.
+	* @return long - The remaining funds in cents.
+	*/
+	static long availableFundsInCents(double netSalary, double weeklyExpenses) {
+		return Money.cents(convertToWeekly(netSalary) - weeklyExpenses);
 	}
 	
 	/**
@@ -213,9 +405,9 @@ public class Client {
 	* of the amounts invested in all the accounts.
 	* @return - The total invested.
 	*/
-	public double getTotalInvestments() {
+	public synchronized double getTotalInvestments() {
 		double total = 0;
-		for (Account account : this.accounts) {
+		for (Account account : this.getAccountArray()) {
 			if (account != null) {
 				total += account.getAmount(); 
 			}
@@ -223,15 +415,42 @@ public class Client {
 		return total;
 	}
 	
+	/**
+	* The getTotalInvestmentsInCents method returns the total of the amounts invested in all the accounts as a number of cents,
+	* with each amount rounded to cents.
+	* @return long - The total invested in cents.
+	*/
+	public synchronized long getTotalInvestmentsInCents() {
+		long total = 0;
+		for (Account account : this.getAccountArray()) {
+			if (account != null) {
+				total += account.getAmountInCents();
+			}
+		}
+		return total;
+	}
+	
+	/**
+	* The setTaxSchedule method sets the schedule that is used to calculate the tax. It doesn't recalculate the tax, which is
+	* left to the calcTax method.
+	* @param schedule TaxSchedule - The tax schedule.
+	*/
+	public void setTaxSchedule(TaxSchedule schedule) {
+		this.schedule = schedule;
+	}
+	
+	public TaxSchedule getTaxSchedule() {
+		return this.schedule;
+	}
+	
 	/**
 	* The calcMedicare method will only calculate the medicare tax if the client is a resident, and also if the client earns more than the medicare
-	* levy threshold. The calculation is done by multiplying the gross salary with the medicare levy rate. It sets the result to the medicare attribute
-	* via its setter.
+	* levy threshold of the tax schedule. The calculation is done by multiplying the gross salary with the medicare levy rate. It sets the result 
+	* to the medicare attribute via its setter.
 	*/
 	public void calcMedicare() {
 		if (this.getResident()) {
-			this.setMedicare((this.getGrossSalary() >= MEDICARE_LEVY) ? 
-				(this.getGrossSalary() * MEDICARE_LEVY_RATE) : 0);
+			this.setMedicare(this.schedule.calcMedicare(this.getGrossSalary()));
 		}
 	}
 	
@@ -249,10 +468,16 @@ public class Client {
 	* @param investmentLength - The investment length
 	* @param investmentAmount - The investment amount
 	*/
-	public void addAccount(double interestRate, int investmentLength, double investmentAmount) {
+	public synchronized void addAccount(double interestRate, int investmentLength, double investmentAmount) {
 		Account account = new Account(interestRate, investmentLength, investmentAmount); 
-		if (this.noAccounts < this.accounts.length) {
-			this.accounts[this.noAccounts++] = account; // Adds the account to the array.
+		Account[] accounts = this.getAccountArray();
+		int noAccounts = this.getNumberOfAccounts();
+		if (noAccounts < accounts.length) {
+			accounts[noAccounts] = account; // Adds the account to the array.
+			this.setAccountArray(accounts, noAccounts + 1);
+			if (this.listener != null) {
+				this.listener.accountAdded(this, interestRate, investmentLength, investmentAmount);
+			}
 		}
 	}
 	
@@ -262,11 +487,11 @@ public class Client {
 	* @return boolean - Whether the account was deleted.
 	* @param accountNo int - The accountNo that you want deleted.
 	*/
-	public boolean deleteAccount(int accountNo) {
+	public synchronized boolean deleteAccount(int accountNo) {
 		boolean deleted = false;
 		Account[] accounts = new Account[MAX_ACCOUNTS];
 		int index = 0, accountNumber = 1;
-		for (Account account : this.accounts) { // Iterates through all accounts.
+		for (Account account : this.getAccountArray()) { // Iterates through all accounts.
 			if (account != null) {
 				if (accountNumber != accountNo) { // Adds everything but the account corresponding to that number.
 					accounts[index++] = account;
@@ -277,8 +502,11 @@ public class Client {
 			}
 		}
 		if (deleted) {
-			this.noAccounts--; // Decrements counter
-			this.accounts = accounts; // Assigns new accounts array reference.
+			// Assigns new accounts array reference, decrementing the counter.
+			this.setAccountArray(accounts, this.getNumberOfAccounts() - 1);
+			if (this.listener != null) {
+				this.listener.accountDeleted(this, accountNo);
+			}
 		}
 		return deleted; // returns boolean indicating success.
 	}
@@ -291,19 +519,32 @@ public class Client {
 	* @return String - The String of the account.
 	* @throws Exception - If the account doesn't exist it throws an exception.
 	*/
-	public String getAccount(int accountNo) throws Exception {
-		if ((accountNo > 0) && (accountNo <= this.noAccounts)) {
+	public synchronized String getAccount(int accountNo) throws Exception {
+		if ((accountNo > 0) && (accountNo <= this.getNumberOfAccounts())) {
 			StringBuilder builder = new StringBuilder();
-			Account account = this.accounts[accountNo - 1];
-			builder.append(NEW_LINE + this.toString() + NEW_LINE);
-			builder.append(NEW_LINE + ACCOUNT_NUMBER + SPACE + accountNo + COLON + NEW_LINE);
-			builder.append(account.toString() + NEW_LINE);
+			Account account = this.getAccountArray()[accountNo - 1];
+			builder.append(NEW_LINE);
+			this.appendTo(builder).append(NEW_LINE);
+			builder.append(NEW_LINE).append(ACCOUNT_NUMBER).append(SPACE).append(accountNo).append(COLON).append(NEW_LINE);
+			account.appendTo(builder).append(NEW_LINE);
 			builder.append(account.calcInvestment());
 			return builder.toString();
 		}
 		throw new Exception(ERR_ACCOUNT_DOESNT_EXIST);
 	}
 	
+	/**
+	* The findAccount method returns the account with the received accountNo (starting from 1), or a null reference if
+	* the account doesn't exist. The account is only to be read: when the accounts are held by a ClientTable (such as the
+	* MappedClientTable), it is a snapshot built from the table, so any change made to it would be lost. Accounts are changed
+	* through the Client methods (such as addAccount and deleteAccount) instead, which is why the method isn't public.
+	* @param accountNo int - The accountNo of the account.
+	* @return Account - The account (as a read-only snapshot), or null.
+	*/
+	synchronized Account findAccount(int accountNo) {
+		return (((accountNo > 0) && (accountNo <= this.getNumberOfAccounts())) ? this.getAccountArray()[accountNo - 1] : null);
+	}
+	
 	/**
 	* The getAccounts method is used to return a String containing the account information
 	* stored in the accounts array.  It uses the account .toString method for the retrieval of the formatted 
@@ -311,17 +552,18 @@ public class Client {
 	* the calcTotalAmount method on the account instance that gets the total ptojected amount at the end of the peroid.
 	* @return String - The account information.
 	*/
-	public String getAccounts() {
+	public synchronized String getAccounts() {
 		StringBuilder builder = new StringBuilder();
-		if (this.noAccounts > 0) {
+		if (this.getNumberOfAccounts() > 0) {
 			int accountNo = 1;
-			for (Account account : this.accounts) { // Iterates for each account.
+			for (Account account : this.getAccountArray()) { // Iterates for each account.
 				if (account != null) {
 					builder.append(NEW_LINE);
-					builder.append(ACCOUNT_NUMBER + SPACE + (accountNo++) + COLON + NEW_LINE);
-					builder.append(account.toString() + NEW_LINE); // Uses the account .toString() method.
+					builder.append(ACCOUNT_NUMBER).append(SPACE).append(accountNo++).append(COLON).append(NEW_LINE);
+					account.appendTo(builder).append(NEW_LINE); // Uses the account .appendTo() method.
 					// Appends the calculated total projected amount (at the end of the investment period).
-					builder.append(TAB + TOTAL_AMOUNT + CURRENCY_FORMAT.format(account.calcTotalAmount()));
+					builder.append(TAB).append(TOTAL_AMOUNT);
+					account.appendTotalAmount(builder);
 				}
 			}
 		} else {
@@ -330,25 +572,30 @@ public class Client {
 		return builder.toString();
 	}
 	
-	public int getNumberOfAccounts() {
+	public synchronized int getNumberOfAccounts() {
+		ClientTable table = this.table;
+		if ((table != null) && table.storesAccounts()) {
+			int noAccounts = table.getNumberOfAccounts(this);
+			if (noAccounts >= 0) {
+				return noAccounts;
+			}
+		}
 		return this.noAccounts;
 	}
 	
 	/**
 	* The calcTax method is used to calculate the income tax; it performs the tax calculation based on their residency and gross salary.
-	* The result is then assigned to the tax instance attribute via the setter. It uses the partner method calcTaxFormula, passing in the
-	* different arguments for each condition, which is done to avoid repeated logic.
+	* The result is then assigned to the tax instance attribute via the setter. The brackets are those of the client's TaxSchedule
+	* (which is the default schedule unless the client is stored in a Calculator that uses another schedule).
 	*/
-	public void calcTax() {
-		double tax = ((this.getResident()) ? this.calcTax(RESIDENT_TAXABLE_INCOME, RESIDENT_TAXABLE_INCOME_TAX, RESIDENT_TAXABLE_INCOME_RATE)
-						: this.calcTax(NONRESIDENT_TAXABLE_INCOME, NONRESIDENT_TAXABLE_INCOME_TAX, NONRESIDENT_TAXABLE_INCOME_RATE));
-		this.setTax(tax);
+	public synchronized void calcTax() {
+		this.setTax(this.schedule.calcTax(this.getGrossSalary(), this.getResident()));
 		this.calcMedicare();
 		this.calcNetSalary();
 	}
 	
 	private static double convertToWeekly(double value) {
-		return Double.parseDouble(DECIMAL_FORMAT.format((value /WEEKS_PER_YEAR)));
+		return Money.round(value / WEEKS_PER_YEAR);
 	}
 	
 	/**
@@ -358,7 +605,7 @@ public class Client {
 	* @param str String - The String that you desire to have the starting letter in each word to be capitalised.
 	* @return String - The resulting capitalised String.
 	*/
-	private static String convertToUpper(String str) {
+	static String convertToUpper(String str) {
 		StringBuilder builder = new StringBuilder();
 		StringTokenizer tokens = new StringTokenizer(str.toLowerCase(), SPACE);
 		while(tokens.hasMoreTokens()) {
@@ -376,31 +623,88 @@ public class Client {
 	*/
 	public String serialise() {
 		StringBuilder output = new StringBuilder();
-		// Appends the attribute data to the StringBuilder in the specified saving format.
-		output.append(FIELD_CLIENT_NAME + SPACE + this.getName() + NEW_LINE);
-		output.append(FIELD_CLIENT_SALARY + SPACE + NUMBER_FORMAT.format(this.getGrossSalary()) + NEW_LINE);
-		output.append(FIELD_CLIENT_RESIDENT + SPACE + (this.getResident() ? BOOLEAN_LETTER_Y : BOOLEAN_LETTER_N) + NEW_LINE);
-		output.append(FIELD_CLIENT_EXPENSES + SPACE + NUMBER_FORMAT.format(this.getWeeklyExpenses()) + NEW_LINE);
+		try {
+			this.serialise(output);
+		} catch (IOException ex) {
+			// A StringBuilder doesn't throw an IOException.
+		}
+		return output.toString();
+	}
+	
+	/**
+	* The second serialise method appends the serialised client directly to the received Appendable (such as a Writer),
+	* which avoids the need for the whole record to be composed as a String before it is written.
+	* @param output Appendable - The destination of the serialised client.
+	* @throws IOException - If the output couldn't be written.
+	*/
+	public synchronized void serialise(Appendable output) throws IOException {
+		// Appends the attribute data in the specified saving format.
+		output.append(FIELD_CLIENT_NAME).append(SPACE).append(this.getName()).append(NEW_LINE);
+		output.append(FIELD_CLIENT_SALARY).append(SPACE).append(NUMBER_FORMAT.get().format(this.getGrossSalary())).append(NEW_LINE);
+		output.append(FIELD_CLIENT_RESIDENT).append(SPACE).append(this.getResident() ? BOOLEAN_LETTER_Y : BOOLEAN_LETTER_N).append(NEW_LINE);
+		output.append(FIELD_CLIENT_EXPENSES).append(SPACE).append(NUMBER_FORMAT.get().format(this.getWeeklyExpenses())).append(NEW_LINE);
 		// If there are accounts
 		if (this.getNumberOfAccounts() > 0) {
 			int accountNo = 1;
 			output.append(NEW_LINE);
 			// It will iterate through them
-			for (Account account : this.accounts) {
+			for (Account account : this.getAccountArray()) {
 				if (account != null) {
 					// Appending the account data
-					output.append(ACCOUNT + SPACE + (accountNo++) + NEW_LINE);
-					output.append(FIELD_ACCOUNT_RATE + SPACE + account.getRate() + NEW_LINE);
-					output.append(FIELD_ACCOUNT_WEEKS + SPACE + account.getNumberOfWeeks() + NEW_LINE);
-					output.append(FIELD_ACCOUNT_AMOUNT + SPACE + NUMBER_FORMAT.format(account.getAmount()) + NEW_LINE);
+					output.append(ACCOUNT).append(SPACE).append(String.valueOf(accountNo++)).append(NEW_LINE);
+					output.append(FIELD_ACCOUNT_RATE).append(SPACE).append(String.valueOf(account.getRate())).append(NEW_LINE);
+					output.append(FIELD_ACCOUNT_WEEKS).append(SPACE).append(String.valueOf(account.getNumberOfWeeks())).append(NEW_LINE);
+					output.append(FIELD_ACCOUNT_AMOUNT).append(SPACE).append(NUMBER_FORMAT.get().format(account.getAmount())).append(NEW_LINE);
 				}
 			}
 		} else {
 			// If there aren't any accounts it appends 'no accounts'
-			output.append(NEW_LINE + NO_ACCOUNTS + NEW_LINE);
+			output.append(NEW_LINE).append(NO_ACCOUNTS).append(NEW_LINE);
 		}
 		output.append(NEW_LINE);
-		return output.toString();
+	}
+	
+	/**
+	* The writeSnapshot method writes the client to the received DataOutput in the binary snapshot format used by the 
+	* Calculator saveSnapshot method. The name is written as length-prefixed UTF-8 bytes, followed by the raw attribute 
+	* values and then each of the accounts.
+	* @param out DataOutput - The destination of the client.
+	* @throws IOException - If the client couldn't be written.
+	*/
+	public synchronized void writeSnapshot(DataOutput out) throws IOException {
+		byte[] name = this.getName().getBytes(StandardCharsets.UTF_8);
+		out.writeInt(name.length);
+		out.write(name);
+		out.writeDouble(this.getGrossSalary());
+		out.writeBoolean(this.getResident());
+		out.writeDouble(this.getWeeklyExpenses());
+		out.writeByte(this.getNumberOfAccounts());
+		for (Account account : this.getAccountArray()) {
+			if (account != null) {
+				out.writeDouble(account.getRate());
+				out.writeInt(account.getNumberOfWeeks());
+				out.writeDouble(account.getAmount());
+			}
+		}
+	}
+	
+	/**
+	* The readSnapshot method reads a client (which was written by the writeSnapshot method) from the received DataInput. 
+	* Once read the tax is calculated.
+	* @param in DataInput - The source of the client.
+	* @return Client - The new Client object.
+	* @throws IOException - If the client couldn't be read.
+	*/
+	public static Client readSnapshot(DataInput in) throws IOException {
+		byte[] name = new byte[in.readInt()];
+		in.readFully(name);
+		Client client = new Client(new String(name, StandardCharsets.UTF_8), in.readDouble(), in.readBoolean());
+		client.setWeeklyExpenses(in.readDouble());
+		for (int accounts = in.readByte(); accounts > 0; accounts--) {
+			client.addAccount(in.readDouble(), in.readInt(), in.readDouble());
+		}
+		client.calcTax();
+		return client;
 	}
 	
 	/**
@@ -409,7 +713,37 @@ public class Client {
 	* @return String - A text version containing the attribute data.
 	*/
 	public String toString() {
-		StringBuilder builder = new StringBuilder();
+		ReportFormat format = ReportFormat.getInstance();
+		RenderedText text = this.text;
+		if ((text != null) && text.isValid(format)) {
+			return text.toString();
+		}
+		// The rendering is marked as in progress before the attributes are read, so that a setter invoked in the meantime
+		// finds the marker and discards it, in which case the text isn't kept.
+		RenderedText rendering = new RenderedText(format, null);
+		this.text = rendering;
+		text = new RenderedText(format, this.render(new StringBuilder(), format).toString());
+		TEXT.compareAndSet(this, rendering, text);
+		return text.toString();
+	}
+	
+	/**
+	* The appendTo method appends the text returned by the toString method to the received StringBuilder.
+	* @param builder StringBuilder - The destination.
+	* @return StringBuilder - The same StringBuilder.
+	*/
+	public StringBuilder appendTo(StringBuilder builder) {
+		return builder.append(this.toString());
+	}
+	
+	/**
+	* The render method appends the text of the client to the received StringBuilder, with the amounts formatted directly
+	* into the StringBuilder by the received ReportFormat.
+	* @param builder StringBuilder - The destination.
+	* @param format ReportFormat - The format of the amounts.
+	* @return StringBuilder - The same StringBuilder.
+	*/
+	private StringBuilder render(StringBuilder builder, ReportFormat format) {
 		builder.append(LABEL_NAME); 
 		builder.append(this.getName());
 		builder.append(NEW_LINE);  
@@ -417,19 +751,19 @@ public class Client {
 		builder.append(this.getResident() ? RESIDENT_YES : RESIDENT_NO);
 		builder.append(NEW_LINE);  
 		builder.append(LABEL_GROSS_SALARY); 
-		builder.append(CURRENCY_FORMAT.format(convertToWeekly(this.getGrossSalary())));
+		format.appendCurrency(builder, convertToWeekly(this.getGrossSalary()));
 		builder.append(NEW_LINE);
 		builder.append(LABEL_NET_SALARY); 
-		builder.append(CURRENCY_FORMAT.format(this.getWeeklyNetSalary()));
+		format.appendCurrency(builder, this.getWeeklyNetSalary());
 		builder.append(NEW_LINE);
 		builder.append(LABEL_TAX_PAID); 
-		builder.append(CURRENCY_FORMAT.format(convertToWeekly(this.getTax())));
+		format.appendCurrency(builder, convertToWeekly(this.getTax()));
 		builder.append(NEW_LINE); 
 		builder.append(LABEL_MEDICARE); 
-		builder.append(CURRENCY_FORMAT.format(convertToWeekly(this.getMedicare())));
+		format.appendCurrency(builder, convertToWeekly(this.getMedicare()));
 		builder.append(NEW_LINE); 
 		builder.append(LABEL_EXPENSES); 
-		builder.append(CURRENCY_FORMAT.format(this.getWeeklyExpenses()));		
-		return builder.toString();
+		format.appendCurrency(builder, this.getWeeklyExpenses());		
+		return builder;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,392 @@
+/*
+ *  Description:
+ *  The ClientBookGenerator class writes a synthetic client file (in the same format as the Client serialise method, which
+ *  is the format read by the Calculator open method) for load and scale testing. The clients are drawn from a seeded
+ *  SplittableRandom, so the same settings always give the same file:
+ *    - the gross salary follows a log-normal distribution (given by its median and the spread of its logarithm);
+ *    - a client is a resident with the residentRatio probability;
+ *    - the weekly expenses are up to the expensesRatio of the weekly gross salary;
+ *    - each client has between minAccounts and maxAccounts accounts, with a whole percentage rate, a term in weeks and a
+ *      whole amount drawn uniformly from their ranges.
+ *  A record reuses the name of an earlier client with the duplicateRatio probability, which the open method then reports
+ *  as a client that already exists. The records are formatted directly into a byte buffer (without creating any Client
+ *  objects) and streamed to the output, so the memory used doesn't depend on the number of clients.
+ *      java ClientBookGenerator <file|-> [-clients 1000000] [-seed 1] [-salary 60000,0.5] [-resident 0.8] [-expenses 0.25]
+ *                                [-accounts 0-3] [-rates 1-20] [-weeks 1-52] [-amounts 1-100] [-duplicates 0.01]
+ */
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+public class ClientBookGenerator {
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final long MAX_SALARY = 100000000;
+	private static final int WEEKS_PER_YEAR = 52;
+	private static final int MAX_WEEKS = 5200;
+	private static final int PERCENT = 100;
+	private static final String STANDARD_OUTPUT = "-";
+	// The fields of the file, in the format written by the Client serialise method.
+	private static final byte[] NEW_LINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NAME = bytes("name Client ");
+	private static final byte[] SALARY = bytes("gross salary ");
+	private static final byte[] RESIDENT_YES = bytes("resident y");
+	private static final byte[] RESIDENT_NO = bytes("resident n");
+	private static final byte[] EXPENSES = bytes("expenses ");
+	private static final byte[] ACCOUNT = bytes("account ");
+	private static final byte[] RATE = bytes("rate ");
+	private static final byte[] WEEKS = bytes("weeks ");
+	private static final byte[] AMOUNT = bytes("amount ");
+	private static final byte[] NO_ACCOUNTS = bytes("no accounts");
+	private static final String USAGE = "Usage: java ClientBookGenerator <file|-> [-clients n] [-seed n] [-salary median,spread] " +
+										"[-resident ratio] [-expenses ratio] [-accounts min-max] [-rates min-max] [-weeks min-max] " +
+										"[-amounts min-max] [-duplicates ratio]";
+	private static final String MSG_WRITTEN = "%d records (%d duplicates, %d accounts), %d bytes in %d ms (%.1f MB/s)";
+	private static final String ERR_RATIO = "The ratio must be between 0 and 1: ";
+	private static final String ERR_RANGE = "The range isn't valid: ";
+	private static final String ERR_ACCOUNTS = "The number of accounts must be between 0 and " + Client.MAX_ACCOUNTS;
+
+	private long clients = 1000000;
+	private long seed = 1;
+	private double salaryMedian = 60000;
+	private double salarySpread = 0.5;
+	private double residentRatio = 0.8;
+	private double expensesRatio = 0.25;
+	private int minAccounts = 0;
+	private int maxAccounts = Client.MAX_ACCOUNTS;
+	private int minRate = 1; // The rates are whole percentages.
+	private int maxRate = 20;
+	private int minWeeks = 1;
+	private int maxWeeks = 52;
+	private long minAmount = 1;
+	private long maxAmount = 100;
+	private double duplicateRatio = 0;
+	// The counts of the last generated file.
+	private long duplicates;
+	private long accounts;
+	private long bytes;
+	// The buffer that the records are formatted in, before being written to the output.
+	private byte[] buffer;
+	private int position;
+	private OutputStream out;
+
+	public void setClients(long clients) {
+		this.clients = Math.max(0, clients);
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	* The setSalary method sets the log-normal distribution of the gross salaries.
+	* @param median double - The median gross salary.
+	* @param spread double - The standard deviation of the logarithm of the salaries (where 0 gives every client the median).
+	*/
+	public void setSalary(double median, double spread) {
+		if ((median < 1) || (spread < 0)) {
+			throw new IllegalArgumentException(ERR_RANGE + median + "," + spread);
+		}
+		this.salaryMedian = median;
+		this.salarySpread = spread;
+	}
+
+	public void setResidentRatio(double ratio) {
+		this.residentRatio = checkRatio(ratio);
+	}
+
+	/**
+	* The setExpensesRatio method sets the largest fraction of the weekly gross salary that the weekly expenses can be.
+	* @param ratio double - The ratio between 0 and 1.
+	*/
+	public void setExpensesRatio(double ratio) {
+		this.expensesRatio = checkRatio(ratio);
+	}
+
+	public void setAccounts(int min, int max) {
+		if ((min < 0) || (max > Client.MAX_ACCOUNTS) || (min > max)) {
+			throw new IllegalArgumentException(ERR_ACCOUNTS);
+		}
+		this.minAccounts = min;
+		this.maxAccounts = max;
+	}
+
+	/**
+	* The setRates method sets the range of the interest rates, which are whole percentages.
+	* @param min int - The lowest rate (in percent).
+	* @param max int - The highest rate (in percent).
+	*/
+	public void setRates(int min, int max) {
+		checkRange(min, max, 0, PERCENT);
+		this.minRate = min;
+		this.maxRate = max;
+	}
+
+	public void setWeeks(int min, int max) {
+		checkRange(min, max, 1, MAX_WEEKS);
+		this.minWeeks = min;
+		this.maxWeeks = max;
+	}
+
+	public void setAmounts(long min, long max) {
+		checkRange(min, max, 1, MAX_SALARY);
+		this.minAmount = min;
+		this.maxAmount = max;
+	}
+
+	/**
+	* The setDuplicateRatio method sets the probability of a record reusing the name of an earlier client.
+	* @param ratio double - The ratio between 0 and 1.
+	*/
+	public void setDuplicateRatio(double ratio) {
+		this.duplicateRatio = checkRatio(ratio);
+	}
+
+	public long getDuplicates() {
+		return this.duplicates;
+	}
+
+	public long getAccounts() {
+		return this.accounts;
+	}
+
+	public long getBytes() {
+		return this.bytes;
+	}
+
+	private static double checkRatio(double ratio) {
+		if (!((ratio >= 0) && (ratio <= 1))) {
+			throw new IllegalArgumentException(ERR_RATIO + ratio);
+		}
+		return ratio;
+	}
+
+	private static void checkRange(long min, long max, long lowest, long highest) {
+		if ((min < lowest) || (max > highest) || (min > max)) {
+			throw new IllegalArgumentException(ERR_RANGE + min + "-" + max);
+		}
+	}
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	* The generate method writes the client file to the received file name (or the standard output for "-").
+	* @param filename String - The file.
+	* @throws IOException - If the file couldn't be written.
+	*/
+	public void generate(String filename) throws IOException {
+		if (filename.equals(STANDARD_OUTPUT)) {
+			this.generate(System.out);
+			System.out.flush();
+		} else {
+			OutputStream out = new FileOutputStream(filename);
+			try {
+				this.generate(out);
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	* The second generate method writes the client file to the received OutputStream (which is left open). The records
+	* are written in the order they are generated, each of which is a client with a new name, unless it is a duplicate.
+	* @param out OutputStream - The destination of the file.
+	* @throws IOException - If the file couldn't be written.
+	*/
+	public void generate(OutputStream out) throws IOException {
+		SplittableRandom random = new SplittableRandom(this.seed);
+		this.out = out;
+		this.buffer = new byte[BUFFER_SIZE];
+		this.position = 0;
+		this.duplicates = 0;
+		this.accounts = 0;
+		this.bytes = 0;
+		long names = 0; // The number of names that have been used.
+		try {
+			for (long record = 0; record < this.clients; record++) {
+				if ((names > 0) && (random.nextDouble() < this.duplicateRatio)) {
+					this.writeName(random.nextLong(names)); // Reuses the name of an earlier client.
+					this.duplicates++;
+				} else {
+					this.writeName(names++);
+				}
+				long salary = Math.min(MAX_SALARY, Math.max(1, Math.round(this.salaryMedian * Math.exp(this.salarySpread * random.nextGaussian()))));
+				this.put(SALARY).putGrouped(salary).put(NEW_LINE);
+				this.put((random.nextDouble() < this.residentRatio) ? RESIDENT_YES : RESIDENT_NO).put(NEW_LINE);
+				long expenses = 1 + random.nextLong(Math.max(1, (long)((salary / (double)WEEKS_PER_YEAR) * this.expensesRatio)));
+				this.put(EXPENSES).putGrouped(expenses).put(NEW_LINE);
+				this.put(NEW_LINE);
+				int count = random.nextInt(this.minAccounts, this.maxAccounts + 1);
+				if (count == 0) {
+					this.put(NO_ACCOUNTS).put(NEW_LINE);
+				}
+				for (int accountNo = 1; accountNo <= count; accountNo++) {
+					this.put(ACCOUNT).putLong(accountNo).put(NEW_LINE);
+					this.put(RATE).putRate(random.nextInt(this.minRate, this.maxRate + 1)).put(NEW_LINE);
+					this.put(WEEKS).putLong(random.nextInt(this.minWeeks, this.maxWeeks + 1)).put(NEW_LINE);
+					this.put(AMOUNT).putGrouped(random.nextLong(this.minAmount, this.maxAmount + 1)).put(NEW_LINE);
+				}
+				this.accounts += count;
+				this.put(NEW_LINE);
+			}
+			this.flush();
+		} finally {
+			this.buffer = null;
+			this.out = null;
+		}
+	}
+
+	/**
+	* The writeName method writes the name line of the client with the received number. The name is "Client " followed by
+	* the number in base 26 (as letters, the least significant first), which gives each number a different name. The first
+	* letter is in upper case, as the Client setName method would convert it, so the name is saved as it was generated.
+	* @param number long - The number of the client.
+	*/
+	private void writeName(long number) throws IOException {
+		this.put(NAME);
+		this.reserve(14); // A long holds no more than 14 digits in base 26.
+		char first = 'A';
+		for (long value = number + 1; value > 0; value /= 26) {
+			this.buffer[this.position++] = (byte)(first + (value % 26));
+			first = 'a';
+		}
+		this.put(NEW_LINE);
+	}
+
+	private ClientBookGenerator put(byte[] bytes) throws IOException {
+		this.reserve(bytes.length);
+		System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+		this.position += bytes.length;
+		return this;
+	}
+
+	/**
+	* The putLong method writes the received (non-negative) value as its digits.
+	* @param value long - The value.
+	*/
+	private ClientBookGenerator putLong(long value) throws IOException {
+		return this.putDigits(value, false);
+	}
+
+	/**
+	* The putGrouped method writes the received (non-negative) value with commas between the groups of thousands, in the same way
+	* as the NumberFormat used by the Client serialise method (the commas are skipped by the ClientReader).
+	* @param value long - The value.
+	*/
+	private ClientBookGenerator putGrouped(long value) throws IOException {
+		return this.putDigits(value, true);
+	}
+
+	private ClientBookGenerator putDigits(long value, boolean grouped) throws IOException {
+		this.reserve(26); // The 19 digits of a long, and the commas between them.
+		int digits = 1;
+		for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+			digits++;
+		}
+		int end = this.position + digits + ((grouped) ? ((digits - 1) / 3) : 0);
+		int index = end;
+		for (int digit = 0; (digit == 0) || (value > 0); digit++) {
+			if (grouped && (digit > 0) && ((digit % 3) == 0)) {
+				this.buffer[--index] = ',';
+			}
+			this.buffer[--index] = (byte)('0' + (value % 10));
+			value /= 10;
+		}
+		this.position = end;
+		return this;
+	}
+
+	/**
+	* The putRate method writes the received percentage as a fraction, in the same way as String.valueOf(percent / 100.0)
+	* (such as "0.07", "0.1" or "1.0").
+	* @param percent int - The rate in percent (from 0 to 100).
+	*/
+	private ClientBookGenerator putRate(int percent) throws IOException {
+		this.reserve(4);
+		this.buffer[this.position++] = (byte)('0' + (percent / PERCENT));
+		this.buffer[this.position++] = '.';
+		this.buffer[this.position++] = (byte)('0' + ((percent / 10) % 10));
+		if ((percent % 10) != 0) {
+			this.buffer[this.position++] = (byte)('0' + (percent % 10));
+		}
+		return this;
+	}
+
+	/**
+	* The reserve method writes out the buffer if it doesn't have room for the received number of bytes.
+	* @param length int - The number of bytes.
+	*/
+	private void reserve(int length) throws IOException {
+		if ((this.position + length) > this.buffer.length) {
+			this.flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		this.out.write(this.buffer, 0, this.position);
+		this.bytes += this.position;
+		this.position = 0;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if ((args.length == 0) || ((args.length % 2) == 0)) {
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		ClientBookGenerator generator = new ClientBookGenerator();
+		try {
+			for (int i = 1; i < (args.length - 1); i += 2) {
+				String[] range = args[i + 1].split("[-,]");
+				switch (args[i]) {
+					case "-clients":
+						generator.setClients(Long.parseLong(args[i + 1]));
+						break;
+					case "-seed":
+						generator.setSeed(Long.parseLong(args[i + 1]));
+						break;
+					case "-salary":
+						generator.setSalary(Double.parseDouble(range[0]), ((range.length > 1) ? Double.parseDouble(range[1]) : 0));
+						break;
+					case "-resident":
+						generator.setResidentRatio(Double.parseDouble(args[i + 1]));
+						break;
+					case "-expenses":
+						generator.setExpensesRatio(Double.parseDouble(args[i + 1]));
+						break;
+					case "-accounts":
+						generator.setAccounts(Integer.parseInt(range[0]), Integer.parseInt(range[range.length - 1]));
+						break;
+					case "-rates":
+						generator.setRates(Integer.parseInt(range[0]), Integer.parseInt(range[range.length - 1]));
+						break;
+					case "-weeks":
+						generator.setWeeks(Integer.parseInt(range[0]), Integer.parseInt(range[range.length - 1]));
+						break;
+					case "-amounts":
+						generator.setAmounts(Long.parseLong(range[0]), Long.parseLong(range[range.length - 1]));
+						break;
+					case "-duplicates":
+						generator.setDuplicateRatio(Double.parseDouble(args[i + 1]));
+						break;
+					default:
+						throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (IllegalArgumentException ex) { // Including a NumberFormatException.
+			System.err.println(ex.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		long start = System.nanoTime();
+		generator.generate(args[0]);
+		long elapsed = Math.max(1, System.nanoTime() - start);
+		// The summary is written to the standard error, so that it isn't mixed with a file written to the standard output.
+		System.err.println(String.format(MSG_WRITTEN, generator.clients, generator.getDuplicates(), generator.getAccounts(),
+											generator.getBytes(), elapsed / 1000000, (generator.getBytes() / 1e6) / (elapsed / 1e9)));
+	}
+}
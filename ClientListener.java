@@ -0,0 +1,29 @@
+/*	
+ *  Description: 
+ *  The ClientListener interface is used by a Client to notify the Calculator that is storing it of any changes made
+ *  directly to the client (rather than through the Calculator), such as a change to the salary or an account being added.
+ */
+public interface ClientListener {
+	
+	/**
+	* The clientChanged method is invoked once the gross salary, residency, or weekly expenses of the client have been set.
+	* @param client Client - The client that was changed.
+	*/
+	public void clientChanged(Client client);
+	
+	/**
+	* The accountAdded method is invoked once an account has been added to the client.
+	* @param client Client - The client that the account was added to.
+	* @param interestRate double - The interest rate.
+	* @param investmentLength int - The investment length.
+	* @param investmentAmount double - The investment amount.
+	*/
+	public void accountAdded(Client client, double interestRate, int investmentLength, double investmentAmount);
+	
+	/**
+	* The accountDeleted method is invoked once an account has been deleted from the client.
+	* @param client Client - The client that the account was deleted from.
+	* @param accountNo int - The number of the account that was deleted.
+	*/
+	public void accountDeleted(Client client, int accountNo);
+}
@@ -0,0 +1,323 @@
+/*
+ *  Description:
+ *  The ClientReader class is a streaming tokenizer for the client file format (as written by the Client serialise method).
+ *  It reads the file through its own char buffer, and on each invocation of the next method it steps to the following line
+ *  and recognises the field keyword that the line starts with. The value that follows the keyword can then be retrieved
+ *  as text, or parsed as a number directly from the buffer (skipping any thousands-separator commas), which avoids the
+ *  creation of the intermediate Strings and regular expressions that would otherwise be needed for every line.
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+
+public class ClientReader {
+	// The fields that a line can be recognised as.
+	public static final int END = -1;
+	public static final int OTHER = 0;
+	public static final int NAME = 1;
+	public static final int SALARY = 2;
+	public static final int RESIDENT = 3;
+	public static final int EXPENSES = 4;
+	public static final int ACCOUNT = 5;
+	public static final int NO_ACCOUNTS = 6;
+	public static final int RATE = 7;
+	public static final int WEEKS = 8;
+	public static final int AMOUNT = 9;
+
+	private static final int BUFFER_SIZE = 65536;
+	// The largest number of significant digits that can be accumulated in a long and converted exactly to a double.
+	private static final int MAX_EXACT_DIGITS = 15;
+	// The powers of ten that are exactly representable as a double.
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+													1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	private static final char[][] KEYWORDS = {
+		null,
+		Client.FIELD_CLIENT_NAME.toCharArray(),
+		Client.FIELD_CLIENT_SALARY.toCharArray(),
+		Client.FIELD_CLIENT_RESIDENT.toCharArray(),
+		Client.FIELD_CLIENT_EXPENSES.toCharArray(),
+		Client.ACCOUNT.toCharArray(),
+		Client.NO_ACCOUNTS.toCharArray(),
+		Client.FIELD_ACCOUNT_RATE.toCharArray(),
+		Client.FIELD_ACCOUNT_WEEKS.toCharArray(),
+		Client.FIELD_ACCOUNT_AMOUNT.toCharArray()
+	};
+
+	private Reader in;
+	private char[] buffer;
+	private int position; // The position of the next unread char within the buffer.
+	private int limit; // The number of chars held within the buffer.
+	private boolean eof;
+	private boolean skipLineFeed; // Whether the previous line ended with a \r that may be followed by a \n.
+	private long discarded; // The number of chars that have been read and then moved out of the buffer.
+	private long lineOffset; // The offset of the current line within the file (in chars).
+	// The bounds of the value on the current line (being the text that follows the keyword).
+	private int valueStart;
+	private int valueEnd;
+
+	/**
+	* The constructor receives the Reader that the lines are read from.
+	* @param in Reader - The Reader containing the client file.
+	*/
+	public ClientReader(Reader in) {
+		this.in = in;
+		this.buffer = new char[BUFFER_SIZE];
+		this.position = 0;
+		this.limit = 0;
+		this.eof = false;
+		this.skipLineFeed = false;
+		this.discarded = 0;
+		this.lineOffset = 0;
+	}
+
+	/**
+	* The fill method moves any unread chars to the start of the buffer and then reads further chars after them. If the
+	* buffer is already full of unread chars (due to a very long line) then the buffer is doubled in size.
+	* @return boolean - Whether any further chars were read.
+	*/
+	private boolean fill() throws IOException {
+		if (this.eof) {
+			return false;
+		}
+		int unread = this.limit - this.position;
+		this.discarded += this.position;
+		if (this.position > 0) {
+			System.arraycopy(this.buffer, this.position, this.buffer, 0, unread);
+		} else if (unread == this.buffer.length) {
+			char[] buffer = new char[this.buffer.length * 2];
+			System.arraycopy(this.buffer, 0, buffer, 0, unread);
+			this.buffer = buffer;
+		}
+		this.position = 0;
+		this.limit = unread;
+		int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+		if (read < 0) {
+			this.eof = true;
+			return false;
+		}
+		this.limit += read;
+		return true;
+	}
+
+	/**
+	* The next method steps to the following line in the file, and returns the field that the line starts with.
+	* @return int - The field (such as NAME or AMOUNT), OTHER if the line doesn't start with a field, or END once the file has ended.
+	*/
+	public int next() throws IOException {
+		if (this.skipLineFeed) {
+			this.skipLineFeed = false;
+			if (((this.position < this.limit) || this.fill()) && (this.buffer[this.position] == '\n')) {
+				this.position++;
+			}
+		}
+		// Finds the end of the line, filling the buffer until a line separator (or the end of the file) has been found.
+		int end = this.position;
+		while (true) {
+			while ((end < this.limit) && (this.buffer[end] != '\n') && (this.buffer[end] != '\r')) {
+				end++;
+			}
+			if (end < this.limit) {
+				break;
+			}
+			int offset = end - this.position;
+			if (!this.fill()) {
+				if (this.position == this.limit) {
+					return END; // Nothing further remains.
+				}
+				end = this.limit;
+				break;
+			}
+			end = this.position + offset;
+		}
+		this.lineOffset = this.discarded + this.position;
+		int field = this.recognise(this.position, end);
+		// Steps over the line separator (which can be \n, \r\n or \r).
+		this.position = end;
+		if (this.position < this.limit) {
+			if (this.buffer[this.position++] == '\r') {
+				if ((this.position < this.limit) && (this.buffer[this.position] == '\n')) {
+					this.position++;
+				} else {
+					// The \n may not have been read into the buffer yet.
+					this.skipLineFeed = (this.position == this.limit);
+				}
+			}
+		}
+		return field;
+	}
+
+	/**
+	* The recognise method determines which field keyword the line between the received bounds starts with. It records the
+	* bounds of the value (being the remainder of the line with the surrounding white space removed).
+	* @param start int - The start of the line within the buffer.
+	* @param end int - The end of the line within the buffer.
+	* @return int - The recognised field.
+	*/
+	private int recognise(int start, int end) {
+		int field = OTHER;
+		if (start < end) {
+			switch (this.buffer[start]) {
+				case 'n':
+					field = (this.matches(start, end, NAME) ? NAME : (this.matches(start, end, NO_ACCOUNTS) ? NO_ACCOUNTS : OTHER));
+					break;
+				case 'g':
+					field = (this.matches(start, end, SALARY) ? SALARY : OTHER);
+					break;
+				case 'r':
+					field = (this.matches(start, end, RESIDENT) ? RESIDENT : (this.matches(start, end, RATE) ? RATE : OTHER));
+					break;
+				case 'e':
+					field = (this.matches(start, end, EXPENSES) ? EXPENSES : OTHER);
+					break;
+				case 'a':
+					field = (this.matches(start, end, ACCOUNT) ? ACCOUNT : (this.matches(start, end, AMOUNT) ? AMOUNT : OTHER));
+					break;
+				case 'w':
+					field = (this.matches(start, end, WEEKS) ? WEEKS : OTHER);
+					break;
+			}
+		}
+		int valueStart = start + ((field != OTHER) ? KEYWORDS[field].length : 0);
+		// Trims the surrounding white space (in the same way as String.trim).
+		while ((valueStart < end) && (this.buffer[valueStart] <= ' ')) {
+			valueStart++;
+		}
+		while ((end > valueStart) && (this.buffer[end - 1] <= ' ')) {
+			end--;
+		}
+		this.valueStart = valueStart;
+		this.valueEnd = end;
+		return field;
+	}
+
+	/**
+	* The matches method checks whether the line between the received bounds starts with the keyword of the received field.
+	* @param start int - The start of the line within the buffer.
+	* @param end int - The end of the line within the buffer.
+	* @param field int - The field being checked.
+	* @return boolean - Whether the line starts with the keyword.
+	*/
+	private boolean matches(int start, int end, int field) {
+		char[] keyword = KEYWORDS[field];
+		if ((end - start) < keyword.length) {
+			return false;
+		}
+		for (int i = 0; i < keyword.length; i++) {
+			if (this.buffer[start + i] != keyword[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	* The getText method returns the value of the current line as a String.
+	* @return String - The value (with the surrounding white space removed).
+	*/
+	public String getText() {
+		return new String(this.buffer, this.valueStart, this.valueEnd - this.valueStart);
+	}
+
+	/**
+	* The getBoolean method returns whether the value of the current line is the letter y.
+	* @return boolean - Whether the value is y.
+	*/
+	public boolean getBoolean() {
+		return (((this.valueEnd - this.valueStart) == 1) && (this.buffer[this.valueStart] == Client.BOOLEAN_LETTER_Y.charAt(0)));
+	}
+
+	/**
+	* The getNumber method parses the value of the current line as a double, skipping any commas. The digits are accumulated
+	* into a long and then divided by the relating power of ten, which gives the same (correctly rounded) result as Double.parseDouble
+	* while the number of digits is small enough to be exact. Any other value is handed over to Double.parseDouble.
+	* @return double - The parsed value.
+	* @throws NumberFormatException - If the value isn't a number.
+	*/
+	public double getNumber() {
+		int i = this.valueStart;
+		boolean negative = false;
+		if ((i < this.valueEnd) && ((this.buffer[i] == '-') || (this.buffer[i] == '+'))) {
+			negative = (this.buffer[i++] == '-');
+		}
+		long mantissa = 0;
+		int digits = 0, decimals = 0;
+		boolean point = false, seen = false;
+		for (; i < this.valueEnd; i++) {
+			char c = this.buffer[i];
+			if ((c >= '0') && (c <= '9')) {
+				mantissa = (mantissa * 10) + (c - '0');
+				seen = true;
+				if ((mantissa > 0) && (++digits > MAX_EXACT_DIGITS)) {
+					break;
+				}
+				if (point) {
+					decimals++;
+				}
+			} else if ((c == '.') && (!point)) {
+				point = true;
+			} else if ((c != ',') || point) {
+				break;
+			}
+		}
+		if ((i < this.valueEnd) || (!seen) || (decimals >= POWERS_OF_TEN.length)) {
+			return this.parseNumber();
+		}
+		double value = (mantissa / POWERS_OF_TEN[decimals]);
+		return ((negative) ? -value : value);
+	}
+
+	/**
+	* The parseNumber method is used by getNumber for any values that cannot be parsed directly from the buffer.
+	* @return double - The parsed value.
+	*/
+	private double parseNumber() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = this.valueStart; i < this.valueEnd; i++) {
+			if (this.buffer[i] != ',') {
+				builder.append(this.buffer[i]);
+			}
+		}
+		return Double.parseDouble(builder.toString());
+	}
+
+	/**
+	* The getInteger method parses the value of the current line as an int.
+	* @return int - The parsed value.
+	* @throws NumberFormatException - If the value isn't an integer.
+	*/
+	public int getInteger() {
+		int value = 0;
+		int length = this.valueEnd - this.valueStart;
+		if ((length > 0) && (length < 10)) {
+			for (int i = this.valueStart; i < this.valueEnd; i++) {
+				char c = this.buffer[i];
+				if ((c < '0') || (c > '9')) {
+					return Integer.parseInt(this.getText());
+				}
+				value = (value * 10) + (c - '0');
+			}
+			return value;
+		}
+		return Integer.parseInt(this.getText());
+	}
+
+	/**
+	* The getLineOffset method returns the offset of the current line (being the line last returned by the next method).
+	* @return long - The offset from the start of the file, in chars.
+	*/
+	public long getLineOffset() {
+		return this.lineOffset;
+	}
+
+	/**
+	* The getOffset method returns the offset of the next unread char, which is the length of the file once END has been returned.
+	* @return long - The offset from the start of the file, in chars.
+	*/
+	public long getOffset() {
+		return (this.discarded + this.position);
+	}
+
+	public void close() throws IOException {
+		this.in.close();
+	}
+}
@@ -0,0 +1,505 @@
+/*	
+ *  Description: 
+ *  The ClientTable class is the base class for the alternative storage used by the Calculator. Rather than each Client
+ *  object holding its own attributes, the attributes of every stored client are held by the table, with each client occupying
+ *  a single row. The Client objects then act as views over their row, so that existing code can continue to use the Client 
+ *  getters and setters. The class keeps track of which Client relates to each row, while the subclasses decide how the row
+ *  data is actually stored (such as in parallel primitive arrays, or within a memory-mapped file). A subclass can also hold 
+ *  the client's accounts, in which case they are only materialised when the client needs them.
+ *  The rows are guarded by a StampedLock: adding or removing a row (which can move another row) takes the write lock, while
+ *  the Client views read and write their row through the get and set methods under the read lock, so that a row can't be
+ *  moved while it is being accessed. Those methods check that the client still owns a row, as it may have been removed
+ *  (and detached) in the meantime. Recalculating the taxes of every row also takes the write lock, as it writes the rows
+ *  based on the salaries it has read; a single row is kept consistent by the Client calcTax method, which holds the client's monitor.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+public abstract class ClientTable {
+	private static final int INITIAL_CAPACITY = 16;
+	
+	// The columns that can be read and written using the get and set methods.
+	static final int GROSS_SALARY = 0;
+	static final int NET_SALARY = 1;
+	static final int TAX = 2;
+	static final int MEDICARE = 3;
+	static final int WEEKLY_EXPENSES = 4;
+	
+	// The Client views that relate to each row (used to update a view when its row is moved).
+	private Client[] owners;
+	private volatile int size;
+	// Guards the rows against being moved (by the add and remove methods) while they are accessed.
+	private final StampedLock lock;
+	
+	protected ClientTable() {
+		this.owners = new Client[INITIAL_CAPACITY];
+		this.size = 0;
+		this.lock = new StampedLock();
+	}
+	
+	/**
+	* The add method appends a new row containing the current attributes of the received client, and then attaches the
+	* client to that row (making the client a view over the table).
+	* @param client Client - The client to be stored in the table.
+	*/
+	public void add(Client client) {
+		long stamp = this.lock.writeLock();
+		try {
+			int row = this.size;
+			this.ensureCapacity(row + 1);
+			this.setGrossSalary(row, client.getGrossSalary());
+			this.setNetSalary(row, client.getNetSalary());
+			this.setTax(row, client.getTax());
+			this.setMedicare(row, client.getMedicare());
+			this.setWeeklyExpenses(row, client.getWeeklyExpenses());
+			this.setResident(row, client.getResident());
+			this.setName(row, client.getName());
+			this.restore(client, row);
+			client.attach(this, row);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	* The restore method is used to record the Client view that relates to the received row. It is used by the add method, 
+	* and by subclasses which already contain rows when they are created (recreating the view for each row).
+	* @param client Client - The view of the row.
+	* @param row int - The row, which must be the next row of the table.
+	*/
+	protected void restore(Client client, int row) {
+		if (row == this.owners.length) {
+			this.owners = Arrays.copyOf(this.owners, this.owners.length * 2);
+		}
+		this.owners[row] = client;
+		this.size = row + 1;
+		this.sizeChanged(this.size);
+	}
+	
+	/**
+	* The remove method detaches the received client from the table (copying its attributes back into the client, so that
+	* it remains usable), and fills the freed row with the last row. The client that owned the last row is then pointed at its new row.
+	* @param client Client - The client to be removed from the table.
+	*/
+	public void remove(Client client) {
+		long stamp = this.lock.writeLock();
+		try {
+			int row = client.getRow();
+			if (!this.owns(client, row)) {
+				return; // The client has already been removed.
+			}
+			client.detach();
+			int last = --this.size;
+			if (row != last) {
+				// Moves the last row into the freed row.
+				this.move(last, row);
+				this.owners[row] = this.owners[last];
+				this.owners[row].attach(this, row);
+			}
+			this.owners[last] = null; // Enables the client to be collected.
+			this.sizeChanged(this.size);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	* The owns method determines whether the received client is the view of the received row.
+	* @param client Client - The client.
+	* @param row int - The row of the client.
+	* @return boolean - Whether the client owns the row.
+	*/
+	private boolean owns(Client client, int row) {
+		return ((row >= 0) && (row < this.size) && (this.owners[row] == client));
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	* The getClients method returns the Client views for every row, in the order of the rows.
+	* @return Client[] - The Client views.
+	*/
+	public Client[] getClients() {
+		long stamp = this.lock.readLock();
+		try {
+			return Arrays.copyOf(this.owners, this.size);
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	* The lockRows method acquires the read lock, which prevents the rows from being added, removed or moved until the
+	* unlockRows method is invoked. It is used when every row is being scanned.
+	* @return long - The stamp that is passed to the unlockRows method.
+	*/
+	protected long lockRows() {
+		return this.lock.readLock();
+	}
+	
+	protected void unlockRows(long stamp) {
+		this.lock.unlockRead(stamp);
+	}
+	
+	/**
+	* The get method returns a numeric attribute (being one of the column constants) from the row of the received client.
+	* If the client has been removed from the table, the attribute is instead returned from the (detached) client.
+	* @param client Client - The client.
+	* @param column int - The column of the attribute.
+	* @return double - The attribute value.
+	*/
+	double get(Client client, int column) {
+		long stamp = this.lock.readLock();
+		try {
+			int row = client.getRow();
+			if (this.owns(client, row)) {
+				switch (column) {
+					case GROSS_SALARY:
+						return this.getGrossSalary(row);
+					case NET_SALARY:
+						return this.getNetSalary(row);
+					case TAX:
+						return this.getTax(row);
+					case MEDICARE:
+						return this.getMedicare(row);
+					default:
+						return this.getWeeklyExpenses(row);
+				}
+			}
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+		switch (column) {
+			case GROSS_SALARY:
+				return client.getGrossSalary();
+			case NET_SALARY:
+				return client.getNetSalary();
+			case TAX:
+				return client.getTax();
+			case MEDICARE:
+				return client.getMedicare();
+			default:
+				return client.getWeeklyExpenses();
+		}
+	}
+	
+	/**
+	* The set method writes a numeric attribute (being one of the column constants) to the row of the received client.
+	* @param client Client - The client.
+	* @param column int - The column of the attribute.
+	* @param value double - The attribute value.
+	* @return boolean - Whether the value was written, which is false if the client has been removed from the table.
+	*/
+	boolean set(Client client, int column, double value) {
+		long stamp = this.lock.readLock();
+		try {
+			int row = client.getRow();
+			if (!this.owns(client, row)) {
+				return false;
+			}
+			switch (column) {
+				case GROSS_SALARY:
+					this.setGrossSalary(row, value);
+					break;
+				case NET_SALARY:
+					this.setNetSalary(row, value);
+					break;
+				case TAX:
+					this.setTax(row, value);
+					break;
+				case MEDICARE:
+					this.setMedicare(row, value);
+					break;
+				default:
+					this.setWeeklyExpenses(row, value);
+			}
+			return true;
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+	
+	boolean getResident(Client client) {
+		long stamp = this.lock.readLock();
+		try {
+			int row = client.getRow();
+			if (this.owns(client, row)) {
+				return this.getResident(row);
+			}
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+		return client.getResident();
+	}
+	
+	boolean setResident(Client client, boolean resident) {
+		long stamp = this.lock.readLock();
+		try {
+			int row = client.getRow();
+			if (this.owns(client, row)) {
+				this.setResident(row, resident);
+				return true;
+			}
+			return false;
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+	
+	void setName(Client client, String name) {
+		long stamp = this.lock.readLock();
+		try {
+			int row = client.getRow();
+			if (this.owns(client, row)) {
+				this.setName(row, name);
+			}
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	* The getAccounts method materialises the accounts held for the received client (if storesAccounts returns true).
+	* @param client Client - The client.
+	* @return Account[] - The accounts, or null if the client has been removed from the table.
+	*/
+	Account[] getAccounts(Client client) {
+		long stamp = this.lock.readLock();
+		try {
+			int row = client.getRow();
+			return ((this.owns(client, row)) ? this.getAccounts(row) : null);
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	* The setAccounts method replaces the accounts held for the received client (if storesAccounts returns true).
+	* @param client Client - The client.
+	* @param accounts Account[] - The accounts.
+	* @return boolean - Whether the accounts were written, which is false if the client has been removed from the table.
+	*/
+	boolean setAccounts(Client client, Account[] accounts) {
+		long stamp = this.lock.readLock();
+		try {
+			int row = client.getRow();
+			if (this.owns(client, row)) {
+				this.setAccounts(row, accounts);
+				return true;
+			}
+			return false;
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	* The getNumberOfAccounts method returns the number of accounts held for the received client (if storesAccounts returns true).
+	* @param client Client - The client.
+	* @return int - The number of accounts, or -1 if the client has been removed from the table.
+	*/
+	int getNumberOfAccounts(Client client) {
+		long stamp = this.lock.readLock();
+		try {
+			int row = client.getRow();
+			return ((this.owns(client, row)) ? this.getNumberOfAccounts(row) : -1);
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	* The ensureCapacity method is invoked before a row is added, to ensure the storage can hold the received number of rows.
+	* @param rows int - The number of rows required.
+	*/
+	protected abstract void ensureCapacity(int rows);
+	
+	/**
+	* The move method copies the data of one row into another row.
+	* @param from int - The row being copied.
+	* @param to int - The row being overwritten.
+	*/
+	protected abstract void move(int from, int to);
+	
+	/**
+	* The sizeChanged method is invoked once the number of rows has changed. By default it does nothing.
+	* @param size int - The number of rows.
+	*/
+	protected void sizeChanged(int size) {
+	}
+	
+	/**
+	* The setName method is invoked when the name of a client has been set. By default the name is only held by the Client view.
+	* @param row int - The row of the client.
+	* @param name String - The client name.
+	*/
+	public void setName(int row, String name) {
+	}
+	
+	/**
+	* The checkName method determines whether the received client name can be stored within the table. It is used by the
+	* Calculator before a client is added or renamed, so that a name that can't be stored is refused before anything (such
+	* as the journal, or the name index) has been changed. By default any name can be stored.
+	* @param name String - The client name.
+	* @throws IllegalArgumentException - If the name can't be stored.
+	*/
+	public void checkName(String name) {
+	}
+	
+	/**
+	* The storesAccounts method indicates whether the table holds the accounts of each client. By default it doesn't, and the
+	* accounts are held by the Client objects.
+	* @return boolean - Whether the table holds the accounts.
+	*/
+	public boolean storesAccounts() {
+		return false;
+	}
+	
+	/**
+	* The getAccounts method materialises the accounts held for the received row. It is only used if storesAccounts returns true.
+	* @param row int - The row of the client.
+	* @return Account[] - A new array (of Client.MAX_ACCOUNTS length) containing the accounts.
+	*/
+	public abstract Account[] getAccounts(int row);
+	
+	/**
+	* The setAccounts method replaces the accounts held for the received row. It is only used if storesAccounts returns true.
+	* @param row int - The row of the client.
+	* @param accounts Account[] - The accounts, which are stored from the start of the array until the first null reference.
+	*/
+	public abstract void setAccounts(int row, Account[] accounts);
+	
+	/**
+	* The getNumberOfAccounts method returns the number of accounts held for the received row. It is only used if storesAccounts returns true.
+	* @param row int - The row of the client.
+	* @return int - The number of accounts.
+	*/
+	public abstract int getNumberOfAccounts(int row);
+	
+	public abstract double getGrossSalary(int row);
+	
+	public abstract void setGrossSalary(int row, double grossSalary);
+	
+	public abstract double getNetSalary(int row);
+	
+	public abstract void setNetSalary(int row, double netSalary);
+	
+	public abstract double getTax(int row);
+	
+	public abstract void setTax(int row, double tax);
+	
+	public abstract double getMedicare(int row);
+	
+	public abstract void setMedicare(int row, double medicare);
+	
+	public abstract double getWeeklyExpenses(int row);
+	
+	public abstract void setWeeklyExpenses(int row, double weeklyExpenses);
+	
+	public abstract boolean getResident(int row);
+	
+	public abstract void setResident(int row, boolean resident);
+	
+	/**
+	* The recalculateTaxes method calculates the income tax, medicare and net salary of every stored client (using the
+	* recalculateRows method) while holding the write lock, so that no row can be changed between its salary being read and
+	* its tax being written (otherwise the tax of a new salary could be replaced by the tax of the old one). As the rows are
+	* written directly, each Client view is then told that it has changed (which discards its rendered text).
+	* @param schedule TaxSchedule - The tax schedule.
+	*/
+	public void recalculateTaxes(TaxSchedule schedule) {
+		long stamp = this.lock.writeLock();
+		try {
+			this.recalculateRows(schedule);
+			for (int row = 0; row < this.size; row++) {
+				this.owners[row].changed();
+			}
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	* The recalculateRows method calculates every row using the TaxEngine. The columns are copied into arrays for the TaxEngine,
+	* and the results are then copied back into the table; a table that keeps its columns in arrays can override the method to
+	* avoid the copies.
+	* @param schedule TaxSchedule - The tax schedule.
+	*/
+	protected void recalculateRows(TaxSchedule schedule) {
+		double[] grossSalary = new double[this.size];
+		boolean[] resident = new boolean[this.size];
+		double[] tax = new double[this.size];
+		double[] medicare = new double[this.size];
+		double[] netSalary = new double[this.size];
+		for (int row = 0; row < this.size; row++) {
+			grossSalary[row] = this.getGrossSalary(row);
+			resident[row] = this.getResident(row);
+			medicare[row] = this.getMedicare(row);
+		}
+		TaxEngine.calculate(schedule, grossSalary, resident, tax, medicare, netSalary, this.size);
+		for (int row = 0; row < this.size; row++) {
+			this.setTax(row, tax[row]);
+			this.setMedicare(row, medicare[row]);
+			this.setNetSalary(row, netSalary[row]);
+		}
+	}
+	
+	/**
+	* The getTotalTax method returns the total income tax of every stored client.
+	* @return double - The total tax.
+	*/
+	public double getTotalTax() {
+		long stamp = this.lockRows();
+		try {
+			double total = 0;
+			for (int row = 0; row < this.size; row++) {
+				total += this.getTax(row);
+			}
+			return total;
+		} finally {
+			this.unlockRows(stamp);
+		}
+	}
+	
+	/**
+	* The getTotalMedicare method returns the total medicare levy of every stored client.
+	* @return double - The total medicare.
+	*/
+	public double getTotalMedicare() {
+		long stamp = this.lockRows();
+		try {
+			double total = 0;
+			for (int row = 0; row < this.size; row++) {
+				total += this.getMedicare(row);
+			}
+			return total;
+		} finally {
+			this.unlockRows(stamp);
+		}
+	}
+	
+	/**
+	* The countClientsWithFunds method counts the clients whose weekly available funds are at least the received amount,
+	* comparing them in cents as the Client getAvailableFundsInCents method does.
+	* @param amount double - The weekly amount that the client must have available.
+	* @return int - The number of clients.
+	*/
+	public int countClientsWithFunds(double amount) {
+		long cents = Money.cents(amount);
+		long stamp = this.lockRows();
+		try {
+			int count = 0;
+			for (int row = 0; row < this.size; row++) {
+				if (Client.availableFundsInCents(this.getNetSalary(row), this.getWeeklyExpenses(row)) >= cents) {
+					count++;
+				}
+			}
+			return count;
+		} finally {
+			this.unlockRows(stamp);
+		}
+	}
+}
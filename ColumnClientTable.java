@@ -0,0 +1,220 @@
+/*	
+ *  Description: 
+ *  The ColumnClientTable class is the columnar storage used by the Calculator when it has been created in the columnar
+ *  storage mode. The attributes of every stored client are kept in parallel primitive arrays (one array per attribute),
+ *  with each client occupying a single row. Keeping the attributes together allows bulk scans (such as the tax totals) 
+ *  to step through contiguous memory. The accounts of each row are also held by the table (along with their number), so
+ *  the Client views don't need an accounts array of their own; the Account objects themselves are kept, rather than copied.
+ */
+
+import java.util.Arrays;
+
+public class ColumnClientTable extends ClientTable {
+	private static final int INITIAL_CAPACITY = 16;
+	
+	// The columns, which are indexed by the client row.
+	private double[] grossSalary;
+	private double[] netSalary;
+	private double[] tax;
+	private double[] medicare;
+	private double[] weeklyExpenses;
+	private boolean[] resident;
+	private Account[][] accounts;
+	private byte[] noAccounts;
+	
+	public ColumnClientTable() {
+		this(INITIAL_CAPACITY);
+	}
+	
+	/**
+	* The main constructor creates the columns based on the received initial capacity.
+	* @param capacity int - The number of rows that the columns initially hold.
+	*/
+	public ColumnClientTable(int capacity) {
+		this.grossSalary = new double[capacity];
+		this.netSalary = new double[capacity];
+		this.tax = new double[capacity];
+		this.medicare = new double[capacity];
+		this.weeklyExpenses = new double[capacity];
+		this.resident = new boolean[capacity];
+		this.accounts = new Account[capacity][];
+		this.noAccounts = new byte[capacity];
+	}
+	
+	/**
+	* The ensureCapacity method doubles the capacity of every column (copying the existing rows across) until 
+	* the received number of rows can be held.
+	* @param rows int - The number of rows required.
+	*/
+	protected void ensureCapacity(int rows) {
+		if (rows > this.grossSalary.length) {
+			int capacity = Math.max(rows, Math.max(INITIAL_CAPACITY, this.grossSalary.length * 2));
+			this.grossSalary = Arrays.copyOf(this.grossSalary, capacity);
+			this.netSalary = Arrays.copyOf(this.netSalary, capacity);
+			this.tax = Arrays.copyOf(this.tax, capacity);
+			this.medicare = Arrays.copyOf(this.medicare, capacity);
+			this.weeklyExpenses = Arrays.copyOf(this.weeklyExpenses, capacity);
+			this.resident = Arrays.copyOf(this.resident, capacity);
+			this.accounts = Arrays.copyOf(this.accounts, capacity);
+			this.noAccounts = Arrays.copyOf(this.noAccounts, capacity);
+		}
+	}
+	
+	protected void move(int from, int to) {
+		this.grossSalary[to] = this.grossSalary[from];
+		this.netSalary[to] = this.netSalary[from];
+		this.tax[to] = this.tax[from];
+		this.medicare[to] = this.medicare[from];
+		this.weeklyExpenses[to] = this.weeklyExpenses[from];
+		this.resident[to] = this.resident[from];
+		this.accounts[to] = this.accounts[from];
+		this.noAccounts[to] = this.noAccounts[from];
+		this.accounts[from] = null; // The row being moved is no longer used, so its accounts can be collected.
+	}
+	
+	/**
+	* The recalculateRows method passes the columns directly to the TaxEngine, which writes the results into the tax,
+	* medicare and net salary columns.
+	* @param schedule TaxSchedule - The tax schedule.
+	*/
+	protected void recalculateRows(TaxSchedule schedule) {
+		TaxEngine.calculate(schedule, this.grossSalary, this.resident, this.tax, this.medicare, this.netSalary, this.size());
+	}
+	
+	public boolean storesAccounts() {
+		return true;
+	}
+	
+	/**
+	* The getAccounts method returns a copy of the accounts array of the received row (holding the same Account objects).
+	* @param row int - The row of the client.
+	* @return Account[] - A new array (of Client.MAX_ACCOUNTS length) containing the accounts.
+	*/
+	public Account[] getAccounts(int row) {
+		Account[] accounts = this.accounts[row];
+		return ((accounts != null) ? Arrays.copyOf(accounts, Client.MAX_ACCOUNTS) : new Account[Client.MAX_ACCOUNTS]);
+	}
+	
+	/**
+	* The setAccounts method keeps a copy of the received accounts as the accounts of the received row.
+	* @param row int - The row of the client.
+	* @param accounts Account[] - The accounts, which are stored from the start of the array until the first null reference.
+	*/
+	public void setAccounts(int row, Account[] accounts) {
+		Account[] stored = new Account[Client.MAX_ACCOUNTS];
+		int count = 0;
+		for (; (count < accounts.length) && (count < Client.MAX_ACCOUNTS) && (accounts[count] != null); count++) {
+			stored[count] = accounts[count];
+		}
+		this.accounts[row] = stored;
+		this.noAccounts[row] = (byte)count;
+	}
+	
+	public int getNumberOfAccounts(int row) {
+		return this.noAccounts[row];
+	}
+	
+	public double getGrossSalary(int row) {
+		return this.grossSalary[row];
+	}
+	
+	public void setGrossSalary(int row, double grossSalary) {
+		this.grossSalary[row] = grossSalary;
+	}
+	
+	public double getNetSalary(int row) {
+		return this.netSalary[row];
+	}
+	
+	public void setNetSalary(int row, double netSalary) {
+		this.netSalary[row] = netSalary;
+	}
+	
+	public double getTax(int row) {
+		return this.tax[row];
+	}
+	
+	public void setTax(int row, double tax) {
+		this.tax[row] = tax;
+	}
+	
+	public double getMedicare(int row) {
+		return this.medicare[row];
+	}
+	
+	public void setMedicare(int row, double medicare) {
+		this.medicare[row] = medicare;
+	}
+	
+	public double getWeeklyExpenses(int row) {
+		return this.weeklyExpenses[row];
+	}
+	
+	public void setWeeklyExpenses(int row, double weeklyExpenses) {
+		this.weeklyExpenses[row] = weeklyExpenses;
+	}
+	
+	public boolean getResident(int row) {
+		return this.resident[row];
+	}
+	
+	public void setResident(int row, boolean resident) {
+		this.resident[row] = resident;
+	}
+	
+	/**
+	* The getTotalTax method scans the tax column, returning the total income tax of every stored client.
+	* @return double - The total tax.
+	*/
+	public double getTotalTax() {
+		long stamp = this.lockRows();
+		try {
+			double total = 0;
+			for (int row = 0, size = this.size(); row < size; row++) {
+				total += this.tax[row];
+			}
+			return total;
+		} finally {
+			this.unlockRows(stamp);
+		}
+	}
+	
+	/**
+	* The getTotalMedicare method scans the medicare column, returning the total medicare levy of every stored client.
+	* @return double - The total medicare.
+	*/
+	public double getTotalMedicare() {
+		long stamp = this.lockRows();
+		try {
+			double total = 0;
+			for (int row = 0, size = this.size(); row < size; row++) {
+				total += this.medicare[row];
+			}
+			return total;
+		} finally {
+			this.unlockRows(stamp);
+		}
+	}
+	
+	/**
+	* The countClientsWithFunds method scans the net salary and expenses columns, counting the clients whose weekly
+	* available funds (compared in cents, as the Client getAvailableFundsInCents method does) are at least the received amount.
+	* @param amount double - The weekly amount that the client must have available.
+	* @return int - The number of clients.
+	*/
+	public int countClientsWithFunds(double amount) {
+		long cents = Money.cents(amount);
+		long stamp = this.lockRows();
+		try {
+			int count = 0;
+			for (int row = 0, size = this.size(); row < size; row++) {
+				if (Client.availableFundsInCents(this.netSalary[row], this.weeklyExpenses[row]) >= cents) {
+					count++;
+				}
+			}
+			return count;
+		} finally {
+			this.unlockRows(stamp);
+		}
+	}
+}
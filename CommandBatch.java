@@ -0,0 +1,404 @@
+/*
+ *  Description:
+ *  The CommandBatch class applies a batch of commands to a Calculator without any prompting, which enables the clients to be
+ *  changed by a script. Each line holds one command followed by its arguments, separated by commas:
+ *      addclient,<name>,<annual gross salary>,<resident y/n>,<weekly expenses>
+ *      addaccount,<name>,<interest rate percentage>,<number of weeks>,<weekly amount>
+ *      deleteaccount,<name>,<account number>
+ *      delete,<name>
+ *      open,<filename>
+ *      save,<filename>
+ *  Blank lines, and lines starting with a #, are ignored. The arguments are validated in the same way as the input of the
+ *  CalculatorInterface, but without the regular expressions; a command that fails is counted (along with the first few error
+ *  messages) and the batch continues with the next line. Nothing is displayed, as the CalculatorInterface displays the totals
+ *  once the batch is complete.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CommandBatch {
+	// The commands, which are the indexes into the COMMANDS array.
+	public static final int ADD_CLIENT = 0;
+	public static final int ADD_ACCOUNT = 1;
+	public static final int DELETE_ACCOUNT = 2;
+	public static final int DELETE_CLIENT = 3;
+	public static final int OPEN = 4;
+	public static final int SAVE = 5;
+	public static final String[] COMMANDS = {"addclient", "addaccount", "deleteaccount", "delete", "open", "save"};
+	private static final int[] ARGUMENTS = {4, 4, 2, 1, 1, 1};
+
+	private static final int BUFFER_SIZE = 65536;
+	private static final int MAX_ERRORS = 10;
+	private static final char SEPARATOR = ',';
+	private static final char COMMENT = '#';
+	private static final int MAX_INVESTMENT_LENGTH = 48;
+	private static final double MIN_INTEREST_RATE = 1;
+	private static final double MAX_INTEREST_RATE = 100;
+	private static final String RESIDENT_YES = "y";
+	private static final String RESIDENT_YES_LONG = "yes";
+	private static final String RESIDENT_NO = "n";
+	private static final String RESIDENT_NO_LONG = "no";
+	private static final String LINE_PREFIX = "Line ";
+	private static final String LINE_SEPARATOR = ": ";
+	private static final String ERR_UNKNOWN_COMMAND = "Unknown command: ";
+	private static final String ERR_ARGUMENTS = "Wrong number of arguments for %s (expected %d).";
+	private static final String ERR_NAME = "The name must be a first and last name (separated by a space).";
+	private static final String ERR_NOT_NUMERIC = "Not a numeric value: ";
+	private static final String ERR_POSITIVE_AMOUNT_REQUIRED = "The amount must be greater than zero.";
+	private static final String ERR_RESIDENT = "The residency must be either y or n.";
+	private static final String ERR_EXPENSES = "The expenses are more than the weekly net salary.";
+	private static final String ERR_CLIENT_EXISTS = "The client already exists.";
+	private static final String ERR_CLIENT_DOESNT_EXIST = "The client does not exist.";
+	private static final String ERR_INTEREST_RATE = "The interest rate must be between 1 and 100.";
+	private static final String ERR_INVESTMENT_LENGTH = "The investment length must be between 1 and 48.";
+	private static final String ERR_MAX_ACCOUNTS = "It is not possible to add more accounts.";
+	private static final String ERR_FUNDS = "The investment exceeds the available funds.";
+	private static final String ERR_ACCOUNT_DOESNT_EXIST = "The account does not exist.";
+	private static final String ERR_NOT_OPENED = "The file could not be opened.";
+	private static final String ERR_NOT_SAVED = "The file could not be saved.";
+
+	private Calculator calculator;
+	// The number of commands read, and the number that failed.
+	private long commands;
+	private long failed;
+	// The number of each command that was applied.
+	private long[] applied;
+	// The first MAX_ERRORS error messages (prefixed with the line number).
+	private List<String> errors;
+	// The bounds of the arguments on the current line.
+	private int[] starts;
+	private int[] ends;
+
+	public CommandBatch(Calculator calculator) {
+		this.calculator = calculator;
+		this.applied = new long[COMMANDS.length];
+		this.errors = new ArrayList<String>();
+		this.starts = new int[COMMANDS.length];
+		this.ends = new int[COMMANDS.length];
+	}
+
+	/**
+	* The run method reads the commands from the received Reader (until the end is reached), and applies each command to
+	* the Calculator.
+	* @param reader Reader - The commands.
+	* @throws IOException - If the commands couldn't be read.
+	*/
+	public void run(Reader reader) throws IOException {
+		BufferedReader in = new BufferedReader(reader, BUFFER_SIZE);
+		long lineNo = 0;
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			lineNo++;
+			int start = skipSpaces(line, 0, line.length());
+			if ((start == line.length()) || (line.charAt(start) == COMMENT)) {
+				continue;
+			}
+			this.commands++;
+			try {
+				this.apply(line, start);
+			} catch (Exception ex) {
+				this.failed++;
+				if (this.errors.size() < MAX_ERRORS) {
+					this.errors.add(LINE_PREFIX + lineNo + LINE_SEPARATOR + ex.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	* The apply method recognises the command on the received line, divides the rest of the line into its arguments, and
+	* then applies the command.
+	* @param line String - The line.
+	* @param start int - The position of the first char of the command.
+	* @throws Exception - If the command is unknown, has invalid arguments, or couldn't be applied.
+	*/
+	private void apply(String line, int start) throws Exception {
+		int end = line.indexOf(SEPARATOR, start);
+		if (end < 0) {
+			end = line.length();
+		}
+		int command = command(line, start, trimEnd(line, start, end));
+		if (command < 0) {
+			throw new Exception(ERR_UNKNOWN_COMMAND + line.substring(start, trimEnd(line, start, end)));
+		}
+		// Divides the rest of the line into the arguments, without the surrounding spaces.
+		int count = 0;
+		while (end < line.length()) {
+			if (count == ARGUMENTS[command]) {
+				count++;
+				break; // There are too many arguments.
+			}
+			int argumentStart = end + 1;
+			end = line.indexOf(SEPARATOR, argumentStart);
+			if ((end < 0) || (count == (ARGUMENTS[command] - 1))) {
+				end = line.length(); // The last argument is the rest of the line (such as a filename containing commas).
+			}
+			this.starts[count] = skipSpaces(line, argumentStart, end);
+			this.ends[count] = trimEnd(line, this.starts[count], end);
+			count++;
+		}
+		if (count != ARGUMENTS[command]) {
+			throw new Exception(String.format(ERR_ARGUMENTS, COMMANDS[command], ARGUMENTS[command]));
+		}
+		switch (command) {
+			case ADD_CLIENT:
+				if (this.addClient(this.text(line, 0), this.number(line, 1), this.resident(line, 2), this.number(line, 3)) == null) {
+					throw new Exception(ERR_CLIENT_EXISTS);
+				}
+				break;
+			case ADD_ACCOUNT:
+				this.addAccount(this.client(line, 0), this.number(line, 1), this.integer(line, 2), this.number(line, 3));
+				break;
+			case DELETE_ACCOUNT:
+				if (!this.client(line, 0).deleteAccount(this.integer(line, 1))) {
+					throw new Exception(ERR_ACCOUNT_DOESNT_EXIST);
+				}
+				break;
+			case DELETE_CLIENT:
+				if (!this.calculator.deleteClient(this.text(line, 0))) {
+					throw new Exception(ERR_CLIENT_DOESNT_EXIST);
+				}
+				break;
+			case OPEN:
+				if (!this.calculator.open(this.text(line, 0))) {
+					throw new Exception(ERR_NOT_OPENED);
+				}
+				break;
+			case SAVE:
+				if (!this.calculator.save(this.text(line, 0))) {
+					throw new Exception(ERR_NOT_SAVED);
+				}
+				break;
+		}
+		this.applied[command]++;
+	}
+
+	/**
+	* The addClient method creates a client from the received details, calculates the tax (using the schedule of the
+	* Calculator), and adds it to the Calculator. It is also used by the CalculatorServer. Whether a client of the same name
+	* already exists is only known once the Calculator has added (or refused) the client, as another thread can add a client
+	* of the same name at any time before; the refusal is returned, rather than thrown, so that it can be told apart.
+	* @param name String - The client name.
+	* @param grossSalary double - The annual gross salary.
+	* @param resident boolean - Whether the client is a resident.
+	* @param weeklyExpenses double - The weekly expenses.
+	* @return Client - The client that was added, or null if a client of the same name already exists.
+	* @throws Exception - If the details are invalid, or the expenses are more than the weekly net salary.
+	*/
+	public Client addClient(String name, double grossSalary, boolean resident, double weeklyExpenses) throws Exception {
+		checkName(name);
+		checkAmount(grossSalary);
+		checkAmount(weeklyExpenses);
+		Client client = new Client(name, grossSalary, resident);
+		client.setTaxSchedule(this.calculator.getTaxSchedule());
+		client.calcTax();
+		if (weeklyExpenses > client.getWeeklyNetSalary()) {
+			throw new Exception(ERR_EXPENSES);
+		}
+		client.setWeeklyExpenses(weeklyExpenses);
+		return ((this.calculator.addClient(client)) ? client : null);
+	}
+
+	/**
+	* The addAccount method adds an account to the received client, once the details have been checked in the same way as
+	* the addAccount method of the CalculatorInterface (with the funds compared in cents). It is also used by the CalculatorServer.
+	* @param client Client - The client.
+	* @param interestRate double - The interest rate percentage.
+	* @param investmentLength int - The number of weeks.
+	* @param investmentAmount double - The weekly amount.
+	* @throws Exception - If the details are invalid, or the client can't invest the amount.
+	*/
+	public void addAccount(Client client, double interestRate, int investmentLength, double investmentAmount) throws Exception {
+		checkAmount(investmentAmount);
+		if (!((interestRate >= MIN_INTEREST_RATE) && (interestRate <= MAX_INTEREST_RATE))) {
+			throw new Exception(ERR_INTEREST_RATE);
+		}
+		if (!((investmentLength >= 1) && (investmentLength <= MAX_INVESTMENT_LENGTH))) {
+			throw new Exception(ERR_INVESTMENT_LENGTH);
+		}
+		long investment = Money.cents(investmentAmount);
+		synchronized (client) {
+			if (client.getNumberOfAccounts() >= Client.MAX_ACCOUNTS) {
+				throw new Exception(ERR_MAX_ACCOUNTS);
+			}
+			if ((investment + client.getTotalInvestmentsInCents()) > client.getAvailableFundsInCents()) {
+				throw new Exception(ERR_FUNDS);
+			}
+			client.addAccount(interestRate / 100, investmentLength, Money.toDouble(investment));
+		}
+	}
+
+	/**
+	* The command method returns the index of the command between the received positions, ignoring the case.
+	* @param line String - The line.
+	* @param start int - The position of the first char.
+	* @param end int - The position after the last char.
+	* @return int - The index of the command, or -1 if it isn't recognised.
+	*/
+	private static int command(String line, int start, int end) {
+		for (int i = 0; i < COMMANDS.length; i++) {
+			if (((end - start) == COMMANDS[i].length()) && line.regionMatches(true, start, COMMANDS[i], 0, end - start)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	* The text method returns the received argument of the current line.
+	* @param line String - The line.
+	* @param argument int - The index of the argument.
+	* @return String - The argument.
+	*/
+	private String text(String line, int argument) {
+		return line.substring(this.starts[argument], this.ends[argument]);
+	}
+
+	/**
+	* The checkName method checks that the received name is made up of two words of letters separated by a single space
+	* (as with the name that is input into the CalculatorInterface).
+	* @param name String - The name.
+	* @throws Exception - If the name isn't valid.
+	*/
+	public static void checkName(String name) throws Exception {
+		int space = -1;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (Character.isWhitespace(c) && (space < 0) && (i > 0)) {
+				space = i;
+			} else if (!(((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')))) {
+				throw new Exception(ERR_NAME);
+			}
+		}
+		if ((space < 0) || (space == (name.length() - 1))) {
+			throw new Exception(ERR_NAME);
+		}
+	}
+
+	/**
+	* The checkAmount method checks that the received amount is greater than zero.
+	* @param amount double - The amount.
+	* @throws Exception - If the amount isn't positive (or is NaN).
+	*/
+	private static void checkAmount(double amount) throws Exception {
+		if (!(amount > 0)) {
+			throw new Exception(ERR_POSITIVE_AMOUNT_REQUIRED);
+		}
+	}
+
+	/**
+	* The client method returns the stored client that is named by the received argument.
+	* @param line String - The line.
+	* @param argument int - The index of the argument.
+	* @return Client - The client.
+	* @throws Exception - If the client doesn't exist.
+	*/
+	private Client client(String line, int argument) throws Exception {
+		Client client = this.calculator.findClient(this.text(line, argument));
+		if (client == null) {
+			throw new Exception(ERR_CLIENT_DOESNT_EXIST);
+		}
+		return client;
+	}
+
+	/**
+	* The number method parses the received argument as a double.
+	* @param line String - The line.
+	* @param argument int - The index of the argument.
+	* @return double - The value.
+	* @throws Exception - If the argument isn't a number.
+	*/
+	private double number(String line, int argument) throws Exception {
+		try {
+			return Double.parseDouble(this.text(line, argument));
+		} catch (NumberFormatException ex) {
+			throw new Exception(ERR_NOT_NUMERIC + this.text(line, argument));
+		}
+	}
+
+	/**
+	* The integer method parses the received argument as an int.
+	* @param line String - The line.
+	* @param argument int - The index of the argument.
+	* @return int - The value.
+	* @throws Exception - If the argument isn't an integer.
+	*/
+	private int integer(String line, int argument) throws Exception {
+		try {
+			return Integer.parseInt(line, this.starts[argument], this.ends[argument], 10);
+		} catch (NumberFormatException ex) {
+			throw new Exception(ERR_NOT_NUMERIC + this.text(line, argument));
+		}
+	}
+
+	/**
+	* The resident method parses the received argument as the residency, being either y or n (or yes or no).
+	* @param line String - The line.
+	* @param argument int - The index of the argument.
+	* @return boolean - Whether the client is a resident.
+	* @throws Exception - If the argument isn't a residency.
+	*/
+	private boolean resident(String line, int argument) throws Exception {
+		int start = this.starts[argument], length = this.ends[argument] - start;
+		if (matches(line, start, length, RESIDENT_YES) || matches(line, start, length, RESIDENT_YES_LONG)) {
+			return true;
+		} else if (matches(line, start, length, RESIDENT_NO) || matches(line, start, length, RESIDENT_NO_LONG)) {
+			return false;
+		}
+		throw new Exception(ERR_RESIDENT);
+	}
+
+	private static boolean matches(String line, int start, int length, String word) {
+		return ((length == word.length()) && line.regionMatches(true, start, word, 0, length));
+	}
+
+	private static int skipSpaces(String line, int start, int end) {
+		while ((start < end) && Character.isWhitespace(line.charAt(start))) {
+			start++;
+		}
+		return start;
+	}
+
+	private static int trimEnd(String line, int start, int end) {
+		while ((end > start) && Character.isWhitespace(line.charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+
+	/**
+	* The getCommands method returns the number of commands that have been read (not including the blank and comment lines).
+	* @return long - The number of commands.
+	*/
+	public long getCommands() {
+		return this.commands;
+	}
+
+	/**
+	* The getApplied method returns the number of times the received command was applied successfully.
+	* @param command int - The index of the command.
+	* @return long - The number applied.
+	*/
+	public long getApplied(int command) {
+		return this.applied[command];
+	}
+
+	/**
+	* The getFailed method returns the number of commands that failed.
+	* @return long - The number that failed.
+	*/
+	public long getFailed() {
+		return this.failed;
+	}
+
+	/**
+	* The getErrors method returns the error messages of the first commands that failed, prefixed with their line number.
+	* @return List - The error messages.
+	*/
+	public List<String> getErrors() {
+		return this.errors;
+	}
+}
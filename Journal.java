@@ -0,0 +1,450 @@
+/*
+ *  Description:
+ *  The Journal class is an append-only write-ahead log of the changes made to the clients stored within a Calculator.
+ *  Each change (such as a client being added, or an account being deleted) is appended as a record containing its length
+ *  and a CRC32 checksum, which enables a record that was only partially written (due to a crash) to be detected and ignored.
+ *  The records are collected into batches which are written and forced to disk together (group commit), once the batch has
+ *  reached GROUP_COMMIT_RECORDS records or has been pending for GROUP_COMMIT_INTERVAL milliseconds, or when commit is invoked.
+ *  The interval is enforced by a background thread, so a batch is committed on time even if no further records arrive.
+ *  The journal begins with a header holding the generation of the snapshot it follows; a file that isn't a journal, or a
+ *  journal that doesn't follow the snapshot, is reported rather than being discarded (which would lose its records). As the
+ *  clients can be changed by several threads, the records are folded by replaying them onto the previous snapshot (rather
+ *  than saving the clients in memory, which may have changed beyond the records); the records appended since are then
+ *  carried into the restarted journal.
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+public class Journal {
+	// The operations that a record can contain.
+	private static final byte ADD_CLIENT = 1;
+	private static final byte DELETE_CLIENT = 2;
+	private static final byte RENAME_CLIENT = 3;
+	private static final byte UPDATE_CLIENT = 4;
+	private static final byte ADD_ACCOUNT = 5;
+	private static final byte DELETE_ACCOUNT = 6;
+
+	private static final int MAGIC = 0x434C4A4E;
+	private static final int HEADER_SIZE = 12; // The magic number and the generation.
+	private static final int RECORD_HEADER_SIZE = 8; // The length and the checksum of the record.
+	private static final int GROUP_COMMIT_RECORDS = 256;
+	private static final long GROUP_COMMIT_INTERVAL = 50;
+	private static final String TEMPORARY_EXTENSION = ".tmp";
+	private static final String NOT_A_JOURNAL = "The file is not a journal: ";
+	private static final String WRONG_GENERATION = "The journal (generation %d) doesn't follow the snapshot (generation %d): %s";
+	private static final String COMMIT_FAILED = "The journal couldn't be committed: ";
+	// Commits the batches that have been pending for GROUP_COMMIT_INTERVAL milliseconds, for every journal.
+	private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(task -> {
+		Thread thread = new Thread(task, "Journal flusher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private String filename;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private long generation;
+	// The batch of records waiting to be committed.
+	private ByteArrayOutputStream batch;
+	private int pending;
+	private long pendingSince;
+	// The failure of the last background commit, which is reported by the next append or commit.
+	private IOException failure;
+	// The record currently being composed.
+	private ByteArrayOutputStream record;
+	private DataOutputStream recordData;
+	private CRC32 crc;
+
+	/**
+	* The constructor opens the journal file for appending. It is used by the open method, once the existing records have been replayed.
+	* @param filename String - The journal file.
+	* @param generation long - The generation of the snapshot that the journal follows.
+	* @param length long - The length of the valid part of the file, or 0 if the file is to be started again.
+	*/
+	private Journal(String filename, long generation, long length) throws IOException {
+		this.filename = filename;
+		this.file = new RandomAccessFile(filename, "rw");
+		this.channel = this.file.getChannel();
+		this.generation = generation;
+		this.batch = new ByteArrayOutputStream();
+		this.pending = 0;
+		this.record = new ByteArrayOutputStream();
+		this.recordData = new DataOutputStream(this.record);
+		this.crc = new CRC32();
+		if (length < HEADER_SIZE) {
+			this.reset(generation);
+		} else {
+			// Discards anything after the last complete record (such as a partially written record).
+			this.channel.truncate(length);
+			this.channel.position(length);
+		}
+	}
+
+	/**
+	* The open method replays the records of the received journal file onto the Calculator (if the journal follows the received
+	* snapshot generation), and then returns the Journal ready for further records to be appended. If the snapshot was folded
+	* from the journal but the journal wasn't restarted (as the Calculator stopped in between), only the records after the
+	* folded offset are replayed, and the journal is then restarted. A journal that doesn't begin with the MAGIC number, or that
+	* belongs to any other generation, is reported rather than discarded.
+	* @param filename String - The journal file.
+	* @param calculator Calculator - The Calculator that the records are replayed onto.
+	* @param generation long - The generation of the snapshot that was loaded into the Calculator.
+	* @param folded long - The offset of the journal (of the previous generation) that the snapshot was folded up to, or 0.
+	* @return Journal - The opened journal.
+	* @throws IOException - If the journal couldn't be read or opened, or doesn't follow the snapshot.
+	*/
+	public static Journal open(String filename, Calculator calculator, long generation, long folded) throws IOException {
+		long length = 0;
+		boolean restart = false;
+		File file = new File(filename);
+		if (file.isFile() && (file.length() >= HEADER_SIZE)) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new IOException(NOT_A_JOURNAL + filename);
+				}
+				long journalGeneration = in.readLong();
+				if (journalGeneration == generation) {
+					length = replay(in, calculator, HEADER_SIZE, file.length());
+				} else if ((journalGeneration == (generation - 1)) && (folded >= HEADER_SIZE) && (folded <= file.length())) {
+					in.skipNBytes(folded - HEADER_SIZE);
+					length = replay(in, calculator, folded, file.length());
+					restart = true;
+				} else {
+					throw new IOException(String.format(WRONG_GENERATION, journalGeneration, generation, filename));
+				}
+			} finally {
+				in.close();
+			}
+		}
+		Journal journal = new Journal(filename, ((restart) ? generation - 1 : generation), length);
+		if (restart) {
+			journal.restart(generation, folded);
+		}
+		return journal;
+	}
+	
+	/**
+	* The fold method replays the records of the received journal file (up to the received offset) onto the Calculator, which
+	* holds the snapshot that the journal follows. It is used by the Calculator compactJournal method.
+	* @param filename String - The journal file.
+	* @param calculator Calculator - The Calculator that the records are replayed onto.
+	* @param end long - The offset after the last record to be replayed.
+	* @throws IOException - If the journal couldn't be read.
+	*/
+	public static void fold(String filename, Calculator calculator, long end) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+		try {
+			in.skipNBytes(HEADER_SIZE);
+			replay(in, calculator, HEADER_SIZE, end);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	* The replay method reads each record from the received stream, applying it to the Calculator. It stops at the first
+	* record that is incomplete or fails the checksum.
+	* @param in DataInputStream - The journal contents (positioned at the first record to be replayed).
+	* @param calculator Calculator - The Calculator that the records are applied to.
+	* @param position long - The offset of the first record.
+	* @param fileLength long - The length of the journal file.
+	* @return long - The length of the journal up to the end of the last valid record.
+	*/
+	private static long replay(DataInputStream in, Calculator calculator, long position, long fileLength) throws IOException {
+		CRC32 crc = new CRC32();
+		while ((position + RECORD_HEADER_SIZE) <= fileLength) {
+			int length = in.readInt();
+			int checksum = in.readInt();
+			if ((length <= 0) || ((position + RECORD_HEADER_SIZE + length) > fileLength)) {
+				break; // The record is incomplete.
+			}
+			byte[] record = new byte[length];
+			in.readFully(record);
+			crc.reset();
+			crc.update(record);
+			if ((int)crc.getValue() != checksum) {
+				break; // The record is corrupt.
+			}
+			apply(new DataInputStream(new ByteArrayInputStream(record)), calculator);
+			position += RECORD_HEADER_SIZE + length;
+		}
+		return position;
+	}
+
+	/**
+	* The apply method performs the operation of a single record on the Calculator.
+	* @param in DataInputStream - The record.
+	* @param calculator Calculator - The Calculator that the record is applied to.
+	*/
+	private static void apply(DataInputStream in, Calculator calculator) throws IOException {
+		byte operation = in.readByte();
+		if (operation == ADD_CLIENT) {
+			calculator.addClient(Client.readSnapshot(in)); // Ignored if the client already exists.
+		} else {
+			Client client = calculator.findClient(readName(in));
+			if (client != null) {
+				switch (operation) {
+					case DELETE_CLIENT:
+						calculator.deleteClient(client.getName());
+						break;
+					case RENAME_CLIENT:
+						calculator.renameClient(client, readName(in));
+						break;
+					case UPDATE_CLIENT:
+						client.setGrossSalary(in.readDouble());
+						client.setResident(in.readBoolean());
+						client.setWeeklyExpenses(in.readDouble());
+						client.calcTax();
+						break;
+					case ADD_ACCOUNT:
+						client.addAccount(in.readDouble(), in.readInt(), in.readDouble());
+						break;
+					case DELETE_ACCOUNT:
+						client.deleteAccount(in.readInt());
+						break;
+				}
+			}
+		}
+	}
+
+	private static String readName(DataInput in) throws IOException {
+		byte[] name = new byte[in.readInt()];
+		in.readFully(name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	private void writeName(String name) throws IOException {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		this.recordData.writeInt(bytes.length);
+		this.recordData.write(bytes);
+	}
+
+	/**
+	* The begin method starts the composition of a new record containing the received operation.
+	* @param operation byte - The operation of the record.
+	*/
+	private void begin(byte operation) throws IOException {
+		this.record.reset();
+		this.recordData.writeByte(operation);
+	}
+	
+	/**
+	* The end method appends the composed record (along with its length and checksum) to the batch, committing the batch
+	* if it has reached GROUP_COMMIT_RECORDS records or has been pending for longer than GROUP_COMMIT_INTERVAL milliseconds.
+	* When a batch is started, the flush method is scheduled to commit it once GROUP_COMMIT_INTERVAL has passed.
+	*/
+	private void end() throws IOException {
+		this.end(this.record.toByteArray());
+	}
+
+	/**
+	* The second end method appends the received record to the batch.
+	* @param record byte[] - The record.
+	*/
+	private void end(byte[] record) throws IOException {
+		if (this.failure != null) {
+			this.commit(); // Reports the failure of the background commit.
+		}
+		this.crc.reset();
+		this.crc.update(record);
+		DataOutputStream batch = new DataOutputStream(this.batch);
+		batch.writeInt(record.length);
+		batch.writeInt((int)this.crc.getValue());
+		batch.write(record);
+		if (this.pending++ == 0) {
+			this.pendingSince = System.currentTimeMillis();
+			FLUSHER.schedule(this::flush, GROUP_COMMIT_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+		if ((this.pending >= GROUP_COMMIT_RECORDS) || ((System.currentTimeMillis() - this.pendingSince) >= GROUP_COMMIT_INTERVAL)) {
+			this.commit();
+		}
+	}
+
+	/**
+	* The addClient method records the addition of the received client. The client is written before the journal's monitor is
+	* acquired, as writing the client requires the client's monitor.
+	* @param client Client - The client.
+	*/
+	public void addClient(Client client) throws IOException {
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream recordData = new DataOutputStream(record);
+		recordData.writeByte(ADD_CLIENT);
+		client.writeSnapshot(recordData);
+		synchronized (this) {
+			this.end(record.toByteArray());
+		}
+	}
+
+	public synchronized void deleteClient(String name) throws IOException {
+		this.begin(DELETE_CLIENT);
+		this.writeName(name);
+		this.end();
+	}
+
+	public synchronized void renameClient(String name, String newName) throws IOException {
+		this.begin(RENAME_CLIENT);
+		this.writeName(name);
+		this.writeName(newName);
+		this.end();
+	}
+
+	public synchronized void updateClient(Client client) throws IOException {
+		this.begin(UPDATE_CLIENT);
+		this.writeName(client.getName());
+		this.recordData.writeDouble(client.getGrossSalary());
+		this.recordData.writeBoolean(client.getResident());
+		this.recordData.writeDouble(client.getWeeklyExpenses());
+		this.end();
+	}
+
+	public synchronized void addAccount(String name, double interestRate, int investmentLength, double investmentAmount) throws IOException {
+		this.begin(ADD_ACCOUNT);
+		this.writeName(name);
+		this.recordData.writeDouble(interestRate);
+		this.recordData.writeInt(investmentLength);
+		this.recordData.writeDouble(investmentAmount);
+		this.end();
+	}
+
+	public synchronized void deleteAccount(String name, int accountNo) throws IOException {
+		this.begin(DELETE_ACCOUNT);
+		this.writeName(name);
+		this.recordData.writeInt(accountNo);
+		this.end();
+	}
+
+	/**
+	* The flush method is run by the FLUSHER thread, and commits the pending batch if it has been pending for GROUP_COMMIT_INTERVAL
+	* milliseconds (it may already have been committed, or replaced by a newer batch). A failure is kept to be reported by the
+	* next append or commit, as there is no caller to report it to.
+	*/
+	private synchronized void flush() {
+		if ((this.pending > 0) && this.channel.isOpen() && ((System.currentTimeMillis() - this.pendingSince) >= GROUP_COMMIT_INTERVAL)) {
+			try {
+				this.commit();
+			} catch (IOException ex) {
+				this.failure = ex;
+			}
+		}
+	}
+
+	/**
+	* The commit method writes the pending batch of records to the journal file, and forces them to disk.
+	* @throws IOException - If the records couldn't be written (including by an earlier background commit).
+	*/
+	public synchronized void commit() throws IOException {
+		if (this.failure != null) {
+			IOException failure = this.failure;
+			this.failure = null;
+			throw new IOException(COMMIT_FAILED + this.filename, failure);
+		}
+		if (this.pending > 0) {
+			ByteBuffer buffer = ByteBuffer.wrap(this.batch.toByteArray());
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+			this.channel.force(false);
+			this.batch.reset();
+			this.pending = 0;
+		}
+	}
+
+	/**
+	* The checkpoint method commits the pending records, and returns the length of the journal file (which is the offset
+	* that the committed records can be folded up to).
+	* @return long - The length in bytes.
+	*/
+	public synchronized long checkpoint() throws IOException {
+		this.commit();
+		return this.channel.size();
+	}
+	
+	/**
+	* The size method returns the size of the journal, including any records that haven't been committed.
+	* @return long - The size in bytes.
+	*/
+	public synchronized long size() throws IOException {
+		return (this.channel.size() + this.batch.size());
+	}
+
+	public synchronized long getGeneration() {
+		return this.generation;
+	}
+	
+	public String getFilename() {
+		return this.filename;
+	}
+
+	/**
+	* The reset method discards every record, starting the journal again for the received snapshot generation. It is used once
+	* the records have been folded into a snapshot.
+	* @param generation long - The generation of the snapshot that the journal now follows.
+	*/
+	public synchronized void reset(long generation) throws IOException {
+		this.batch.reset();
+		this.pending = 0;
+		this.generation = generation;
+		this.channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putLong(generation).flip();
+		this.channel.write(header, 0);
+		this.channel.position(HEADER_SIZE);
+		this.channel.force(false);
+	}
+
+	/**
+	* The restart method starts the journal again for the received snapshot generation, keeping the records after the received
+	* offset (which haven't been folded into the snapshot). The kept records are copied into a new journal file, which then
+	* replaces the journal once it has been completely written.
+	* @param generation long - The generation of the snapshot that the journal now follows.
+	* @param offset long - The offset of the first record to be kept.
+	*/
+	public synchronized void restart(long generation, long offset) throws IOException {
+		this.commit();
+		File temporary = new File(this.filename + TEMPORARY_EXTENSION);
+		FileChannel out = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, 
+											StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putLong(generation).flip();
+			while (header.hasRemaining()) {
+				out.write(header);
+			}
+			long size = this.channel.size();
+			for (long position = offset; position < size;) {
+				position += this.channel.transferTo(position, size - position, out);
+			}
+			out.force(false);
+		} finally {
+			out.close();
+		}
+		this.channel.close();
+		this.file.close();
+		Files.move(temporary.toPath(), new File(this.filename).toPath(), 
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		this.file = new RandomAccessFile(this.filename, "rw");
+		this.channel = this.file.getChannel();
+		this.channel.position(this.channel.size());
+		this.generation = generation;
+	}
+	
+	/**
+	* The close method commits any pending records and closes the journal file.
+	*/
+	public synchronized void close() throws IOException {
+		this.commit();
+		this.channel.close();
+		this.file.close();
+	}
+}
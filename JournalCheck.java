@@ -0,0 +1,149 @@
+/*
+ *  Description:
+ *  The JournalCheck class checks that the clients recorded within a Journal are replayed with the same details and accounts
+ *  as the client file they were opened from. It generates a client file with the ClientBookGenerator, opens it with the
+ *  openLazy method into a Calculator that has a journal open, and then compares the clients replayed from the journal (and
+ *  from the snapshot that the journal is then folded into) against the clients read by the open method. It then checks that
+ *  a single change is committed once the group commit interval has passed (without any further changes), and that a journal
+ *  which doesn't follow the snapshot, or isn't a journal, is reported when opened. Each step is displayed along with the
+ *  number of clients that differ (or whether it passed), and the exit status is 1 if any of them fail.
+ *      java JournalCheck [clients] [directory]
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class JournalCheck {
+	private static final int DEFAULT_CLIENTS = 2000;
+	private static final long SEED = 24;
+	private static final String BOOK_FILE = "book.dat";
+	private static final String SNAPSHOT_FILE = "clients.snapshot";
+	private static final String JOURNAL_FILE = "clients.journal";
+	private static final String OTHER_JOURNAL_FILE = "other.journal";
+	// The time to wait for a change to be committed, which is well beyond the group commit interval.
+	private static final long COMMIT_WAIT = 500;
+	private static final String MSG_STEP = "%-32s %d clients, %d differ";
+	private static final String MSG_CHECK = "%-32s %s";
+	private static final String MSG_REPORTED = "reported: %s";
+	private static final String MSG_NOT_COMMITTED = "not committed";
+	private static final String MSG_NOT_REPORTED = "not reported";
+	private static final String MSG_DIFFERS = "  %s differs:%n%s%n  expected:%n%s";
+	private static final String MSG_MISSING = "  %s is missing";
+	private static final String MSG_PASSED = "Passed";
+	private static final String MSG_FAILED = "Failed";
+
+	private JournalCheck() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int clients = ((args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS);
+		File directory = ((args.length > 1) ? new File(args[1]) : Files.createTempDirectory("journalcheck").toFile());
+		String book = new File(directory, BOOK_FILE).getPath();
+		String snapshot = new File(directory, SNAPSHOT_FILE).getPath();
+		String journal = new File(directory, JOURNAL_FILE).getPath();
+		new File(snapshot).delete();
+		new File(journal).delete();
+		ClientBookGenerator generator = new ClientBookGenerator();
+		generator.setClients(clients);
+		generator.setSeed(SEED);
+		generator.generate(book);
+		Calculator expected = new Calculator();
+		expected.open(book);
+
+		// The file is opened lazily while the journal is open, which records each client.
+		Calculator opened = new Calculator();
+		opened.openJournal(snapshot, journal);
+		opened.openLazy(book);
+		opened.closeJournal();
+		int failures = compare("openLazy", expected, opened);
+
+		// The clients are replayed from the journal alone.
+		Calculator replayed = new Calculator();
+		replayed.openJournal(snapshot, journal);
+		failures += compare("Journal replay", expected, replayed);
+
+		// The journal is folded into the snapshot, which is then loaded (along with the restarted journal).
+		replayed.compactJournal();
+		replayed.closeJournal();
+		Calculator compacted = new Calculator();
+		compacted.openJournal(snapshot, journal);
+		compacted.closeJournal();
+		failures += compare("Snapshot after compaction", expected, compacted);
+
+		// A single change is committed by the background thread, without being closed or followed by further changes.
+		compacted = new Calculator();
+		compacted.openJournal(snapshot, journal);
+		long length = new File(journal).length();
+		compacted.deleteClient(expected.getClients()[0].getName());
+		Thread.sleep(COMMIT_WAIT);
+		boolean committed = (new File(journal).length() > length);
+		System.out.println(String.format(MSG_CHECK, "Idle commit", (committed) ? MSG_PASSED : MSG_NOT_COMMITTED));
+		failures += ((committed) ? 0 : 1);
+		compacted.closeJournal();
+
+		// The copied journal is two generations behind the snapshot once it has been compacted twice, and the book isn't a journal.
+		String other = new File(directory, OTHER_JOURNAL_FILE).getPath();
+		Files.copy(new File(journal).toPath(), new File(other).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		compacted = new Calculator();
+		compacted.openJournal(snapshot, journal);
+		compacted.compactJournal();
+		compacted.compactJournal();
+		compacted.closeJournal();
+		failures += reported("Journal of another generation", snapshot, other);
+		failures += reported("File that isn't a journal", snapshot, book);
+
+		System.out.println((failures == 0) ? MSG_PASSED : MSG_FAILED);
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	* The reported method checks that opening the received journal (after the snapshot) is reported as an error.
+	* @param step String - The name of the step being checked.
+	* @param snapshot String - The snapshot file.
+	* @param journal String - The journal file, which doesn't follow the snapshot.
+	* @return int - 1 if the journal was opened without being reported, otherwise 0.
+	*/
+	private static int reported(String step, String snapshot, String journal) throws Exception {
+		Calculator calculator = new Calculator();
+		try {
+			calculator.openJournal(snapshot, journal);
+			calculator.closeJournal();
+		} catch (IOException ex) {
+			System.out.println(String.format(MSG_CHECK, step, String.format(MSG_REPORTED, ex.getMessage())));
+			return 0;
+		}
+		System.out.println(String.format(MSG_CHECK, step, MSG_NOT_REPORTED));
+		return 1;
+	}
+
+	/**
+	* The compare method compares every client of the expected Calculator (including the accounts) with the client of the same
+	* name within the actual Calculator, displaying the first client that differs.
+	* @param step String - The name of the step being checked.
+	* @param expected Calculator - The clients read by the open method.
+	* @param actual Calculator - The clients being checked.
+	* @return int - The number of clients that differ (including those that are missing, or were not expected).
+	*/
+	private static int compare(String step, Calculator expected, Calculator actual) {
+		int differ = Math.abs(expected.getNumberOfClients() - actual.getNumberOfClients());
+		boolean shown = false;
+		for (Client client : expected.getClients()) {
+			Client other = actual.findClient(client.getName());
+			String text = client.serialise();
+			if ((other == null) || (!text.equals(other.serialise())) || (!client.getAccounts().equals(other.getAccounts()))) {
+				if (!shown) {
+					System.out.println((other == null) ? String.format(MSG_MISSING, client.getName())
+														: String.format(MSG_DIFFERS, client.getName(), other.serialise(), text));
+					shown = true;
+				}
+				differ++;
+			}
+		}
+		System.out.println(String.format(MSG_STEP, step, actual.getNumberOfClients(), differ));
+		return differ;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ *  Description:
+ *  The LatencyHistogram class records the durations of an operation without any locking, so that it can be used on the
+ *  hot paths of the Calculator by any number of threads at once. The durations are counted within power of two buckets
+ *  (the bucket of a duration being the number of bits needed to hold it in nanoseconds), each of which is a LongAdder, so
+ *  threads recording at the same time don't contend on a single counter. The percentiles are therefore approximate: they
+ *  are the upper bound of the bucket that holds the percentile (and are never more than twice the actual duration, nor
+ *  more than the maximum). The number of operations is counted separately from the durations recorded, so that the
+ *  durations of a fast operation can be sampled (see the CalculatorMetrics), while every operation is still counted;
+ *  the mean and the percentiles are those of the recorded durations. The getters are read by the CalculatorMetrics
+ *  MXBean, which publishes each histogram as a composite of its count, samples, mean, percentiles and maximum.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+	private static final int BUCKETS = 64;
+	private static final double NANOS_PER_MICRO = 1000;
+	private static final double MEDIAN = 0.5;
+	private static final double NINETY_NINTH = 0.99;
+
+	private final LongAdder[] buckets;
+	private final LongAdder count;
+	private final LongAdder samples;
+	private final LongAdder total;
+	private final AtomicLong max;
+
+	public LatencyHistogram() {
+		this.buckets = new LongAdder[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			this.buckets[i] = new LongAdder();
+		}
+		this.count = new LongAdder();
+		this.samples = new LongAdder();
+		this.total = new LongAdder();
+		this.max = new AtomicLong();
+	}
+
+	/**
+	* The increment method counts an operation (whether or not its duration is recorded).
+	*/
+	public void increment() {
+		this.count.increment();
+	}
+
+	/**
+	* The record method records the received duration (a negative duration is recorded as zero).
+	* @param nanos long - The duration in nanoseconds.
+	*/
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		this.buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment(); // From 0 (for zero) to 63, as nanos isn't negative.
+		this.samples.increment();
+		this.total.add(nanos);
+		if (nanos > this.max.get()) {
+			this.max.accumulateAndGet(nanos, Math::max);
+		}
+	}
+
+	/**
+	* The reset method discards the recorded durations. Durations recorded during the reset may be partly kept.
+	*/
+	public void reset() {
+		for (LongAdder bucket : this.buckets) {
+			bucket.reset();
+		}
+		this.count.reset();
+		this.samples.reset();
+		this.total.reset();
+		this.max.set(0);
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public long getSamples() {
+		return this.samples.sum();
+	}
+
+	public double getMeanMicros() {
+		long samples = this.samples.sum();
+		return ((samples > 0) ? ((this.total.sum() / (double)samples) / NANOS_PER_MICRO) : 0);
+	}
+
+	public double getP50Micros() {
+		return this.getPercentile(MEDIAN) / NANOS_PER_MICRO;
+	}
+
+	public double getP99Micros() {
+		return this.getPercentile(NINETY_NINTH) / NANOS_PER_MICRO;
+	}
+
+	public double getMaxMicros() {
+		return this.max.get() / NANOS_PER_MICRO;
+	}
+
+	/**
+	* The getPercentile method returns the upper bound of the bucket holding the received fraction of the durations
+	* (limited to the maximum duration).
+	* @param fraction double - The fraction, such as 0.99 for the 99th percentile.
+	* @return long - The duration in nanoseconds (or zero if nothing has been recorded).
+	*/
+	public long getPercentile(double fraction) {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = this.buckets[i].sum();
+			count += counts[i];
+		}
+		long rank = (long)Math.ceil(count * fraction), seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if ((seen >= rank) && (seen > 0)) {
+				long bound = ((i == (BUCKETS - 1)) ? Long.MAX_VALUE : ((1L << i) - 1));
+				return Math.min(bound, this.max.get());
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,292 @@
+/*	
+ *  Description: 
+ *  The MappedClientTable class stores the clients within a memory-mapped file, which enables the Calculator to hold 
+ *  more clients than would otherwise fit within the heap (and keeps the client data out of reach of the garbage collector).
+ *  Each client occupies a fixed size record containing its attributes, its accounts, and its name. The file is mapped in 
+ *  segments of SEGMENT_RECORDS records, with further segments being mapped as the number of clients grows. The file 
+ *  begins with a header containing the number of records, so that an existing file can be reopened; the Client views 
+ *  are then recreated for each record. The accounts are only materialised when a client needs them.
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+public class MappedClientTable extends ClientTable {
+	private static final String NOT_A_CLIENT_STORE = "The file is not a mapped client store";
+	private static final String NAME_TOO_LONG = "The client name is too long for the mapped client store";
+	
+	// The layout of the file header.
+	private static final int MAGIC = 0x434C4D50;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 4;
+	private static final int HEADER_RECORD_SIZE = 8;
+	private static final int HEADER_SIZE_FIELD = 12;
+	
+	// The layout of each record.
+	private static final int RECORD_SIZE = 256;
+	private static final int GROSS_SALARY = 0;
+	private static final int NET_SALARY = 8;
+	private static final int TAX = 16;
+	private static final int MEDICARE = 24;
+	private static final int WEEKLY_EXPENSES = 32;
+	private static final int RESIDENT = 40;
+	private static final int NO_ACCOUNTS = 41;
+	private static final int ACCOUNTS = 48;
+	private static final int ACCOUNT_SIZE = 24; // Each account being the rate, weeks (with padding), and the amount.
+	private static final int ACCOUNT_RATE = 0;
+	private static final int ACCOUNT_WEEKS = 8;
+	private static final int ACCOUNT_AMOUNT = 16;
+	private static final int NAME_LENGTH = ACCOUNTS + (Client.MAX_ACCOUNTS * ACCOUNT_SIZE);
+	private static final int NAME = NAME_LENGTH + 2;
+	private static final int MAX_NAME_LENGTH = RECORD_SIZE - NAME;
+	
+	// The number of records within each mapped segment of the file.
+	private static final int SEGMENT_RECORDS = 65536;
+	private static final int SEGMENT_SHIFT = 16;
+	
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private MappedByteBuffer header;
+	private ArrayList<MappedByteBuffer> segments;
+	
+	/**
+	* The constructor opens (or creates) the received file. If the file already contains clients, the Client views 
+	* are recreated for each record and can be retrieved using the getClients method.
+	* @param filename String - The file that the clients are stored in.
+	* @throws IOException - If the file couldn't be opened, or isn't a mapped client store.
+	*/
+	public MappedClientTable(String filename) throws IOException {
+		this.file = new RandomAccessFile(filename, "rw");
+		this.channel = this.file.getChannel();
+		this.segments = new ArrayList<MappedByteBuffer>();
+		boolean exists = (this.channel.size() > 0);
+		this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+		if (exists) {
+			if ((this.header.getInt(HEADER_MAGIC) != MAGIC) || (this.header.getInt(HEADER_VERSION) != VERSION) || 
+				(this.header.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE)) {
+				this.close();
+				throw new IOException(NOT_A_CLIENT_STORE);
+			}
+			int size = this.header.getInt(HEADER_SIZE_FIELD);
+			this.ensureCapacity(size);
+			// Recreates the view of each record.
+			for (int row = 0; row < size; row++) {
+				this.restore(new Client(this, row, this.getName(row)), row);
+			}
+		} else {
+			this.header.putInt(HEADER_MAGIC, MAGIC);
+			this.header.putInt(HEADER_VERSION, VERSION);
+			this.header.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+			this.header.putInt(HEADER_SIZE_FIELD, 0);
+		}
+	}
+	
+	/**
+	* The segment method returns the mapped segment that contains the received row.
+	* @param row int - The row.
+	* @return MappedByteBuffer - The segment.
+	*/
+	private MappedByteBuffer segment(int row) {
+		return this.segments.get(row >>> SEGMENT_SHIFT);
+	}
+	
+	/**
+	* The offset method returns the position of the received row within its segment.
+	* @param row int - The row.
+	* @return int - The position of the record.
+	*/
+	private static int offset(int row) {
+		return ((row & (SEGMENT_RECORDS - 1)) * RECORD_SIZE);
+	}
+	
+	/**
+	* The ensureCapacity method maps further segments of the file until the received number of rows can be held.
+	* @param rows int - The number of rows required.
+	*/
+	protected void ensureCapacity(int rows) {
+		try {
+			while (((long)this.segments.size() * SEGMENT_RECORDS) < rows) {
+				long position = HEADER_SIZE + ((long)this.segments.size() * SEGMENT_RECORDS * RECORD_SIZE);
+				this.segments.add(this.channel.map(FileChannel.MapMode.READ_WRITE, position, (long)SEGMENT_RECORDS * RECORD_SIZE));
+			}
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	protected void move(int from, int to) {
+		MappedByteBuffer source = this.segment(from);
+		MappedByteBuffer destination = this.segment(to);
+		int sourceOffset = offset(from), destinationOffset = offset(to);
+		for (int i = 0; i < RECORD_SIZE; i += 8) {
+			destination.putLong(destinationOffset + i, source.getLong(sourceOffset + i));
+		}
+	}
+	
+	/**
+	* The sizeChanged method records the number of rows within the header, so that the file can be reopened.
+	* @param size int - The number of rows.
+	*/
+	protected void sizeChanged(int size) {
+		this.header.putInt(HEADER_SIZE_FIELD, size);
+	}
+	
+	/**
+	* The getName method reads the name stored within the record of the received row.
+	* @param row int - The row of the client.
+	* @return String - The client name.
+	*/
+	private String getName(int row) {
+		MappedByteBuffer segment = this.segment(row);
+		int offset = offset(row);
+		byte[] name = new byte[segment.getShort(offset + NAME_LENGTH)];
+		for (int i = 0; i < name.length; i++) {
+			name[i] = segment.get(offset + NAME + i);
+		}
+		return new String(name, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	* The setName method stores the name within the record of the received row.
+	* @param row int - The row of the client.
+	* @param name String - The client name.
+	* @throws IllegalArgumentException - If the name is too long to be stored.
+	*/
+	public void setName(int row, String name) {
+		this.checkName(name);
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		MappedByteBuffer segment = this.segment(row);
+		int offset = offset(row);
+		segment.putShort(offset + NAME_LENGTH, (short)bytes.length);
+		for (int i = 0; i < bytes.length; i++) {
+			segment.put(offset + NAME + i, bytes[i]);
+		}
+	}
+	
+	/**
+	* The checkName method determines whether the received name fits within a record (as UTF-8).
+	* @param name String - The client name.
+	* @throws IllegalArgumentException - If the name is too long to be stored.
+	*/
+	public void checkName(String name) {
+		if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_LENGTH) {
+			throw new IllegalArgumentException(NAME_TOO_LONG);
+		}
+	}
+	
+	public boolean storesAccounts() {
+		return true;
+	}
+	
+	/**
+	* The getAccounts method materialises the accounts stored within the record of the received row.
+	* @param row int - The row of the client.
+	* @return Account[] - A new array (of Client.MAX_ACCOUNTS length) containing the accounts.
+	*/
+	public Account[] getAccounts(int row) {
+		MappedByteBuffer segment = this.segment(row);
+		int offset = offset(row);
+		Account[] accounts = new Account[Client.MAX_ACCOUNTS];
+		for (int i = 0, count = segment.get(offset + NO_ACCOUNTS); i < count; i++) {
+			int account = offset + ACCOUNTS + (i * ACCOUNT_SIZE);
+			accounts[i] = new Account(segment.getDouble(account + ACCOUNT_RATE), segment.getInt(account + ACCOUNT_WEEKS), 
+										segment.getDouble(account + ACCOUNT_AMOUNT));
+		}
+		return accounts;
+	}
+	
+	/**
+	* The setAccounts method stores the received accounts within the record of the received row.
+	* @param row int - The row of the client.
+	* @param accounts Account[] - The accounts, which are stored from the start of the array until the first null reference.
+	*/
+	public void setAccounts(int row, Account[] accounts) {
+		MappedByteBuffer segment = this.segment(row);
+		int offset = offset(row);
+		int count = 0;
+		for (; (count < accounts.length) && (count < Client.MAX_ACCOUNTS) && (accounts[count] != null); count++) {
+			int account = offset + ACCOUNTS + (count * ACCOUNT_SIZE);
+			segment.putDouble(account + ACCOUNT_RATE, accounts[count].getRate());
+			segment.putInt(account + ACCOUNT_WEEKS, accounts[count].getNumberOfWeeks());
+			segment.putDouble(account + ACCOUNT_AMOUNT, accounts[count].getAmount());
+		}
+		segment.put(offset + NO_ACCOUNTS, (byte)count);
+	}
+	
+	public int getNumberOfAccounts(int row) {
+		return this.segment(row).get(offset(row) + NO_ACCOUNTS);
+	}
+	
+	public double getGrossSalary(int row) {
+		return this.segment(row).getDouble(offset(row) + GROSS_SALARY);
+	}
+	
+	public void setGrossSalary(int row, double grossSalary) {
+		this.segment(row).putDouble(offset(row) + GROSS_SALARY, grossSalary);
+	}
+	
+	public double getNetSalary(int row) {
+		return this.segment(row).getDouble(offset(row) + NET_SALARY);
+	}
+	
+	public void setNetSalary(int row, double netSalary) {
+		this.segment(row).putDouble(offset(row) + NET_SALARY, netSalary);
+	}
+	
+	public double getTax(int row) {
+		return this.segment(row).getDouble(offset(row) + TAX);
+	}
+	
+	public void setTax(int row, double tax) {
+		this.segment(row).putDouble(offset(row) + TAX, tax);
+	}
+	
+	public double getMedicare(int row) {
+		return this.segment(row).getDouble(offset(row) + MEDICARE);
+	}
+	
+	public void setMedicare(int row, double medicare) {
+		this.segment(row).putDouble(offset(row) + MEDICARE, medicare);
+	}
+	
+	public double getWeeklyExpenses(int row) {
+		return this.segment(row).getDouble(offset(row) + WEEKLY_EXPENSES);
+	}
+	
+	public void setWeeklyExpenses(int row, double weeklyExpenses) {
+		this.segment(row).putDouble(offset(row) + WEEKLY_EXPENSES, weeklyExpenses);
+	}
+	
+	public boolean getResident(int row) {
+		return (this.segment(row).get(offset(row) + RESIDENT) != 0);
+	}
+	
+	public void setResident(int row, boolean resident) {
+		this.segment(row).put(offset(row) + RESIDENT, (byte)((resident) ? 1 : 0));
+	}
+	
+	/**
+	* The force method writes any changes made to the mapped segments out to the file.
+	*/
+	public void force() {
+		this.header.force();
+		for (MappedByteBuffer segment : this.segments) {
+			segment.force();
+		}
+	}
+	
+	/**
+	* The close method writes any changes out to the file and closes it. The table can't be used once closed.
+	*/
+	public void close() throws IOException {
+		this.force();
+		this.channel.close();
+		this.file.close();
+	}
+}
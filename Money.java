@@ -0,0 +1,95 @@
+/*
+ *  Description:
+ *  The Money class holds the fixed-point arithmetic used for amounts of money, which are held as a long number of cents.
+ *  An amount is rounded to cents (HALF_EVEN) in the same way as a DecimalFormat using the "#0.00" pattern, so that the
+ *  cents are those that would be shown for the amount; once rounded, the amounts can be added, subtracted and compared
+ *  exactly. Most amounts are rounded using double arithmetic alone; only an amount that is too close to a tie for that is
+ *  rounded with a BigDecimal.
+ */
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+public class Money {
+	public static final long CENTS_PER_DOLLAR = 100;
+	private static final int FRACTION_DIGITS = 2;
+	private static final String ERR_OUT_OF_RANGE = "The amount is too large to be held in cents: ";
+	// The largest scaled value (the value multiplied by ten to the power of the fraction digits) that is rounded using double
+	// arithmetic, where the error of the multiplication is below ROUNDING_TOLERANCE.
+	private static final double MAX_FAST_SCALED = 0x1p40;
+	private static final double ROUNDING_TOLERANCE = 0x1p-12;
+	// The scaled values from which a long can't hold the rounded value.
+	private static final double MAX_SCALED = 0x1p63;
+	// The amounts from which every double already has fewer than three fraction digits (in its shortest decimal).
+	private static final double MAX_FRACTIONAL = 1e15;
+
+	private Money() {
+	}
+
+	/**
+	* The cents method rounds the received amount to a whole number of cents.
+	* @param amount double - The amount.
+	* @return long - The amount in cents.
+	* @throws ArithmeticException - If the amount is infinite, NaN or too large for a long number of cents.
+	*/
+	public static long cents(double amount) {
+		double magnitude = Math.abs(amount);
+		double scaled = magnitude * CENTS_PER_DOLLAR;
+		if (!(scaled < MAX_SCALED)) {
+			throw new ArithmeticException(ERR_OUT_OF_RANGE + amount);
+		}
+		long cents = round(magnitude, scaled, FRACTION_DIGITS);
+		return ((amount < 0) ? -cents : cents);
+	}
+
+	/**
+	* The toDouble method converts the received cents into the double that is closest to the amount.
+	* @param cents long - The amount in cents.
+	* @return double - The amount.
+	*/
+	public static double toDouble(long cents) {
+		return (cents / (double)CENTS_PER_DOLLAR);
+	}
+
+	/**
+	* The round method rounds the received amount to two decimal places. An amount that is infinite, NaN, or large enough
+	* that it has no more than two decimal places is returned as it is.
+	* @param amount double - The amount.
+	* @return double - The rounded amount.
+	*/
+	public static double round(double amount) {
+		if (!(Math.abs(amount) < MAX_FRACTIONAL)) {
+			return amount;
+		}
+		return toDouble(cents(amount));
+	}
+
+	/**
+	* The second round method rounds the received magnitude to the received number of fraction digits (HALF_EVEN), returning the
+	* result as a whole number of units (such as cents). The scaled value is only rounded directly if it is small and isn't
+	* close to a tie. Otherwise it is rounded in the same way as DecimalFormat: the shortest decimal that identifies the double
+	* (as given by Double.toString) is rounded, and if that decimal is exactly a tie, the exact value of the double decides
+	* the direction. It is also used by the ReportFormat, which rounds to the fraction digits of the locale's currency.
+	* @param magnitude double - The absolute value.
+	* @param scaled double - The magnitude multiplied by ten to the power of the fraction digits.
+	* @param fractionDigits int - The number of fraction digits.
+	* @return long - The rounded units.
+	*/
+	static long round(double magnitude, double scaled, int fractionDigits) {
+		if (scaled < MAX_FAST_SCALED) {
+			double floor = Math.floor(scaled);
+			double remainder = scaled - floor;
+			if (Math.abs(remainder - 0.5) > ROUNDING_TOLERANCE) {
+				return ((long)floor + ((remainder > 0.5) ? 1 : 0));
+			}
+		}
+		BigDecimal shortest = new BigDecimal(Double.toString(magnitude)).stripTrailingZeros();
+		RoundingMode mode = RoundingMode.HALF_EVEN;
+		if ((shortest.scale() == (fractionDigits + 1)) && (shortest.unscaledValue().mod(BigInteger.TEN).intValue() == 5)) {
+			int comparison = new BigDecimal(magnitude).compareTo(shortest);
+			mode = ((comparison > 0) ? RoundingMode.UP : ((comparison < 0) ? RoundingMode.DOWN : RoundingMode.HALF_EVEN));
+		}
+		return shortest.setScale(fractionDigits, mode).unscaledValue().longValue();
+	}
+}
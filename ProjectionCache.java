@@ -0,0 +1,239 @@
+/*
+ *  Description:
+ *  The ProjectionCache class holds the investment projections that have already been calculated, keyed by the interest rate,
+ *  investment length and weekly amount of the account. As many accounts share the same terms, the projected total and the
+ *  monthly table of a repeated account can be returned without being calculated again. The cache holds at most the capacity
+ *  received by the constructor, and counts the number of hits and misses. As a projection is looked up every time an account
+ *  is projected, the cache is divided into STRIPES segments (chosen by the hash of the terms), each being a separately locked
+ *  LRU map holding its share of the capacity, so the threads projecting accounts of different terms rarely contend; the
+ *  least recently used projection of a segment is discarded once the segment is full. Each segment also counts its own hits
+ *  and misses, under the lock that is already held for the lookup. The table is formatted for the locale
+ *  of the ReportFormat it was built with, so it is held along with the format, and is only returned for the same format.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ProjectionCache {
+	private static final int STRIPES = 16;
+
+	// The segments, each holding its projections in access order (so that the eldest entry is the least recently used).
+	private final Segment[] segments;
+
+	/**
+	* The constructor receives the number of projections that can be held within the cache, which is shared evenly between
+	* the segments.
+	* @param capacity int - The largest number of projections.
+	*/
+	public ProjectionCache(int capacity) {
+		int segmentCapacity = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+		this.segments = new Segment[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			this.segments[i] = new Segment(segmentCapacity);
+		}
+	}
+
+	/**
+	* The getTotal method returns the projected total of an account with the received terms.
+	* @param rate double - The interest rate.
+	* @param weeks int - The investment length.
+	* @param amount double - The weekly investment amount.
+	* @return Double - The projected total, or null if it hasn't been cached.
+	*/
+	public Double getTotal(double rate, int weeks, double amount) {
+		Key key = new Key(rate, weeks, amount);
+		Segment segment = this.segment(key);
+		synchronized (segment) {
+			Projection projection = segment.get(key);
+			return segment.count(((projection != null) ? projection.total : null));
+		}
+	}
+
+	/**
+	* The putTotal method caches the projected total of an account with the received terms.
+	* @param rate double - The interest rate.
+	* @param weeks int - The investment length.
+	* @param amount double - The weekly investment amount.
+	* @param total double - The projected total.
+	*/
+	public void putTotal(double rate, int weeks, double amount, double total) {
+		Key key = new Key(rate, weeks, amount);
+		Segment segment = this.segment(key);
+		synchronized (segment) {
+			segment.projection(key).total = total;
+		}
+	}
+
+	/**
+	* The getTable method returns the monthly projection table of an account with the received terms, if it was formatted
+	* with the received ReportFormat.
+	* @param rate double - The interest rate.
+	* @param weeks int - The investment length.
+	* @param amount double - The weekly investment amount.
+	* @param format ReportFormat - The current format.
+	* @return String - The table (as returned by the Account calcInvestment method), or null if it hasn't been cached for the format.
+	*/
+	public String getTable(double rate, int weeks, double amount, ReportFormat format) {
+		Key key = new Key(rate, weeks, amount);
+		Segment segment = this.segment(key);
+		synchronized (segment) {
+			Projection projection = segment.get(key);
+			RenderedText table = ((projection != null) ? projection.table : null);
+			return segment.count((((table != null) && table.isValid(format)) ? table.toString() : null));
+		}
+	}
+
+	/**
+	* The putTable method caches the monthly projection table of an account with the received terms.
+	* @param rate double - The interest rate.
+	* @param weeks int - The investment length.
+	* @param amount double - The weekly investment amount.
+	* @param format ReportFormat - The format the table was built with.
+	* @param table String - The table.
+	*/
+	public void putTable(double rate, int weeks, double amount, ReportFormat format, String table) {
+		Key key = new Key(rate, weeks, amount);
+		Segment segment = this.segment(key);
+		synchronized (segment) {
+			segment.projection(key).table = new RenderedText(format, table);
+		}
+	}
+
+	/**
+	* The segment method returns the segment holding the projections with the received key.
+	* @param key Key - The key.
+	* @return Segment - The segment.
+	*/
+	private Segment segment(Key key) {
+		int hash = key.hashCode();
+		return this.segments[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+	}
+
+	public long getHits() {
+		long hits = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				hits += segment.hits;
+			}
+		}
+		return hits;
+	}
+
+	public long getMisses() {
+		long misses = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				misses += segment.misses;
+			}
+		}
+		return misses;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	* The clear method discards every projection and resets the counters.
+	*/
+	public void clear() {
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				segment.clear();
+				segment.hits = 0;
+				segment.misses = 0;
+			}
+		}
+	}
+
+	/**
+	* The Segment class is an LRU map holding a share of the projections, along with its hit and miss counters, which is
+	* locked by synchronizing on the segment.
+	*/
+	private static class Segment extends LinkedHashMap<Key, Projection> {
+		private static final long serialVersionUID = 1L;
+		private int capacity;
+		private long hits;
+		private long misses;
+
+		private Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<Key, Projection> eldest) {
+			return (this.size() > this.capacity);
+		}
+
+		/**
+		* The count method counts the received value as a hit (or as a miss if it is null), and returns it.
+		* @param value T - The cached value.
+		* @return T - The same value.
+		*/
+		private <T> T count(T value) {
+			if (value != null) {
+				this.hits++;
+			} else {
+				this.misses++;
+			}
+			return value;
+		}
+
+		/**
+		* The projection method returns the cached projection with the received key, adding an empty projection if there isn't one.
+		* @param key Key - The key.
+		* @return Projection - The projection.
+		*/
+		private Projection projection(Key key) {
+			Projection projection = this.get(key);
+			if (projection == null) {
+				projection = new Projection();
+				this.put(key, projection);
+			}
+			return projection;
+		}
+	}
+
+	/**
+	* The Key class holds the terms of an account. Two keys are equal when their terms are exactly the same.
+	*/
+	private static class Key {
+		private double rate;
+		private int weeks;
+		private double amount;
+
+		private Key(double rate, int weeks, double amount) {
+			this.rate = rate;
+			this.weeks = weeks;
+			this.amount = amount;
+		}
+
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key)other;
+			return ((Double.compare(this.rate, key.rate) == 0) && (this.weeks == key.weeks) &&
+					(Double.compare(this.amount, key.amount) == 0));
+		}
+
+		public int hashCode() {
+			return ((((Double.hashCode(this.rate) * 31) + this.weeks) * 31) + Double.hashCode(this.amount));
+		}
+	}
+
+	/**
+	* The Projection class holds the projected total and the monthly table (along with the format it was built with), either of
+	* which can be null until it has been cached.
+	*/
+	private static class Projection {
+		private Double total;
+		private RenderedText table;
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ *  Description:
+ *  The ProjectionCheck class checks that the total of an account evaluated in closed form by the calcTotalAmount method
+ *  matches the total calculated week by week (as the calcInvestment table does), over a grid of terms: investment lengths
+ *  leaving every remainder of 0 to 3 weeks after the last full month (from no weeks up to long terms), interest rates from
+ *  none through very small to very large, and a range of weekly amounts. The totals must agree to within a relative
+ *  TOLERANCE, and while they are within CURRENCY_LIMIT they must also display the same once formatted as a currency.
+ *  The first few terms that differ are displayed, and the exit status is 1 if any of them differ.
+ *      java ProjectionCheck
+ */
+
+import java.util.Locale;
+
+public class ProjectionCheck {
+	private static final double[] RATES = {0, 1e-15, 1e-9, 1e-6, 0.0001, 0.01, 0.05, 0.25, 1, 5, 13, 100, 1e6};
+	private static final double[] AMOUNTS = {0, 0.01, 0.5, 10, 333.33, 1234.56, 1e6};
+	private static final int[] WEEKS = {0, 1, 2, 3, 4, 5, 6, 7, 8, 51, 52, 53, 54, 55, 520, 521, 522, 523, 5200, 5203, 52000, 52001};
+	private static final double TOLERANCE = 1e-9;
+	// The largest total whose formatted currency is compared, as the cents of a larger total are beyond the precision of a double.
+	private static final double CURRENCY_LIMIT = 1e9;
+	private static final int SHOWN = 10;
+	private static final String MSG_DIFFERS = "rate %s, %d weeks, amount %s: closed form %s, week by week %s";
+	private static final String MSG_RESULT = "%d terms checked (%d compared as currency), %d differ";
+
+	private ProjectionCheck() {
+	}
+
+	public static void main(String[] args) {
+		ReportFormat format = new ReportFormat(Locale.getDefault(Locale.Category.FORMAT));
+		int checked = 0, formatted = 0, differ = 0;
+		for (double rate : RATES) {
+			for (int weeks : WEEKS) {
+				for (double amount : AMOUNTS) {
+					Account account = new Account(rate, weeks, amount);
+					double closed = account.calcTotalAmount(false);
+					double iterative = account.calcTotalAmount(true);
+					boolean same = matches(closed, iterative);
+					if (same && (Math.abs(iterative) < CURRENCY_LIMIT)) {
+						String closedText = format.appendCurrency(new StringBuilder(), closed).toString();
+						String iterativeText = format.appendCurrency(new StringBuilder(), iterative).toString();
+						same = closedText.equals(iterativeText);
+						formatted++;
+					}
+					if (!same) {
+						if (differ < SHOWN) {
+							System.out.println(String.format(MSG_DIFFERS, rate, weeks, amount, closed, iterative));
+						}
+						differ++;
+					}
+					checked++;
+				}
+			}
+		}
+		System.out.println(String.format(MSG_RESULT, checked, formatted, differ));
+		if (differ > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	* The matches method determines whether the received totals agree to within the relative TOLERANCE (or are the same
+	* infinity, for the terms whose total is beyond the range of a double).
+	* @param closed double - The total evaluated in closed form.
+	* @param iterative double - The total calculated week by week.
+	* @return boolean - Whether the totals agree.
+	*/
+	private static boolean matches(double closed, double iterative) {
+		if (Double.isInfinite(closed) || Double.isInfinite(iterative) || Double.isNaN(closed) || Double.isNaN(iterative)) {
+			return (Double.compare(closed, iterative) == 0);
+		}
+		return (Math.abs(closed - iterative) <= (TOLERANCE * Math.max(Math.abs(closed), Math.abs(iterative))));
+	}
+}
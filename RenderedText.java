@@ -0,0 +1,37 @@
+/*
+ *  Description:
+ *  The RenderedText class holds the text rendered by a Client or Account (such as by its toString method), so that the
+ *  text can be returned again while the object is unchanged, rather than being formatted from scratch on every listing.
+ *  It also holds the projection tables kept within the ProjectionCache.
+ *  Along with the text, it holds the ReportFormat that formatted it, as the text is no longer valid once the default locale
+ *  (and therefore the ReportFormat) has changed. An instance without any text marks a rendering that is still in progress.
+ *  The instances are immutable, so they can be shared between threads.
+ */
+
+final class RenderedText {
+	private final ReportFormat format;
+	private final String text;
+
+	/**
+	* The constructor receives the rendered text, along with the format it was rendered with.
+	* @param format ReportFormat - The format used to render the text.
+	* @param text String - The rendered text, or null if the text is still being rendered.
+	*/
+	RenderedText(ReportFormat format, String text) {
+		this.format = format;
+		this.text = text;
+	}
+
+	/**
+	* The isValid method determines whether the text has been rendered, and is still valid for the received format.
+	* @param format ReportFormat - The current format.
+	* @return boolean - Whether the text can be used.
+	*/
+	boolean isValid(ReportFormat format) {
+		return ((this.text != null) && (this.format == format));
+	}
+
+	public String toString() {
+		return this.text;
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ *  Description:
+ *  The ReportFormat class formats the currency and fixed decimal values shown within the reports (such as the Client and
+ *  Account toString methods), appending the digits directly to a StringBuilder or Appendable rather than creating a String for
+ *  each value. The output is the same as that of NumberFormat.getCurrencyInstance() and a DecimalFormat using the "#0.00"
+ *  pattern for the default locale: the prefixes, suffixes, separators, grouping and digits are taken from those formatters,
+ *  and the values are rounded HALF_EVEN in the same way as DecimalFormat (by the Money round method). A value that can't be held as a
+ *  long (such as an infinite or very large value), or a locale whose pattern isn't supported, is passed to the formatter itself.
+ */
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+public class ReportFormat {
+	private static final String DECIMAL_PATTERN = "#0.00";
+	private static final char SPACE = ' ';
+	private static final int MAX_FRACTION_DIGITS = 9;
+	// The largest scaled value (the value multiplied by ten to the power of the fraction digits) that can be held as a long once rounded.
+	private static final double MAX_SCALED = 1e17;
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	// The instance for the default locale (which is replaced if the default locale is changed).
+	private static volatile ReportFormat instance;
+
+	private final Locale locale;
+	private final Style currency;
+	private final Style decimal;
+	private final char zeroDigit;
+
+	/**
+	* The constructor receives the locale whose currency and decimal formats are to be reproduced.
+	* @param locale Locale - The locale.
+	*/
+	public ReportFormat(Locale locale) {
+		this.locale = locale;
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+		this.currency = new Style(NumberFormat.getCurrencyInstance(locale), true);
+		this.decimal = new Style(new DecimalFormat(DECIMAL_PATTERN, symbols), false);
+		this.zeroDigit = symbols.getZeroDigit();
+	}
+
+	/**
+	* The getInstance method returns the ReportFormat of the default locale (for formatting), which matches the formatters
+	* returned by NumberFormat.getCurrencyInstance() and new DecimalFormat("#0.00").
+	* @return ReportFormat - The shared instance.
+	*/
+	public static ReportFormat getInstance() {
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+		ReportFormat format = instance;
+		if ((format == null) || (!format.locale.equals(locale))) {
+			format = new ReportFormat(locale);
+			instance = format;
+		}
+		return format;
+	}
+
+	/**
+	* The appendCurrency method appends the received value formatted as a currency.
+	* @param builder StringBuilder - The destination.
+	* @param value double - The value.
+	* @return StringBuilder - The same StringBuilder.
+	*/
+	public StringBuilder appendCurrency(StringBuilder builder, double value) {
+		return this.appendCurrency(builder, value, 0);
+	}
+
+	/**
+	* The second appendCurrency method pads the currency with spaces on the left until it is at least the received width
+	* (in the same way as the "%15s" conversion of String.format).
+	* @param builder StringBuilder - The destination.
+	* @param value double - The value.
+	* @param width int - The minimum width.
+	* @return StringBuilder - The same StringBuilder.
+	*/
+	public StringBuilder appendCurrency(StringBuilder builder, double value, int width) {
+		try {
+			this.currency.append(builder, value, width);
+		} catch (IOException ex) {
+			// A StringBuilder doesn't throw an IOException.
+		}
+		return builder;
+	}
+
+	/**
+	* The third appendCurrency method appends the currency to an Appendable (such as a Writer).
+	* @param out Appendable - The destination.
+	* @param value double - The value.
+	* @throws IOException - If the output couldn't be written.
+	*/
+	public void appendCurrency(Appendable out, double value) throws IOException {
+		this.currency.append(out, value, 0);
+	}
+
+	/**
+	* The appendDecimal method appends the received value with two decimal places (as formatted by the "#0.00" pattern).
+	* @param builder StringBuilder - The destination.
+	* @param value double - The value.
+	* @return StringBuilder - The same StringBuilder.
+	*/
+	public StringBuilder appendDecimal(StringBuilder builder, double value) {
+		try {
+			this.decimal.append(builder, value, 0);
+		} catch (IOException ex) {
+			// A StringBuilder doesn't throw an IOException.
+		}
+		return builder;
+	}
+
+	/**
+	* The second appendDecimal method appends the decimal to an Appendable (such as a Writer).
+	* @param out Appendable - The destination.
+	* @param value double - The value.
+	* @throws IOException - If the output couldn't be written.
+	*/
+	public void appendDecimal(Appendable out, double value) throws IOException {
+		this.decimal.append(out, value, 0);
+	}
+
+	/**
+	* The appendInteger method appends the received (non-negative) integer padded with zeros on the left until it has at least
+	* the received number of digits, using the digits of the locale (in the same way as the "%02d" conversion of String.format).
+	* @param builder StringBuilder - The destination.
+	* @param value int - The value.
+	* @param digits int - The minimum number of digits.
+	* @return StringBuilder - The same StringBuilder.
+	*/
+	public StringBuilder appendInteger(StringBuilder builder, int value, int digits) {
+		if (value < 0) {
+			return builder.append(String.format(this.locale, "%0" + digits + "d", value));
+		}
+		for (int position = Math.max(digits, countDigits(value)) - 1; position >= 0; position--) {
+			builder.append((char)(this.zeroDigit + ((value / POWERS_OF_TEN[position]) % 10)));
+		}
+		return builder;
+	}
+
+	/**
+	* The countDigits method returns the number of digits within the received (non-negative) number.
+	* @param value long - The number.
+	* @return int - The number of digits.
+	*/
+	private static int countDigits(long value) {
+		int digits = 1;
+		while ((digits < POWERS_OF_TEN.length) && (value >= POWERS_OF_TEN[digits])) {
+			digits++;
+		}
+		return digits;
+	}
+
+	/**
+	* The Style class holds the parts of a DecimalFormat that are reproduced, and appends the formatted values. The formatter
+	* itself is kept for the values (or patterns) that aren't supported; as it isn't thread-safe, it is used while holding its monitor.
+	*/
+	private static class Style {
+		private final NumberFormat format;
+		private final boolean supported;
+		private final String positivePrefix;
+		private final String positiveSuffix;
+		private final String negativePrefix;
+		private final String negativeSuffix;
+		private final int groupingSize;
+		private final char groupingSeparator;
+		private final char decimalSeparator;
+		private final char zeroDigit;
+		private final int fractionDigits;
+		private final int minimumIntegerDigits;
+
+		private Style(NumberFormat numberFormat, boolean monetary) {
+			this.format = numberFormat;
+			DecimalFormat format = ((numberFormat instanceof DecimalFormat) ? (DecimalFormat)numberFormat : null);
+			DecimalFormatSymbols symbols = ((format != null) ? format.getDecimalFormatSymbols() : new DecimalFormatSymbols());
+			this.supported = (format != null) && (format.getRoundingMode() == RoundingMode.HALF_EVEN) && (format.getMultiplier() == 1) &&
+								(format.getMinimumFractionDigits() == format.getMaximumFractionDigits()) &&
+								(format.getMaximumFractionDigits() <= MAX_FRACTION_DIGITS) && (format.getMinimumIntegerDigits() >= 1) &&
+								(format.getMinimumIntegerDigits() < POWERS_OF_TEN.length) && (format.getMaximumIntegerDigits() >= 309) &&
+								(!format.isDecimalSeparatorAlwaysShown()) && ((!format.isGroupingUsed()) || (format.getGroupingSize() > 0));
+			this.positivePrefix = ((format != null) ? format.getPositivePrefix() : null);
+			this.positiveSuffix = ((format != null) ? format.getPositiveSuffix() : null);
+			this.negativePrefix = ((format != null) ? format.getNegativePrefix() : null);
+			this.negativeSuffix = ((format != null) ? format.getNegativeSuffix() : null);
+			this.groupingSize = (((format != null) && format.isGroupingUsed()) ? format.getGroupingSize() : 0);
+			this.groupingSeparator = ((monetary) ? symbols.getMonetaryGroupingSeparator() : symbols.getGroupingSeparator());
+			this.decimalSeparator = ((monetary) ? symbols.getMonetaryDecimalSeparator() : symbols.getDecimalSeparator());
+			this.zeroDigit = symbols.getZeroDigit();
+			this.fractionDigits = ((format != null) ? format.getMaximumFractionDigits() : 0);
+			this.minimumIntegerDigits = ((format != null) ? format.getMinimumIntegerDigits() : 1);
+		}
+
+		/**
+		* The append method appends the formatted value, padded with spaces on the left to at least the received width.
+		* @param out Appendable - The destination.
+		* @param value double - The value.
+		* @param width int - The minimum width.
+		*/
+		private void append(Appendable out, double value, int width) throws IOException {
+			double scaled = Math.abs(value) * POWERS_OF_TEN[this.fractionDigits];
+			if ((!this.supported) || (!(scaled < MAX_SCALED))) {
+				// The pattern isn't supported, or the value is infinite, NaN or too large to be held in a long.
+				String text;
+				synchronized (this.format) {
+					text = this.format.format(value);
+				}
+				this.pad(out, width - text.length());
+				out.append(text);
+				return;
+			}
+			long units = Money.round(Math.abs(value), scaled, this.fractionDigits);
+			long power = POWERS_OF_TEN[this.fractionDigits];
+			long integer = units / power;
+			long fraction = units % power;
+			// The sign bit is used, as a negative value that rounds to zero (or negative zero) keeps the negative prefix.
+			boolean negative = (Double.doubleToRawLongBits(value) < 0);
+			String prefix = ((negative) ? this.negativePrefix : this.positivePrefix);
+			String suffix = ((negative) ? this.negativeSuffix : this.positiveSuffix);
+			int digits = Math.max(this.minimumIntegerDigits, countDigits(integer));
+			int length = prefix.length() + digits + ((this.groupingSize > 0) ? ((digits - 1) / this.groupingSize) : 0) +
+							((this.fractionDigits > 0) ? (this.fractionDigits + 1) : 0) + suffix.length();
+			this.pad(out, width - length);
+			out.append(prefix);
+			for (int position = digits - 1; position >= 0; position--) {
+				out.append((char)(this.zeroDigit + ((integer / POWERS_OF_TEN[position]) % 10)));
+				if ((this.groupingSize > 0) && (position > 0) && ((position % this.groupingSize) == 0)) {
+					out.append(this.groupingSeparator);
+				}
+			}
+			if (this.fractionDigits > 0) {
+				out.append(this.decimalSeparator);
+				for (int position = this.fractionDigits - 1; position >= 0; position--) {
+					out.append((char)(this.zeroDigit + ((fraction / POWERS_OF_TEN[position]) % 10)));
+				}
+			}
+			out.append(suffix);
+		}
+
+		private void pad(Appendable out, int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				out.append(SPACE);
+			}
+		}
+	}
+}
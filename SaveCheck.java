@@ -0,0 +1,182 @@
+/*
+ *  Description:
+ *  The SaveCheck class checks that a file updated by the Calculator saveIncremental method opens to the same clients as the
+ *  file written in full by the save method, including when the file that was opened holds duplicate records (which the open
+ *  method skips). It first checks that a client that is deleted, or renamed, after opening a file holding a later duplicate
+ *  of it doesn't come back from the duplicate once the file has been updated. It then makes random changes (deleting,
+ *  renaming, changing and adding clients, and adding accounts) to a generated client file with duplicates, updating the file
+ *  after each round of changes, and compares the reopened file against the same changes saved in full. Finally, it checks
+ *  that the save method still writes the file in full over an updated file. Each step is displayed along with whether it
+ *  passed, and the exit status is 1 if any of them fail.
+ *      java SaveCheck [clients] [directory]
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SaveCheck {
+	private static final int DEFAULT_CLIENTS = 2000;
+	private static final long SEED = 10;
+	private static final double DUPLICATE_RATIO = 0.02;
+	private static final int ROUNDS = 20;
+	private static final int CHANGES_PER_ROUND = 25;
+	private static final String BOOK_FILE = "book.dat";
+	private static final String UPDATED_FILE = "updated.dat";
+	private static final String EXPECTED_FILE = "expected.dat";
+	private static final String ACTUAL_FILE = "actual.dat";
+	private static final String MSG_CHECK = "%-40s %s";
+	private static final String MSG_PASSED = "Passed";
+	private static final String MSG_FAILED = "Failed";
+	private static final String MSG_DIFFERS = "differs after round %d";
+
+	private SaveCheck() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int clients = ((args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS);
+		File directory = ((args.length > 1) ? new File(args[1]) : Files.createTempDirectory("savecheck").toFile());
+		int failures = 0;
+
+		// A client is deleted after opening a file holding a later duplicate of it.
+		String file = duplicated(directory);
+		Calculator calculator = open(file);
+		calculator.deleteClient("Ann");
+		calculator.saveIncremental(file);
+		failures += check("Delete with a duplicate", open(file).findClient("Ann") == null);
+
+		// A client is renamed after opening a file holding a later duplicate of it.
+		file = duplicated(directory);
+		calculator = open(file);
+		calculator.renameClient(calculator.findClient("Ann"), "Carl");
+		calculator.saveIncremental(file);
+		Calculator reopened = open(file);
+		failures += check("Rename with a duplicate", (reopened.findClient("Ann") == null) && (reopened.findClient("Carl") != null)
+											&& (reopened.findClient("Carl").getGrossSalary() == 50000));
+
+		// Random changes are made to a generated file with duplicates, which is updated after each round of changes.
+		String book = new File(directory, BOOK_FILE).getPath();
+		String updated = new File(directory, UPDATED_FILE).getPath();
+		ClientBookGenerator generator = new ClientBookGenerator();
+		generator.setClients(clients);
+		generator.setSeed(SEED);
+		generator.setDuplicateRatio(DUPLICATE_RATIO);
+		generator.generate(book);
+		Files.copy(new File(book).toPath(), new File(updated).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Calculator expected = open(book);
+		Calculator actual = open(updated);
+		Random random = new Random(SEED);
+		String result = MSG_PASSED;
+		for (int round = 1; (round <= ROUNDS) && (result == MSG_PASSED); round++) {
+			for (int i = 0; i < CHANGES_PER_ROUND; i++) {
+				long seed = random.nextLong();
+				change(expected, new Random(seed));
+				change(actual, new Random(seed));
+			}
+			actual.saveIncremental(updated);
+			if (!sameFile(expected, open(updated), directory)) {
+				result = String.format(MSG_DIFFERS, round);
+			}
+		}
+		System.out.println(String.format(MSG_CHECK, "Random changes with duplicates", result));
+		failures += ((result == MSG_PASSED) ? 0 : 1);
+
+		// The save method writes the updated file in full again, as the file written for a Calculator that was never updated.
+		actual.save(updated);
+		String full = new File(directory, EXPECTED_FILE).getPath();
+		expected.save(full);
+		failures += check("Full save over an updated file", Arrays.equals(Files.readAllBytes(new File(updated).toPath()),
+																		Files.readAllBytes(new File(full).toPath())));
+
+		System.out.println((failures == 0) ? MSG_PASSED : MSG_FAILED);
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	* The duplicated method writes a file holding the records of "Ann", "Bob", and then another "Ann" with different details.
+	* @param directory File - The directory of the file.
+	* @return String - The file.
+	*/
+	private static String duplicated(File directory) throws IOException {
+		File file = new File(directory, "duplicated.dat");
+		FileWriter out = new FileWriter(file);
+		try {
+			out.write(newClient("Ann", 50000, true).serialise());
+			out.write(newClient("Bob", 60000, true).serialise());
+			out.write(newClient("Ann", 99000, false).serialise());
+		} finally {
+			out.close();
+		}
+		return file.getPath();
+	}
+
+	private static Client newClient(String name, double grossSalary, boolean resident) {
+		Client client = new Client(name, grossSalary, resident);
+		client.calcTax();
+		return client;
+	}
+
+	/**
+	* The open method opens the received file into a new Calculator, ignoring the error reporting the duplicates that were skipped.
+	* @param file String - The file.
+	* @return Calculator - The Calculator.
+	*/
+	private static Calculator open(String file) {
+		Calculator calculator = new Calculator();
+		try {
+			calculator.open(file);
+		} catch (Exception ex) {
+			// The duplicates are expected.
+		}
+		return calculator;
+	}
+
+	/**
+	* The change method makes a random change to the received Calculator. The same change is made to each Calculator that
+	* holds the same clients, when it receives a Random with the same seed.
+	* @param calculator Calculator - The Calculator.
+	* @param random Random - The source of the change.
+	*/
+	private static void change(Calculator calculator, Random random) {
+		Client[] clients = calculator.getClients();
+		Client client = clients[random.nextInt(clients.length)];
+		int choice = random.nextInt(5);
+		if (choice == 0) {
+			calculator.deleteClient(client.getName());
+		} else if (choice == 1) {
+			calculator.renameClient(client, client.getName() + " Renamed" + random.nextInt(1000));
+		} else if (choice == 2) {
+			client.setGrossSalary(client.getGrossSalary() + random.nextInt(100000));
+			client.calcTax();
+		} else if (choice == 3) {
+			calculator.addClient(newClient("Added " + random.nextInt(1000000), 20000 + random.nextInt(200000), random.nextBoolean()));
+		} else if (client.getNumberOfAccounts() < Client.MAX_ACCOUNTS) {
+			client.addAccount(0.05, 1 + random.nextInt(100), 1 + random.nextInt(500));
+		}
+	}
+
+	/**
+	* The sameFile method determines whether the received Calculators save the same file in full.
+	* @param expected Calculator - The Calculator holding the expected clients.
+	* @param actual Calculator - The Calculator being checked.
+	* @param directory File - The directory the files are saved to.
+	* @return boolean - Whether the files are the same.
+	*/
+	private static boolean sameFile(Calculator expected, Calculator actual, File directory) throws IOException {
+		File expectedFile = new File(directory, EXPECTED_FILE), actualFile = new File(directory, ACTUAL_FILE);
+		expected.save(expectedFile.getPath());
+		actual.save(actualFile.getPath());
+		return Arrays.equals(Files.readAllBytes(expectedFile.toPath()), Files.readAllBytes(actualFile.toPath()));
+	}
+
+	private static int check(String step, boolean passed) {
+		System.out.println(String.format(MSG_CHECK, step, (passed) ? MSG_PASSED : MSG_FAILED));
+		return ((passed) ? 0 : 1);
+	}
+}
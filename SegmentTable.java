@@ -0,0 +1,342 @@
+/*
+ *  Description:
+ *  The SegmentTable class keeps track of the changes made to the clients of a Calculator since the text file was last
+ *  saved or opened, along with the segment of the file (being the byte offset and the number of bytes) that holds each client.
+ *  This enables the update method to rewrite only the records of the clients that have changed: a record that still fits
+ *  within its segment is written over the old record, and any remaining bytes are blanked with white space (which is ignored
+ *  when the file is opened). A record that no longer fits, or the record of a new client, is appended to the end of the file,
+ *  and the segment of a deleted client is blanked (as are the records that the open method skipped). Once the blanked bytes make up more than MAX_WASTE of the file, the
+ *  canUpdate method declines, so that the file is written again in full.
+ *  The methods are synchronized, as the clients can be changed by other threads while the file is being saved. Each change
+ *  is given a stamp from a counter, and a change is only discarded once a record written (or read) after it has reached the
+ *  file. The update method serialises the changed clients without holding the monitor, as a client's monitor can be held
+ *  while it reports a change.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+public class SegmentTable {
+	private static final byte BLANK = ' ';
+	private static final byte LINE_FEED = '\n';
+	private static final byte[] SEPARATOR = (System.getProperty("line.separator") + System.getProperty("line.separator")).getBytes();
+	// The proportion of the file that can be blank before the file should be written again in full.
+	private static final double MAX_WASTE = 0.5;
+	// The indexes of the values within a segment.
+	private static final int OFFSET = 0;
+	private static final int CAPACITY = 1;
+	private static final int USED = 2;
+	private static final int MARK = 3;
+
+	// The file that the segments describe, which is null if the segments are unknown (or incomplete).
+	private File file;
+	// The file that is having its segments recorded (by the record method).
+	private File recording;
+	// The length and modification time of the file when it was last written, which are used to detect any other changes.
+	private long length;
+	private long modified;
+	// Whether the file ends without a line separator (as the full save trims the end of the file).
+	private boolean trimmed;
+	// The number of bytes within the file that are holding a record.
+	private long used;
+	// Maps each client to its segment, being the offset, the capacity, the number of bytes used, and the stamp taken
+	// before the record was written.
+	private IdentityHashMap<Client, long[]> segments;
+	// The segments of the clients that have been deleted.
+	private ArrayList<long[]> freed;
+	// Maps the clients that have been added or changed to the stamp of their latest change.
+	private IdentityHashMap<Client, Long> dirty;
+	// The clients that have been deleted while the segments are being recorded.
+	private IdentityHashMap<Client, Boolean> deleted;
+	// The counter that the changes are stamped with, the stamp of the latest deletion, and the stamp of the last save.
+	private long stamp;
+	private long deletion;
+	private long saved;
+
+	public SegmentTable() {
+		this.file = null;
+		this.recording = null;
+		this.segments = new IdentityHashMap<Client, long[]>();
+		this.freed = new ArrayList<long[]>();
+		this.dirty = new IdentityHashMap<Client, Long>();
+		this.deleted = new IdentityHashMap<Client, Boolean>();
+		this.stamp = 0;
+		this.deletion = 0;
+		this.saved = 0;
+	}
+
+	/**
+	* The changed method marks the received client as having been added or changed.
+	* @param client Client - The client.
+	*/
+	public synchronized void changed(Client client) {
+		this.dirty.put(client, ++this.stamp);
+	}
+
+	/**
+	* The deleted method marks the received client as having been deleted, so that its segment is blanked by the next update.
+	* @param client Client - The client.
+	*/
+	public synchronized void deleted(Client client) {
+		this.dirty.remove(client);
+		long[] segment = this.segments.remove(client);
+		if (segment != null) {
+			this.freed.add(segment);
+			this.used -= segment[USED];
+		}
+		if (this.recording != null) {
+			this.deleted.put(client, Boolean.TRUE);
+		}
+		this.deletion = ++this.stamp;
+	}
+
+	/**
+	* The hasChanges method returns whether any clients have been added, changed or deleted since the last save or open.
+	* @return boolean - Whether there are changes.
+	*/
+	public synchronized boolean hasChanges() {
+		return ((!this.dirty.isEmpty()) || (this.deletion > this.saved));
+	}
+
+	/**
+	* The mark method returns the stamp of the latest change. It is taken before a record is written (or once it has been
+	* read) and passed to the record method, so that a change made to the client after the mark isn't discarded.
+	* @return long - The stamp.
+	*/
+	public synchronized long mark() {
+		return this.stamp;
+	}
+
+	/**
+	* The begin method discards the segments, and starts recording the segments of the received file (which is being written
+	* in full, or opened). The changes to the recorded clients are discarded once the end method is reached.
+	* @param file File - The file.
+	*/
+	public synchronized void begin(File file) {
+		this.file = null;
+		this.recording = file;
+		this.segments.clear();
+		this.freed.clear();
+		this.deleted.clear();
+		this.used = 0;
+		this.saved = this.stamp;
+	}
+
+	/**
+	* The record method records the segment of a client within the file passed to the begin method. If the client has been
+	* deleted since the begin method, the segment is instead blanked by the next update.
+	* @param client Client - The client.
+	* @param offset long - The offset of the record within the file.
+	* @param length long - The number of bytes belonging to the record.
+	* @param mark long - The stamp taken before the record was written.
+	*/
+	public synchronized void record(Client client, long offset, long length, long mark) {
+		if (this.recording != null) {
+			long[] segment = new long[] {offset, length, length, mark};
+			if (this.deleted.containsKey(client)) {
+				this.freed.add(segment);
+			} else {
+				this.segments.put(client, segment);
+				this.used += length;
+			}
+		}
+	}
+
+	/**
+	* The skipped method records bytes of the file passed to the begin method that don't hold the record of any client (such as
+	* a record skipped by the open method, as a client of the same name had already been read), so that they are blanked by the
+	* next update. Otherwise they would be left within the file, and read again once the client they duplicate has changed.
+	* @param offset long - The offset of the skipped bytes within the file.
+	* @param length long - The number of bytes.
+	*/
+	public synchronized void skipped(long offset, long length) {
+		if ((this.recording != null) && (length > 0)) {
+			this.freed.add(new long[] {offset, length, 0, 0});
+		}
+	}
+
+	/**
+	* The end method completes the recording of the segments. The segments are only kept if the file has the received length,
+	* which is the number of chars that were written or read; otherwise, the file contains chars that are encoded with more than one
+	* byte, and the char offsets that were recorded are not the byte offsets. Either way, the changes to the recorded clients are
+	* discarded (as the file now holds them), other than those made after the record was written.
+	* @param length long - The length of the file in chars.
+	* @param trimmed boolean - Whether the file ends without a line separator.
+	*/
+	public synchronized void end(long length, boolean trimmed) {
+		if (this.recording != null) {
+			for (Map.Entry<Client, long[]> entry : this.segments.entrySet()) {
+				this.clean(entry.getKey(), entry.getValue()[MARK]);
+			}
+			if (this.recording.length() == length) {
+				this.file = this.recording;
+				this.length = length;
+				this.modified = this.file.lastModified();
+				this.trimmed = trimmed;
+			} else {
+				this.segments.clear();
+				this.freed.clear();
+			}
+			this.recording = null;
+			this.deleted.clear();
+		}
+	}
+
+	/**
+	* The clean method discards the change of the received client, unless it was made after the received stamp.
+	* @param client Client - The client.
+	* @param mark long - The stamp taken before the client's record was written.
+	*/
+	private void clean(Client client, long mark) {
+		Long changed = this.dirty.get(client);
+		if ((changed != null) && (changed <= mark)) {
+			this.dirty.remove(client);
+		}
+	}
+
+	/**
+	* The abort method discards the segments being recorded (if the end method hasn't been reached), which is used when the
+	* file couldn't be completely written or read. The changes are kept, as the file doesn't match the clients.
+	*/
+	public synchronized void abort() {
+		if (this.recording != null) {
+			this.clear();
+			this.saved = 0;
+		}
+	}
+
+	/**
+	* The clear method discards the segments, so that the file will next be written in full.
+	*/
+	public synchronized void clear() {
+		this.file = null;
+		this.recording = null;
+		this.segments.clear();
+		this.freed.clear();
+		this.deleted.clear();
+	}
+
+	/**
+	* The canUpdate method determines whether the received file can be brought up to date by the update method. This is the
+	* case when the segments describe the file, the file hasn't been changed elsewhere, and not too much of the file is blank.
+	* @param file File - The file being saved.
+	* @return boolean - Whether the update method can be used.
+	*/
+	public synchronized boolean canUpdate(File file) throws IOException {
+		if ((this.file == null) || (!this.file.getCanonicalFile().equals(file.getCanonicalFile()))) {
+			return false;
+		}
+		if ((file.length() != this.length) || (file.lastModified() != this.modified)) {
+			return false; // The file has been changed elsewhere.
+		}
+		return ((this.length - this.used) <= (this.length * MAX_WASTE));
+	}
+
+	/**
+	* The update method writes the records of the changed clients to the file, and blanks the segments of the deleted clients.
+	* The changed clients are serialised before the monitor is acquired; a client that is deleted in the meantime is skipped.
+	* @return int - The number of changed clients that were serialised.
+	* @throws IOException - If the file couldn't be written.
+	*/
+	public int update() throws IOException {
+		Client[] clients;
+		long mark;
+		synchronized (this) {
+			clients = this.dirty.keySet().toArray(new Client[this.dirty.size()]);
+			mark = this.stamp;
+		}
+		byte[][] records = new byte[clients.length][];
+		for (int i = 0; i < clients.length; i++) {
+			records[i] = clients[i].serialise().getBytes();
+		}
+		synchronized (this) {
+			this.update(clients, records, mark);
+		}
+		return clients.length;
+	}
+
+	/**
+	* The second update method writes the received records to the file, once the monitor has been acquired.
+	* @param clients Client[] - The changed clients.
+	* @param records byte[][] - The record of each client.
+	* @param mark long - The stamp taken before the records were serialised.
+	*/
+	private void update(Client[] clients, byte[][] records, long mark) throws IOException {
+		RandomAccessFile out = new RandomAccessFile(this.file, "rw");
+		try {
+			for (long[] segment : this.freed) {
+				this.blank(out, segment[OFFSET], segment[CAPACITY]);
+			}
+			for (int i = 0; i < clients.length; i++) {
+				Client client = clients[i];
+				byte[] record = records[i];
+				if (!this.dirty.containsKey(client)) {
+					continue; // The client has since been deleted.
+				}
+				long[] segment = this.segments.get(client);
+				if ((segment != null) && ((segment[OFFSET] + segment[CAPACITY]) == this.length)) {
+					// The segment is at the end of the file, so the record can be rewritten at any length.
+					this.used -= segment[USED];
+					this.length = segment[OFFSET];
+					this.trimmed = false; // The segment starts on a new line.
+				} else if ((segment != null) && (record.length <= segment[CAPACITY])) {
+					out.seek(segment[OFFSET]);
+					out.write(record);
+					this.blank(out, segment[OFFSET] + record.length, segment[CAPACITY] - record.length);
+					this.used += record.length - segment[USED];
+					segment[USED] = record.length;
+					this.clean(client, mark);
+					continue;
+				} else if (segment != null) {
+					this.blank(out, segment[OFFSET], segment[CAPACITY]);
+					this.used -= segment[USED];
+				}
+				// Appends the record to the end of the file.
+				if (this.trimmed && (this.length > 0)) {
+					out.seek(this.length);
+					out.write(SEPARATOR);
+					this.length += SEPARATOR.length;
+				}
+				out.seek(this.length);
+				out.write(record);
+				this.segments.put(client, new long[] {this.length, record.length, record.length, mark});
+				this.length += record.length;
+				this.used += record.length;
+				this.trimmed = false;
+				this.clean(client, mark);
+			}
+			out.setLength(this.length);
+		} catch (IOException ex) {
+			this.clear(); // The file is no longer known to match the segments.
+			throw ex;
+		} finally {
+			out.close();
+		}
+		this.modified = this.file.lastModified();
+		this.freed.clear();
+		this.saved = mark;
+	}
+
+	/**
+	* The blank method overwrites the received bytes of the file with spaces, followed by a line feed.
+	* @param out RandomAccessFile - The file.
+	* @param offset long - The offset of the first byte.
+	* @param length long - The number of bytes.
+	*/
+	private void blank(RandomAccessFile out, long offset, long length) throws IOException {
+		if (length > 0) {
+			byte[] blank = new byte[(int)Math.min(length, 8192)];
+			Arrays.fill(blank, BLANK);
+			out.seek(offset);
+			for (long remaining = length - 1; remaining > 0; remaining -= blank.length) {
+				out.write(blank, 0, (int)Math.min(remaining, blank.length));
+			}
+			out.write(LINE_FEED);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ *  Description:
+ *  The ServerLoadTest class is a local load test for the CalculatorServer. It opens the received client file, starts a
+ *  server on an ephemeral port, and then sends requests from a number of threads (mostly client lookups, along with account
+ *  projections, pages of the client listing, and the totals), timing each request. Once complete, it displays the number
+ *  of requests per second and the 50th and 99th percentile latencies. The requests are chosen by a seeded Random, so that
+ *  the runs are repeatable.
+ */
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ServerLoadTest {
+	private static final int DEFAULT_THREADS = 8;
+	private static final int DEFAULT_REQUESTS = 10000;
+	private static final int WARMUP_REQUESTS = 1000;
+	private static final long SEED = 42;
+	// The percentage of the requests that are account projections, pages of the listing and the totals (the rest are lookups).
+	private static final int PROJECTION_PERCENT = 20;
+	private static final int LISTING_PERCENT = 5;
+	private static final int TOTALS_PERCENT = 1;
+	private static final String USAGE = "Usage: java ServerLoadTest <client file> [threads] [requests per thread]";
+	private static final String MSG_SERVER = "Server on port %d (%s), %d clients";
+	private static final String MSG_RESULT = "%d requests from %d threads in %d ms: %.0f requests/s, %d failed";
+	private static final String MSG_LATENCY = "Latency p50 %.3f ms, p99 %.3f ms, max %.3f ms";
+
+	private ServerLoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println(USAGE);
+			return;
+		}
+		int threads = ((args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_THREADS);
+		int requests = ((args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_REQUESTS);
+		Calculator calculator = new Calculator();
+		try {
+			calculator.open(args[0]);
+		} catch (Exception ex) {
+			System.out.println(ex.getMessage()); // Such as the clients that weren't added, as their names already exist.
+		}
+		CalculatorServer server = new CalculatorServer(calculator);
+		server.start(0);
+		try {
+			System.out.println(String.format(MSG_SERVER, server.getPort(), (server.usesVirtualThreads() ? "virtual threads" : "thread pool"),
+												calculator.getNumberOfClients()));
+			Client[] clients = calculator.getClients();
+			String base = "http://localhost:" + server.getPort();
+			HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(); // The HttpServer only speaks HTTP/1.1.
+			run(http, base, clients, 1, WARMUP_REQUESTS, SEED - 1); // Warms up the server (and the client) first.
+			long start = System.nanoTime();
+			Worker[] workers = run(http, base, clients, threads, requests, SEED);
+			long elapsed = System.nanoTime() - start;
+			long[] latencies = new long[threads * requests];
+			int failed = 0;
+			for (int i = 0; i < threads; i++) {
+				System.arraycopy(workers[i].latencies, 0, latencies, i * requests, requests);
+				failed += workers[i].failed;
+			}
+			Arrays.sort(latencies);
+			System.out.println(String.format(MSG_RESULT, latencies.length, threads, elapsed / 1000000, latencies.length / (elapsed / 1e9), failed));
+			System.out.println(String.format(MSG_LATENCY, percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6,
+												latencies[latencies.length - 1] / 1e6));
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	* The run method sends the received number of requests from each of the threads, and waits for them to complete.
+	* @return Worker[] - The workers, holding the latency of each request.
+	*/
+	private static Worker[] run(HttpClient http, String base, Client[] clients, int threads, int requests, long seed) throws InterruptedException {
+		Worker[] workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(http, base, clients, requests, seed + i);
+			workers[i].start();
+		}
+		for (Worker worker : workers) {
+			worker.join();
+		}
+		return workers;
+	}
+
+	private static long percentile(long[] sorted, int percent) {
+		return sorted[Math.min(sorted.length - 1, (int)Math.ceil(sorted.length * (percent / 100.0)) - 1)];
+	}
+
+	/**
+	* The Worker class is a thread that sends the requests one at a time, recording the latency of each.
+	*/
+	private static class Worker extends Thread {
+		private HttpClient http;
+		private String base;
+		private Client[] clients;
+		private Random random;
+		private long[] latencies;
+		private int failed;
+
+		private Worker(HttpClient http, String base, Client[] clients, int requests, long seed) {
+			this.http = http;
+			this.base = base;
+			this.clients = clients;
+			this.random = new Random(seed);
+			this.latencies = new long[requests];
+		}
+
+		public void run() {
+			for (int i = 0; i < this.latencies.length; i++) {
+				HttpRequest request = HttpRequest.newBuilder(URI.create(this.base + this.nextPath())).build();
+				long start = System.nanoTime();
+				try {
+					HttpResponse<byte[]> response = this.http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+					if (response.statusCode() != 200) {
+						this.failed++;
+					}
+				} catch (Exception ex) {
+					this.failed++;
+				}
+				this.latencies[i] = System.nanoTime() - start;
+			}
+		}
+
+		private String nextPath() {
+			int choice = this.random.nextInt(100);
+			if (choice < TOTALS_PERCENT) {
+				return "/totals";
+			} else if (choice < (TOTALS_PERCENT + LISTING_PERCENT)) {
+				return "/clients?limit=50&offset=" + this.random.nextInt(Math.max(1, this.clients.length));
+			}
+			Client client = this.clients[this.random.nextInt(this.clients.length)];
+			String path = "/clients/" + URLEncoder.encode(client.getName(), StandardCharsets.UTF_8).replace("+", "%20");
+			if ((choice < (TOTALS_PERCENT + LISTING_PERCENT + PROJECTION_PERCENT)) && (client.getNumberOfAccounts() > 0)) {
+				path += "/accounts/" + (1 + this.random.nextInt(client.getNumberOfAccounts()));
+			}
+			return path;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ *  Description:
+ *  The TaxEngine class calculates the income tax, medicare levy and net salary of many clients at once, in the same way
+ *  as the Client calcTax method. The clients are received as parallel primitive arrays (such as the columns of a ColumnClientTable),
+ *  which are stepped through in tight loops using the received TaxSchedule. Large batches are divided into ranges that are
+ *  calculated at the same time on the ForkJoinPool.
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class TaxEngine {
+	// The number of clients below which a range is calculated without being divided any further.
+	private static final int THRESHOLD = 16384;
+
+	private TaxEngine() {
+	}
+
+	/**
+	* The calculate method calculates the tax, medicare and net salary of the first length clients within the received arrays,
+	* dividing the clients between the threads of the ForkJoinPool when there are enough of them. As with the Client calcMedicare
+	* method, the medicare of a non-resident is left unchanged (and is still deducted from the net salary).
+	* The batch is recorded as a TaxBatchEvent (when a flight recording is running).
+	* @param schedule TaxSchedule - The tax schedule.
+	* @param grossSalary double[] - The gross salary of each client.
+	* @param resident boolean[] - The residency of each client.
+	* @param tax double[] - Receives the income tax of each client.
+	* @param medicare double[] - Receives the medicare levy of each resident client.
+	* @param netSalary double[] - Receives the net salary of each client.
+	* @param length int - The number of clients.
+	*/
+	public static void calculate(TaxSchedule schedule, double[] grossSalary, boolean[] resident, double[] tax, double[] medicare,
+									double[] netSalary, int length) {
+		CalculatorEvents.TaxBatchEvent event = new CalculatorEvents.TaxBatchEvent(length, (length > THRESHOLD));
+		event.begin();
+		if (length <= THRESHOLD) {
+			calculate(schedule, grossSalary, resident, tax, medicare, netSalary, 0, length);
+		} else {
+			ForkJoinPool.commonPool().invoke(new Range(schedule, grossSalary, resident, tax, medicare, netSalary, 0, length));
+		}
+		event.commit();
+	}
+
+	/**
+	* The second calculate method calculates the clients between the received rows (on the current thread).
+	* @param schedule TaxSchedule - The tax schedule.
+	* @param grossSalary double[] - The gross salary of each client.
+	* @param resident boolean[] - The residency of each client.
+	* @param tax double[] - Receives the income tax of each client.
+	* @param medicare double[] - Receives the medicare levy of each resident client.
+	* @param netSalary double[] - Receives the net salary of each client.
+	* @param from int - The first row.
+	* @param to int - The row after the last row.
+	*/
+	public static void calculate(TaxSchedule schedule, double[] grossSalary, boolean[] resident, double[] tax, double[] medicare,
+									double[] netSalary, int from, int to) {
+		for (int i = from; i < to; i++) {
+			double gross = grossSalary[i];
+			tax[i] = schedule.calcTax(gross, resident[i]);
+			if (resident[i]) {
+				medicare[i] = schedule.calcMedicare(gross);
+			}
+			netSalary[i] = (gross - tax[i]) - medicare[i];
+		}
+	}
+
+	/**
+	* The Range class is the task used to calculate a range of clients on the ForkJoinPool. It divides itself in half until
+	* the range is no larger than the THRESHOLD.
+	*/
+	private static class Range extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private TaxSchedule schedule;
+		private double[] grossSalary;
+		private boolean[] resident;
+		private double[] tax;
+		private double[] medicare;
+		private double[] netSalary;
+		private int from;
+		private int to;
+
+		private Range(TaxSchedule schedule, double[] grossSalary, boolean[] resident, double[] tax, double[] medicare,
+						double[] netSalary, int from, int to) {
+			this.schedule = schedule;
+			this.grossSalary = grossSalary;
+			this.resident = resident;
+			this.tax = tax;
+			this.medicare = medicare;
+			this.netSalary = netSalary;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if ((this.to - this.from) <= THRESHOLD) {
+				calculate(this.schedule, this.grossSalary, this.resident, this.tax, this.medicare, this.netSalary, this.from, this.to);
+			} else {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new Range(this.schedule, this.grossSalary, this.resident, this.tax, this.medicare, this.netSalary, this.from, middle),
+						new Range(this.schedule, this.grossSalary, this.resident, this.tax, this.medicare, this.netSalary, middle, this.to));
+			}
+		}
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ *  Description:
+ *  The TaxSchedule class holds the income tax brackets (for both residents and non residents) and the medicare levy of a
+ *  single named schedule within a tax year. The schedules can be loaded from a text file (such as tax.dat), which enables
+ *  the rates to be changed without the program being recompiled. The brackets are compiled into a piecewise-linear table,
+ *  holding the upper threshold, lower bound, rate and base tax of each bracket, in which the bracket of a salary is found by
+ *  a binary search over the thresholds. The schedule that was previously hard-coded within the Client class is available
+ *  from the getDefault method.
+ *
+ *  The file contains a schedule line for each schedule, followed by the lines that define it:
+ *  	schedule <year> <name>
+ *  	medicare <threshold> <rate>
+ *  	resident <threshold> <rate> <base tax>
+ *  	nonresident <threshold> <rate> <base tax>
+ *  The bracket lines are given in ascending order of their (inclusive) upper thresholds, and the last bracket of each
+ *  residency has the threshold max. Blank lines and lines starting with # are ignored.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.StringTokenizer;
+
+public class TaxSchedule {
+	// The keywords of the schedule file.
+	private static final String FIELD_SCHEDULE = "schedule";
+	private static final String FIELD_MEDICARE = "medicare";
+	private static final String FIELD_RESIDENT = "resident";
+	private static final String FIELD_NONRESIDENT = "nonresident";
+	private static final String THRESHOLD_MAX = "max";
+	private static final String COMMENT = "#";
+	private static final String SPACE = " ";
+
+	private static final String FILE_DOESNT_EXIST = "The file does not exist";
+	private static final String ERR_INVALID_LINE = "The tax schedule file is invalid on line ";
+	private static final String ERR_INVALID_BRACKETS = "The brackets must have ascending thresholds, ending with max";
+	private static final String ERR_INCOMPLETE_SCHEDULE = "The following tax schedule is incomplete: ";
+	private static final String ERR_INVALID_SCHEDULE = "The brackets of the following tax schedule are invalid: ";
+
+	// The schedule that was hard-coded within the Client class (being the 2010-11 rates).
+	private static final TaxSchedule DEFAULT = new TaxSchedule("2010-11", "standard",
+		new double[] {6000, 37000, 80000, 180000}, new double[] {0, 0.15, 0.30, 0.37, 0.45}, new double[] {0, 0, 4650, 17550, 54550},
+		new double[] {37000, 80000, 180000}, new double[] {0.29, 0.30, 0.37, 0.45}, new double[] {0, 10730, 23630, 60630},
+		20000, 0.015);
+
+	private String year;
+	private String name;
+	private Brackets resident;
+	private Brackets nonResident;
+	private double medicareThreshold;
+	private double medicareRate;
+
+	/**
+	* The constructor receives the brackets of both residencies, along with the medicare levy. The brackets are given as their
+	* upper thresholds (excluding the last bracket, which has no upper threshold), and the rate and base tax of every bracket.
+	* @param year String - The tax year.
+	* @param name String - The name of the schedule within the year.
+	* @param residentThresholds double[] - The upper thresholds of the resident brackets.
+	* @param residentRates double[] - The rates of the resident brackets.
+	* @param residentBases double[] - The base tax of the resident brackets.
+	* @param nonResidentThresholds double[] - The upper thresholds of the non resident brackets.
+	* @param nonResidentRates double[] - The rates of the non resident brackets.
+	* @param nonResidentBases double[] - The base tax of the non resident brackets.
+	* @param medicareThreshold double - The salary from which a resident pays the medicare levy.
+	* @param medicareRate double - The medicare levy rate.
+	* @throws IllegalArgumentException - If the thresholds aren't ascending, or there isn't a rate and base tax for every bracket.
+	*/
+	public TaxSchedule(String year, String name, double[] residentThresholds, double[] residentRates, double[] residentBases,
+						double[] nonResidentThresholds, double[] nonResidentRates, double[] nonResidentBases,
+						double medicareThreshold, double medicareRate) {
+		this.year = year;
+		this.name = name;
+		this.resident = new Brackets(residentThresholds, residentRates, residentBases);
+		this.nonResident = new Brackets(nonResidentThresholds, nonResidentRates, nonResidentBases);
+		this.medicareThreshold = medicareThreshold;
+		this.medicareRate = medicareRate;
+	}
+
+	public static TaxSchedule getDefault() {
+		return DEFAULT;
+	}
+
+	public String getYear() {
+		return this.year;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	* The getKey method returns the key of the schedule within the map returned by the load method.
+	* @return String - The year and the name.
+	*/
+	public String getKey() {
+		return key(this.year, this.name);
+	}
+
+	public static String key(String year, String name) {
+		return (year + SPACE + name);
+	}
+
+	/**
+	* The calcTax method calculates the income tax of the received gross salary, being ((gross - lower) * rate) + base for the
+	* bracket that the salary falls within.
+	* @param grossSalary double - The gross salary.
+	* @param resident boolean - Whether the client is a resident.
+	* @return double - The income tax.
+	*/
+	public double calcTax(double grossSalary, boolean resident) {
+		return ((resident) ? this.resident.calcTax(grossSalary) : this.nonResident.calcTax(grossSalary));
+	}
+
+	/**
+	* The calcMedicare method calculates the medicare levy of a resident with the received gross salary.
+	* @param grossSalary double - The gross salary.
+	* @return double - The medicare levy, or 0 if the salary is below the medicare threshold.
+	*/
+	public double calcMedicare(double grossSalary) {
+		return ((grossSalary >= this.medicareThreshold) ? (grossSalary * this.medicareRate) : 0);
+	}
+
+	/**
+	* The load method reads every schedule within the received file.
+	* @param filename String - The schedule file.
+	* @return LinkedHashMap<String, TaxSchedule> - The schedules (in the order they appear within the file), keyed by the getKey method.
+	* @throws IOException - If the file doesn't exist, or isn't valid.
+	*/
+	public static LinkedHashMap<String, TaxSchedule> load(String filename) throws IOException {
+		File file = new File(filename);
+		if (!file.isFile()) {
+			throw new FileNotFoundException(FILE_DOESNT_EXIST);
+		}
+		LinkedHashMap<String, TaxSchedule> schedules = new LinkedHashMap<String, TaxSchedule>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			// The schedule being read.
+			String year = null, name = null;
+			double[] medicare = null;
+			ArrayList<double[]> resident = new ArrayList<double[]>();
+			ArrayList<double[]> nonResident = new ArrayList<double[]>();
+			int lineNumber = 0;
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				lineNumber++;
+				StringTokenizer tokens = new StringTokenizer(line);
+				if ((!tokens.hasMoreTokens()) || line.trim().startsWith(COMMENT)) {
+					continue;
+				}
+				String field = tokens.nextToken();
+				try {
+					if (field.equals(FIELD_SCHEDULE)) {
+						define(schedules, year, name, medicare, resident, nonResident); // Completes the previous schedule.
+						year = tokens.nextToken();
+						name = tokens.nextToken();
+						while (tokens.hasMoreTokens()) {
+							name += SPACE + tokens.nextToken();
+						}
+						medicare = null;
+						resident.clear();
+						nonResident.clear();
+					} else if (year == null) {
+						throw new IOException(ERR_INVALID_LINE + lineNumber);
+					} else if (field.equals(FIELD_MEDICARE)) {
+						medicare = new double[] {Double.parseDouble(tokens.nextToken()), Double.parseDouble(tokens.nextToken())};
+					} else if (field.equals(FIELD_RESIDENT) || field.equals(FIELD_NONRESIDENT)) {
+						String threshold = tokens.nextToken();
+						double[] bracket = {(threshold.equals(THRESHOLD_MAX) ? Double.POSITIVE_INFINITY : Double.parseDouble(threshold)),
+											Double.parseDouble(tokens.nextToken()), Double.parseDouble(tokens.nextToken())};
+						((field.equals(FIELD_RESIDENT)) ? resident : nonResident).add(bracket);
+					} else {
+						throw new IOException(ERR_INVALID_LINE + lineNumber);
+					}
+				} catch (RuntimeException ex) {
+					// Either too few values were given, or a value isn't a number.
+					throw new IOException(ERR_INVALID_LINE + lineNumber, ex);
+				}
+			}
+			define(schedules, year, name, medicare, resident, nonResident);
+		} finally {
+			in.close();
+		}
+		return schedules;
+	}
+
+	/**
+	* The define method is used by the load method to create a schedule once all of its lines have been read, which is
+	* then added to the received map.
+	* @param schedules LinkedHashMap<String, TaxSchedule> - The schedules that have been read.
+	* @param year String - The tax year, or null if no schedule has been started.
+	* @param name String - The name of the schedule.
+	* @param medicare double[] - The medicare threshold and rate, or null if they weren't given.
+	* @param resident ArrayList<double[]> - The resident brackets, each holding the threshold, rate and base tax.
+	* @param nonResident ArrayList<double[]> - The non resident brackets.
+	* @throws IOException - If the schedule is incomplete, or its brackets aren't valid.
+	*/
+	private static void define(LinkedHashMap<String, TaxSchedule> schedules, String year, String name, double[] medicare,
+								ArrayList<double[]> resident, ArrayList<double[]> nonResident) throws IOException {
+		if (year != null) {
+			if ((medicare == null) || resident.isEmpty() || nonResident.isEmpty()) {
+				throw new IOException(ERR_INCOMPLETE_SCHEDULE + key(year, name));
+			}
+			try {
+				TaxSchedule schedule = new TaxSchedule(year, name, column(resident, 0), column(resident, 1), column(resident, 2),
+											column(nonResident, 0), column(nonResident, 1), column(nonResident, 2),
+											medicare[0], medicare[1]);
+				schedules.put(schedule.getKey(), schedule);
+			} catch (IllegalArgumentException ex) {
+				throw new IOException(ERR_INVALID_SCHEDULE + key(year, name), ex);
+			}
+		}
+	}
+
+	/**
+	* The column method is used by the load method to gather a value from each of the received brackets. The threshold of
+	* the last bracket (which must be max) is left out.
+	* @param brackets ArrayList<double[]> - The brackets, each holding the threshold, rate and base tax.
+	* @param index int - The index of the value.
+	* @return double[] - The values.
+	*/
+	private static double[] column(ArrayList<double[]> brackets, int index) {
+		int length = ((index == 0) ? (brackets.size() - 1) : brackets.size());
+		if ((index == 0) && (brackets.get(length)[0] != Double.POSITIVE_INFINITY)) {
+			throw new IllegalArgumentException(ERR_INVALID_BRACKETS);
+		}
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = brackets.get(i)[index];
+		}
+		return values;
+	}
+
+	/**
+	* The Brackets class is the piecewise-linear table of the brackets for one residency. Bracket i covers the salaries
+	* above lower[i] up to (and including) thresholds[i], with the last bracket having no upper threshold.
+	*/
+	private static class Brackets {
+		private double[] thresholds;
+		private double[] lower;
+		private double[] rates;
+		private double[] bases;
+
+		private Brackets(double[] thresholds, double[] rates, double[] bases) {
+			if ((rates.length != (thresholds.length + 1)) || (bases.length != rates.length)) {
+				throw new IllegalArgumentException(ERR_INVALID_BRACKETS);
+			}
+			this.thresholds = thresholds.clone();
+			this.rates = rates.clone();
+			this.bases = bases.clone();
+			this.lower = new double[rates.length];
+			for (int i = 0; i < thresholds.length; i++) {
+				if ((!(thresholds[i] < Double.POSITIVE_INFINITY)) || ((i > 0) && (thresholds[i] <= thresholds[i - 1]))) {
+					throw new IllegalArgumentException(ERR_INVALID_BRACKETS);
+				}
+				this.lower[i + 1] = thresholds[i];
+			}
+		}
+
+		/**
+		* The find method performs a binary search for the first bracket with a threshold at or above the received salary.
+		* @param grossSalary double - The gross salary.
+		* @return int - The bracket (being the last bracket if the salary is above every threshold).
+		*/
+		private int find(double grossSalary) {
+			int low = 0, high = this.thresholds.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (grossSalary <= this.thresholds[middle]) {
+					high = middle;
+				} else {
+					low = middle + 1;
+				}
+			}
+			return low;
+		}
+
+		private double calcTax(double grossSalary) {
+			int bracket = this.find(grossSalary);
+			return (((grossSalary - this.lower[bracket]) * this.rates[bracket]) + this.bases[bracket]);
+		}
+	}
+}